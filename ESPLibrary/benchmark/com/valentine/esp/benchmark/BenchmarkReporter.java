@@ -0,0 +1,91 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Runs a benchmark through its warm up rounds and prints the time and the number of bytes allocated per operation for
+ * the measured rounds. The allocation rate is read from the HotSpot ThreadMXBean and is reported as n/a on JVMs that do
+ * not support it.
+ */
+public class BenchmarkReporter
+{
+	private static final int 	WARMUP_ROUNDS = 5;
+	private static final int 	MEASURED_ROUNDS = 10;
+
+	private static final com.sun.management.ThreadMXBean m_threadBean = mGetThreadBean();
+
+	private BenchmarkReporter()
+	{
+	}
+
+	/**
+	 * Prints the header for the lines written by {@link #report(String, int, Runnable)}.
+	 */
+	public static void printHeader()
+	{
+		System.out.println(String.format("%-36s %12s %14s %12s", "Benchmark", "ns/op", "ops/s", "B/op"));
+	}
+
+	/**
+	 * Runs the benchmark through the warm up rounds and prints the results for the measured rounds.
+	 *
+	 * @param name			The name printed with the result.
+	 * @param opsPerRun		The number of operations the benchmark performs each time it is run.
+	 * @param benchmark		The benchmark to run.
+	 */
+	public static void report(String name, int opsPerRun, Runnable benchmark)
+	{
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+		{
+			benchmark.run();
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long startBytes = mGetAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_ROUNDS; i++)
+		{
+			benchmark.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		long endBytes = mGetAllocatedBytes(threadId);
+
+		long ops = (long)MEASURED_ROUNDS * opsPerRun;
+		double nsPerOp = (double)elapsed / ops;
+		double opsPerSec = ops / (elapsed / 1000000000.0);
+		String bytesPerOp = (startBytes < 0 || endBytes < 0) ? "n/a" : String.format("%.1f", (double)(endBytes - startBytes) / ops);
+
+		System.out.println(String.format("%-36s %12.3f %14.0f %12s", name, nsPerOp, opsPerSec, bytesPerOp));
+	}
+
+	private static long mGetAllocatedBytes(long threadId)
+	{
+		if ( m_threadBean == null ){
+			return -1;
+		}
+		return m_threadBean.getThreadAllocatedBytes(threadId);
+	}
+
+	private static com.sun.management.ThreadMXBean mGetThreadBean()
+	{
+		try {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			if ( !bean.isThreadAllocatedMemorySupported() ){
+				return null;
+			}
+			bean.setThreadAllocatedMemoryEnabled(true);
+			return bean;
+		}
+		catch (ClassCastException e) {
+			return null;
+		}
+		catch (UnsupportedOperationException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.benchmark;
+
+import com.valentine.esp.constants.Devices;
+import com.valentine.esp.packets.CaptureDecoder;
+
+/**
+ * Measures how CaptureDecoder scales with the number of threads. The capture is the {@link FrameMix} frames repeated
+ * until it is several megabytes long. Bytes allocated per operation are only counted for the thread that merges the
+ * results, not for the decoding threads. Run on a desktop JVM with the library classes on the classpath:
+ *
+ * 	javac -cp <library classes> -d out benchmark/com/valentine/esp/benchmark/*.java
+ * 	java -cp <library classes>:out com.valentine.esp.benchmark.CaptureBenchmark
+ */
+public class CaptureBenchmark
+{
+	private static final int 	CAPTURE_REPEATS = 20000;
+
+	// Written by every benchmark so the JIT can not remove the work
+	private static long 		m_sink;
+
+	public static void main(String[] args) throws Exception
+	{
+		final Devices v1Type = Devices.VALENTINE1_WITH_CHECKSUM;
+		byte [][] frames = FrameMix.makeFrames(v1Type, true);
+		byte [][] repeated = new byte[frames.length * CAPTURE_REPEATS][];
+		for (int i = 0; i < repeated.length; i++)
+		{
+			repeated[i] = frames[i % frames.length];
+		}
+		final byte [] capture = FrameMix.concat(repeated);
+		final int frameCount = repeated.length;
+
+		System.out.println("Capture of " + capture.length + " bytes, " + frameCount + " frames");
+		BenchmarkReporter.printHeader();
+
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= maxThreads; threads *= 2)
+		{
+			final CaptureDecoder decoder = new CaptureDecoder(threads);
+
+			BenchmarkReporter.report("decode (" + threads + " threads)", frameCount, new Runnable() {
+				public void run()
+				{
+					try {
+						m_sink += decoder.decode(capture, v1Type).size();
+					}
+					catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+
+			BenchmarkReporter.report("countPacketIds (" + threads + " threads)", frameCount, new Runnable() {
+				public void run()
+				{
+					try {
+						m_sink += decoder.countPacketIds(capture, v1Type)[0];
+					}
+					catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+
+			decoder.shutdown();
+		}
+
+		System.out.println("(sink " + m_sink + ")");
+	}
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.benchmark;
+
+import java.util.ArrayList;
+
+import com.valentine.esp.bluetooth.ConnectionType;
+import com.valentine.esp.constants.Devices;
+import com.valentine.esp.constants.PacketId;
+import com.valentine.esp.data.AlertData;
+import com.valentine.esp.factories.PacketFactory;
+import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.PacketPool;
+import com.valentine.esp.packets.SPPFrameBuffer;
+import com.valentine.esp.packets.SPPFrameIndex;
+import com.valentine.esp.packets.SPPFrameView;
+import com.valentine.esp.packets.request.RequestMuteOn;
+import com.valentine.esp.packets.request.RequestStartAlertData;
+import com.valentine.esp.packets.request.RequestVersion;
+
+/**
+ * Benchmarks for the packet encode and decode paths. Each benchmark reports the time, throughput and bytes allocated per
+ * operation using the frames built by {@link FrameMix}. Run on a desktop JVM with the library classes on the classpath:
+ *
+ * 	javac -cp <library classes> -d out benchmark/com/valentine/esp/benchmark/*.java
+ * 	java -cp <library classes>:out com.valentine.esp.benchmark.CodecBenchmark
+ */
+public class CodecBenchmark
+{
+	private static final int 	OPS_PER_RUN = 200000;
+
+	// Written by every benchmark so the JIT can not remove the work
+	private static int 			m_sink;
+
+	public static void main(String[] args)
+	{
+		BenchmarkReporter.printHeader();
+
+		benchmarkDecode(Devices.VALENTINE1_WITH_CHECKSUM, "checksum");
+		benchmarkDecode(Devices.VALENTINE1_WITHOUT_CHECKSUM, "no checksum");
+		benchmarkEncode();
+		benchmarkCompare();
+		benchmarkFactory();
+		benchmarkPayloadDecode();
+		benchmarkPooling(false);
+		benchmarkPooling(true);
+
+		System.out.println("(sink " + m_sink + ")");
+	}
+
+	/**
+	 * Benchmarks ESPPacket.makeFromBuffer for both connection types and the SPPFrameBuffer path used by the SPP reader.
+	 */
+	private static void benchmarkDecode(final Devices v1Type, String label)
+	{
+		final byte [][] sppFrames = FrameMix.makeFrames(v1Type, true);
+		final ArrayList<ArrayList<Byte>> sppLists = mToLists(sppFrames);
+		final ArrayList<ArrayList<Byte>> leLists = mToLists(FrameMix.makeFrames(v1Type, false));
+		final ArrayList<Byte> buffer = new ArrayList<Byte>();
+
+		BenchmarkReporter.report("makeFromBuffer SPP (" + label + ")", OPS_PER_RUN, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < OPS_PER_RUN; i++)
+				{
+					// makeFromBuffer consumes the frame, so refill the buffer for every packet
+					buffer.addAll(sppLists.get(i % sppLists.size()));
+					sum += ESPPacket.makeFromBuffer(buffer, ConnectionType.V1Connection, v1Type).getPayloadLength();
+				}
+				m_sink += sum;
+			}
+		});
+
+		BenchmarkReporter.report("makeFromBuffer LE (" + label + ")", OPS_PER_RUN, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < OPS_PER_RUN; i++)
+				{
+					buffer.addAll(leLists.get(i % leLists.size()));
+					sum += ESPPacket.makeFromBuffer(buffer, ConnectionType.V1Connection_LE, v1Type).getPayloadLength();
+				}
+				m_sink += sum;
+			}
+		});
+
+		final byte [] stream = FrameMix.concat(sppFrames);
+		final SPPFrameBuffer frameBuffer = new SPPFrameBuffer();
+		final SPPFrameIndex frameIndex = new SPPFrameIndex();
+		final int runs = OPS_PER_RUN / sppFrames.length;
+
+		BenchmarkReporter.report("SPPFrameBuffer (" + label + ")", runs * sppFrames.length, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < runs; i++)
+				{
+					frameBuffer.write(stream, 0, stream.length);
+					frameBuffer.indexFrames(frameIndex, v1Type);
+					for (int j = 0; j < frameIndex.size(); j++)
+					{
+						sum += frameBuffer.buildPacket(frameIndex, j, v1Type).getPayloadLength();
+					}
+				}
+				m_sink += sum;
+			}
+		});
+
+		final SPPFrameView frameView = new SPPFrameView();
+
+		BenchmarkReporter.report("SPPFrameView (" + label + ")", runs * sppFrames.length, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < runs; i++)
+				{
+					frameBuffer.write(stream, 0, stream.length);
+					frameBuffer.indexFrames(frameIndex, v1Type);
+					for (int j = 0; j < frameIndex.size(); j++)
+					{
+						frameBuffer.getView(frameIndex, j, v1Type, frameView);
+						sum += frameView.getPayloadLength() + frameView.getPacketIdByte();
+					}
+				}
+				m_sink += sum;
+			}
+		});
+	}
+
+	/**
+	 * Benchmarks the inbound path the SPP reader and ValentineESP follow for each frame: build the packet, decode its
+	 * payload for the subscribers and release it once it has been dispatched.
+	 */
+	private static void benchmarkPooling(boolean pooled)
+	{
+		final Devices v1Type = Devices.VALENTINE1_WITH_CHECKSUM;
+		final byte [][] frames = FrameMix.makeFrames(v1Type, true);
+		final byte [] stream = FrameMix.concat(frames);
+		final SPPFrameBuffer frameBuffer = new SPPFrameBuffer();
+		final SPPFrameIndex frameIndex = new SPPFrameIndex();
+		final int runs = OPS_PER_RUN / frames.length;
+
+		PacketPool.setEnabled(pooled);
+		BenchmarkReporter.report("Decode and dispatch (" + (pooled ? "pooled" : "not pooled") + ")", runs * frames.length, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < runs; i++)
+				{
+					frameBuffer.write(stream, 0, stream.length);
+					frameBuffer.indexFrames(frameIndex, v1Type);
+					for (int j = 0; j < frameIndex.size(); j++)
+					{
+						ESPPacket packet = frameBuffer.buildPacket(frameIndex, j, v1Type);
+						if ( packet.getResponseData() != null ){
+							sum++;
+						}
+						PacketPool.release(packet);
+					}
+				}
+				m_sink += sum;
+			}
+		});
+		PacketPool.setEnabled(false);
+	}
+
+	/**
+	 * Benchmarks ESPPacket.makeByteStream for the requests sent most often, whose frames are cached, and for packets with
+	 * a payload, which are encoded every time.
+	 */
+	private static void benchmarkEncode()
+	{
+		final ESPPacket [] requests = {
+			new RequestMuteOn(Devices.VALENTINE1_WITH_CHECKSUM),
+			new RequestStartAlertData(Devices.VALENTINE1_WITH_CHECKSUM),
+			new RequestVersion(Devices.VALENTINE1_WITH_CHECKSUM, Devices.VALENTINE1_WITH_CHECKSUM),
+		};
+		final ESPPacket [] responses = mDecodeAll(Devices.VALENTINE1_WITH_CHECKSUM);
+
+		BenchmarkReporter.report("makeByteStream SPP (fixed frame)", OPS_PER_RUN, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < OPS_PER_RUN; i++)
+				{
+					sum += ESPPacket.makeByteStream(requests[i % requests.length], ConnectionType.V1Connection).length;
+				}
+				m_sink += sum;
+			}
+		});
+
+		BenchmarkReporter.report("makeByteStream SPP (payload)", OPS_PER_RUN, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < OPS_PER_RUN; i++)
+				{
+					sum += ESPPacket.makeByteStream(responses[i % responses.length], ConnectionType.V1Connection).length;
+				}
+				m_sink += sum;
+			}
+		});
+
+		BenchmarkReporter.report("makeByteStream LE (payload)", OPS_PER_RUN, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < OPS_PER_RUN; i++)
+				{
+					sum += ESPPacket.makeByteStream(responses[i % responses.length], ConnectionType.V1Connection_LE).length;
+				}
+				m_sink += sum;
+			}
+		});
+	}
+
+	/**
+	 * Benchmarks ESPPacket.isSamePacket against copies of the same packet and against the other packets in the mix.
+	 */
+	private static void benchmarkCompare()
+	{
+		final ESPPacket [] packets = mDecodeAll(Devices.VALENTINE1_WITH_CHECKSUM);
+		final ESPPacket [] copies = mDecodeAll(Devices.VALENTINE1_WITH_CHECKSUM);
+
+		BenchmarkReporter.report("isSamePacket (equal)", OPS_PER_RUN, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < OPS_PER_RUN; i++)
+				{
+					int idx = i % packets.length;
+					if ( packets[idx].isSamePacket(copies[idx]) ){
+						sum++;
+					}
+				}
+				m_sink += sum;
+			}
+		});
+
+		BenchmarkReporter.report("isSamePacket (mixed)", OPS_PER_RUN, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < OPS_PER_RUN; i++)
+				{
+					if ( packets[i % packets.length].isSamePacket(copies[(i / packets.length) % copies.length]) ){
+						sum++;
+					}
+				}
+				m_sink += sum;
+			}
+		});
+	}
+
+	/**
+	 * Benchmarks PacketFactory.getPacket for every packet id.
+	 */
+	private static void benchmarkFactory()
+	{
+		final PacketId [] ids = PacketId.values();
+
+		BenchmarkReporter.report("PacketFactory.getPacket", OPS_PER_RUN, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < OPS_PER_RUN; i++)
+				{
+					if ( PacketFactory.getPacket(ids[i % ids.length]) != null ){
+						sum++;
+					}
+				}
+				m_sink += sum;
+			}
+		});
+	}
+
+	/**
+	 * Benchmarks building the InfDisplayInfoData and AlertData objects handed to the application. The display data is
+	 * decoded by the packet it arrives in, so it is measured together with parsing the LE frame. Compare it against the
+	 * parse only result to get the cost of the decode.
+	 */
+	private static void benchmarkPayloadDecode()
+	{
+		final ArrayList<ArrayList<Byte>> displayLists = new ArrayList<ArrayList<Byte>>();
+		for (int i = 0; i < 5; i++)
+		{
+			displayLists.add(FrameMix.toList(FrameMix.makeDisplayFrame(Devices.VALENTINE1_WITH_CHECKSUM, i, false)));
+		}
+		final byte [][] alertPayloads = FrameMix.getAlertPayloads();
+		final ArrayList<Byte> buffer = new ArrayList<Byte>();
+
+		BenchmarkReporter.report("InfDisplayData parse", OPS_PER_RUN, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < OPS_PER_RUN; i++)
+				{
+					buffer.addAll(displayLists.get(i % displayLists.size()));
+					ESPPacket packet = ESPPacket.makeFromBuffer(buffer, ConnectionType.V1Connection_LE, Devices.VALENTINE1_WITH_CHECKSUM);
+					sum += packet.getPayloadLength();
+				}
+				m_sink += sum;
+			}
+		});
+
+		BenchmarkReporter.report("InfDisplayData parse + decode", OPS_PER_RUN, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < OPS_PER_RUN; i++)
+				{
+					buffer.addAll(displayLists.get(i % displayLists.size()));
+					ESPPacket packet = ESPPacket.makeFromBuffer(buffer, ConnectionType.V1Connection_LE, Devices.VALENTINE1_WITH_CHECKSUM);
+					if ( packet.getResponseData() != null ){
+						sum++;
+					}
+				}
+				m_sink += sum;
+			}
+		});
+
+		BenchmarkReporter.report("AlertData.buildFromData", OPS_PER_RUN, new Runnable() {
+			public void run()
+			{
+				int sum = 0;
+				for (int i = 0; i < OPS_PER_RUN; i++)
+				{
+					AlertData alert = new AlertData();
+					alert.buildFromData(alertPayloads[i % alertPayloads.length]);
+					sum += alert.getFrequency();
+				}
+				m_sink += sum;
+			}
+		});
+	}
+
+	private static ArrayList<ArrayList<Byte>> mToLists(byte [][] frames)
+	{
+		ArrayList<ArrayList<Byte>> lists = new ArrayList<ArrayList<Byte>>(frames.length);
+		for (int i = 0; i < frames.length; i++)
+		{
+			lists.add(FrameMix.toList(frames[i]));
+		}
+		return lists;
+	}
+
+	private static ESPPacket [] mDecodeAll(Devices v1Type)
+	{
+		byte [][] frames = FrameMix.makeFrames(v1Type, false);
+		ESPPacket [] packets = new ESPPacket[frames.length];
+		for (int i = 0; i < frames.length; i++)
+		{
+			packets[i] = ESPPacket.makeFromBuffer(FrameMix.toList(frames[i]), ConnectionType.V1Connection_LE, v1Type);
+		}
+		return packets;
+	}
+}
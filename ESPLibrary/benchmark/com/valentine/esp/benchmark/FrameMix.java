@@ -0,0 +1,202 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+
+import com.valentine.esp.constants.Devices;
+import com.valentine.esp.constants.PacketId;
+
+/**
+ * Builds the frames used by the codec benchmarks. The mix follows the traffic seen from a V1 while driving with alert
+ * data turned on: a display packet roughly every 70ms, alert data for two alerts at about half that rate and the
+ * occasional response to a request. Several payloads contain 0x7D and 0x7F so the SPP escaping is exercised.
+ *
+ * The frames are built here instead of with the library encoder so the decode benchmarks do not depend on the code
+ * they are measuring.
+ */
+public class FrameMix
+{
+	private static final byte 		FRAME_DELIMITER = 0x7F;
+	private static final byte 		ESCAPE = 0x7D;
+	private static final byte 		SOF = (byte)0xAA;
+	private static final byte 		EOF = (byte)0xAB;
+
+	// infDisplayData payloads: bogey counter 1 and 2, signal strength, band and arrow 1 and 2, aux 0, aux 1, aux 2
+	private static final byte [][] 	m_displayPayloads = {
+		{ 0x3F, 0x3F, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00 },
+		{ 0x06, 0x06, 0x07, 0x24, 0x24, 0x00, 0x00, 0x00 },
+		{ 0x06, 0x00, 0x7F, 0x24, 0x20, 0x0C, 0x00, 0x00 },
+		{ 0x5B, 0x5B, 0x7D, 0x26, 0x26, 0x0C, 0x00, 0x00 },
+		{ 0x5B, 0x00, 0x1F, 0x62, 0x22, 0x08, 0x00, 0x00 },
+	};
+
+	// respAlertData payloads: index and count, frequency MSB and LSB, front and rear signal strength, band and arrow, aux
+	private static final byte [][] 	m_alertPayloads = {
+		{ 0x12, 0x5F, (byte)0xA4, (byte)0xB8, 0x7F, 0x24, (byte)0x80 },
+		{ 0x22, (byte)0x84, 0x7D, (byte)0x9B, (byte)0x92, 0x42, 0x00 },
+	};
+
+	// respVersion payload
+	private static final byte [] 	m_versionPayload = { 'V', '3', '.', '8', '9', '4', '5' };
+
+	private FrameMix()
+	{
+	}
+
+	/**
+	 * Builds one cycle of the frame mix.
+	 *
+	 * @param v1Type	The type of V1 sending the frames. Only VALENTINE1_WITH_CHECKSUM and VALENTINE1_WITHOUT_CHECKSUM
+	 * 					are supported.
+	 * @param spp		true to build escaped and delimited frames for V1connection, false to build the raw ESP frames
+	 * 					used by V1connection LE.
+	 *
+	 * @return The frames in the order they would be received.
+	 */
+	public static byte [][] makeFrames(Devices v1Type, boolean spp)
+	{
+		ArrayList<byte []> frames = new ArrayList<byte []>();
+		for (int i = 0; i < 10; i++)
+		{
+			frames.add(makeFrame(v1Type, PacketId.infDisplayData, m_displayPayloads[i % m_displayPayloads.length], spp));
+			if ( (i & 1) == 1 ){
+				frames.add(makeFrame(v1Type, PacketId.respAlertData, m_alertPayloads[(i >> 1) % m_alertPayloads.length], spp));
+			}
+		}
+		frames.add(makeFrame(v1Type, PacketId.respVersion, m_versionPayload, spp));
+
+		return frames.toArray(new byte[frames.size()][]);
+	}
+
+	/**
+	 * Builds the display data frame at the given position in the mix.
+	 *
+	 * @param v1Type	The type of V1 sending the frame.
+	 * @param index		The position of the payload in the mix.
+	 * @param spp		true to build an SPP frame, false to build an LE frame.
+	 *
+	 * @return The frame.
+	 */
+	public static byte [] makeDisplayFrame(Devices v1Type, int index, boolean spp)
+	{
+		return makeFrame(v1Type, PacketId.infDisplayData, m_displayPayloads[index % m_displayPayloads.length], spp);
+	}
+
+	/**
+	 * Retrieve the alert data payloads in the mix.
+	 *
+	 * @return The payloads. The arrays must not be modified.
+	 */
+	public static byte [][] getAlertPayloads()
+	{
+		return m_alertPayloads;
+	}
+
+	/**
+	 * Joins the frames into the byte stream that would be read from the V1connection.
+	 *
+	 * @param frames	The frames to join.
+	 *
+	 * @return The frames one after another.
+	 */
+	public static byte [] concat(byte [][] frames)
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < frames.length; i++)
+		{
+			out.write(frames[i], 0, frames[i].length);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Boxes the bytes into the list type taken by ESPPacket.makeFromBuffer.
+	 *
+	 * @param frame	The bytes to box.
+	 *
+	 * @return A new list holding the bytes.
+	 */
+	public static ArrayList<Byte> toList(byte [] frame)
+	{
+		ArrayList<Byte> list = new ArrayList<Byte>(frame.length);
+		for (int i = 0; i < frame.length; i++)
+		{
+			list.add(frame[i]);
+		}
+		return list;
+	}
+
+	/**
+	 * Builds a frame sent by the V1 to the general broadcast address.
+	 *
+	 * @param v1Type	The type of V1 sending the frame.
+	 * @param packetId	The packet id of the frame.
+	 * @param payload	The payload of the frame.
+	 * @param spp		true to build an SPP frame, false to build an LE frame.
+	 *
+	 * @return The frame.
+	 */
+	public static byte [] makeFrame(Devices v1Type, PacketId packetId, byte [] payload, boolean spp)
+	{
+		boolean checksum = (v1Type == Devices.VALENTINE1_WITH_CHECKSUM);
+
+		ByteArrayOutputStream esp = new ByteArrayOutputStream();
+		esp.write(SOF);
+		esp.write(0xD0 | Devices.GENERAL_BROADCAST.toByteValue());
+		esp.write(0xE0 | v1Type.toByteValue());
+		esp.write(packetId.toByteValue());
+		esp.write(checksum ? payload.length + 1 : payload.length);
+		esp.write(payload, 0, payload.length);
+		if ( checksum ){
+			byte sum = 0;
+			byte [] header = esp.toByteArray();
+			for (int i = 0; i < header.length; i++)
+			{
+				sum += header[i];
+			}
+			esp.write(sum);
+		}
+		esp.write(EOF);
+
+		byte [] espFrame = esp.toByteArray();
+		if ( !spp ){
+			return espFrame;
+		}
+
+		// Wrap the ESP frame in the V1connection header and escape everything between the delimiters
+		byte [] body = new byte[espFrame.length + 2];
+		body[0] = (byte)espFrame.length;
+		System.arraycopy(espFrame, 0, body, 1, espFrame.length);
+		byte packetChecksum = 0;
+		for (int i = 0; i < body.length - 1; i++)
+		{
+			packetChecksum += body[i];
+		}
+		body[body.length - 1] = packetChecksum;
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(FRAME_DELIMITER);
+		for (int i = 0; i < body.length; i++)
+		{
+			if ( body[i] == ESCAPE ){
+				out.write(ESCAPE);
+				out.write(0x5D);
+			}
+			else if ( body[i] == FRAME_DELIMITER ){
+				out.write(ESCAPE);
+				out.write(0x5F);
+			}
+			else{
+				out.write(body[i]);
+			}
+		}
+		out.write(FRAME_DELIMITER);
+
+		return out.toByteArray();
+	}
+}
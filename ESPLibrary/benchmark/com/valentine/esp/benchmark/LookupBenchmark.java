@@ -0,0 +1,121 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.valentine.esp.constants.Devices;
+import com.valentine.esp.constants.DevicesLookup;
+import com.valentine.esp.constants.PacketId;
+import com.valentine.esp.constants.PacketIdLookup;
+
+/**
+ * Microbenchmark comparing the array backed PacketIdLookup and DevicesLookup tables against the boxed HashMap lookup
+ * they replaced. The benchmarks are not part of the library build. Run on a desktop JVM with the library classes on the
+ * classpath:
+ *
+ * 	javac -cp <library classes> -d out benchmark/com/valentine/esp/benchmark/*.java
+ * 	java -cp <library classes>:out com.valentine.esp.benchmark.LookupBenchmark
+ */
+public class LookupBenchmark
+{
+	private static final int 	LOOKUPS_PER_ROUND = 10000000;
+
+	// The identifier bytes seen in a typical stream of display and alert packets
+	private static final byte[] m_packetIds = { 0x31, 0x43, 0x31, 0x31, 0x43, 0x43, 0x02, 0x31 };
+	private static final byte[] m_deviceIds = { (byte)0xD8, (byte)0xEA, (byte)0xD6, (byte)0xE9, 0x0A, 0x06, (byte)0x98, 0x02 };
+
+	private static final Map<Byte, PacketId> m_packetIdMap = new HashMap<Byte, PacketId>();
+	private static final Map<Byte, Devices> m_devicesMap = new HashMap<Byte, Devices>();
+
+	// Written by every benchmark so the JIT can not remove the lookups
+	private static int 			m_sink;
+
+	public static void main(String[] args)
+	{
+		PacketId[] packetIds = PacketId.values();
+		for (int i = 0; i < packetIds.length; i++)
+		{
+			m_packetIdMap.put(packetIds[i].toByteValue(), packetIds[i]);
+		}
+		Devices[] devices = Devices.values();
+		for (int i = 0; i < devices.length; i++)
+		{
+			m_devicesMap.put(devices[i].toByteValue(), devices[i]);
+		}
+
+		BenchmarkReporter.printHeader();
+		BenchmarkReporter.report("PacketId HashMap", LOOKUPS_PER_ROUND, new Runnable() { public void run() { packetIdMap(); } });
+		BenchmarkReporter.report("PacketId table", LOOKUPS_PER_ROUND, new Runnable() { public void run() { packetIdTable(); } });
+		BenchmarkReporter.report("Devices HashMap", LOOKUPS_PER_ROUND, new Runnable() { public void run() { devicesMap(); } });
+		BenchmarkReporter.report("Devices table", LOOKUPS_PER_ROUND, new Runnable() { public void run() { devicesTable(); } });
+
+		System.out.println("(sink " + m_sink + ")");
+	}
+
+	private static void packetIdMap()
+	{
+		int sum = 0;
+		for (int i = 0; i < LOOKUPS_PER_ROUND; i++)
+		{
+			PacketId id = m_packetIdMap.get(m_packetIds[i & 7]);
+			if ( id == null ){
+				id = PacketId.unknownPacketType;
+			}
+			sum += id.ordinal();
+		}
+		m_sink += sum;
+	}
+
+	private static void packetIdTable()
+	{
+		int sum = 0;
+		for (int i = 0; i < LOOKUPS_PER_ROUND; i++)
+		{
+			sum += PacketIdLookup.getConstant(m_packetIds[i & 7]).ordinal();
+		}
+		m_sink += sum;
+	}
+
+	private static void devicesMap()
+	{
+		int sum = 0;
+		for (int i = 0; i < LOOKUPS_PER_ROUND; i++)
+		{
+			// This is the lookup DevicesLookup used to do
+			byte value = m_deviceIds[i & 7];
+			Devices device;
+			if ( value == Devices.VALENTINE1_LEGACY.toByteValue() ){
+				device = Devices.VALENTINE1_LEGACY;
+			}
+			else if ( value == Devices.UNKNOWN.toByteValue() ){
+				device = Devices.UNKNOWN;
+			}
+			else{
+				if ( (char)value > (char)0x0F ){
+					value &= (byte)0x0F;
+				}
+				device = m_devicesMap.get(value);
+				if ( device == null ){
+					device = Devices.UNKNOWN;
+				}
+			}
+			sum += device.ordinal();
+		}
+		m_sink += sum;
+	}
+
+	private static void devicesTable()
+	{
+		int sum = 0;
+		for (int i = 0; i < LOOKUPS_PER_ROUND; i++)
+		{
+			sum += DevicesLookup.getConstant(m_deviceIds[i & 7]).ordinal();
+		}
+		m_sink += sum;
+	}
+}
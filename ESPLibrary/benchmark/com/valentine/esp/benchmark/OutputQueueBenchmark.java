@@ -0,0 +1,120 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.benchmark;
+
+import java.util.LinkedList;
+
+import com.valentine.esp.PacketQueue;
+import com.valentine.esp.constants.Devices;
+import com.valentine.esp.data.SweepDefinition;
+import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.request.RequestWriteSweepDefinition;
+
+/**
+ * Stress test for duplicate suppression in the output queue. Each burst queues a set of different sweep writes, queues
+ * the whole set again so every packet is a duplicate, then drains the queue. The PacketQueue, which finds duplicates
+ * through its content hash index, is compared against the linear isSamePacket scan it replaced. Run on a desktop JVM
+ * with the library classes on the classpath:
+ *
+ * 	javac -cp <library classes> -d out benchmark/com/valentine/esp/benchmark/*.java
+ * 	java -cp <library classes>:out com.valentine.esp.benchmark.OutputQueueBenchmark
+ */
+public class OutputQueueBenchmark
+{
+	private static final int [] QUEUE_SIZES = { 16, 128, 512, 1024 };
+	// Each run pushes at least this many packets, so the small queues run long enough to measure
+	private static final int 	MIN_PUSHES_PER_RUN = 20000;
+
+	// Written by every benchmark so the JIT can not remove the work
+	private static long 		m_sink;
+
+	public static void main(String[] args)
+	{
+		BenchmarkReporter.printHeader();
+
+		for (int size : QUEUE_SIZES)
+		{
+			final ESPPacket [] packets = mMakePackets(size);
+			final int bursts = Math.max(1, MIN_PUSHES_PER_RUN / (2 * size));
+			final PacketQueue queue = new PacketQueue();
+			queue.initOutputQueue(Devices.UNKNOWN, true, false);
+
+			BenchmarkReporter.report("linear scan push (" + size + ")", bursts * 2 * size, new Runnable() {
+				public void run()
+				{
+					LinkedList<ESPPacket> list = new LinkedList<ESPPacket>();
+					for (int burst = 0; burst < bursts; burst++)
+					{
+						for (int pass = 0; pass < 2; pass++)
+						{
+							for (int i = 0; i < packets.length; i++)
+							{
+								mPushLinear(list, packets[i]);
+							}
+						}
+						while (!list.isEmpty())
+						{
+							m_sink += list.removeFirst().getPacketLength();
+						}
+					}
+				}
+			});
+
+			BenchmarkReporter.report("PacketQueue push (" + size + ")", bursts * 2 * size, new Runnable() {
+				public void run()
+				{
+					for (int burst = 0; burst < bursts; burst++)
+					{
+						for (int pass = 0; pass < 2; pass++)
+						{
+							for (int i = 0; i < packets.length; i++)
+							{
+								queue.pushOutputPacketOntoQueue(packets[i]);
+							}
+						}
+						ESPPacket packet;
+						while ((packet = queue.getNextOutputPacket()) != null)
+						{
+							m_sink += packet.getPacketLength();
+						}
+					}
+				}
+			});
+		}
+
+		System.out.println("(sink " + m_sink + ")");
+	}
+
+	/**
+	 * The duplicate check pushOutputPacketOntoQueue used before the index was added.
+	 */
+	private static void mPushLinear(LinkedList<ESPPacket> list, ESPPacket packet)
+	{
+		for (int i = 0; i < list.size(); i++)
+		{
+			if (packet.isSamePacket(list.get(i)))
+			{
+				return;
+			}
+		}
+		list.addLast(packet);
+	}
+
+	private static ESPPacket [] mMakePackets(int count)
+	{
+		ESPPacket [] packets = new ESPPacket[count];
+		for (int i = 0; i < count; i++)
+		{
+			SweepDefinition sweep = new SweepDefinition();
+			sweep.setIndex(i % 64);
+			sweep.setUpperFrequencyEdge(33000 + i);
+			sweep.setLowerFrequencyEdge(33000 - i);
+			sweep.setCommit(false);
+			packets[i] = new RequestWriteSweepDefinition(sweep, Devices.VALENTINE1_WITH_CHECKSUM);
+		}
+		return packets;
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.valentine.esp.PacketQueue;
+import com.valentine.esp.constants.Devices;
+import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.request.RequestVersion;
+
+/**
+ * Measures the time from a packet being pushed onto the PacketQueue to the consumer thread taking it off, for a
+ * consumer that polls and sleeps 100 ms when the queue is empty and for one that blocks on the queue. The packets are
+ * pushed at random times, one at a time, the way the V1 sends packets compared to the consumer's sleep. Run on a desktop
+ * JVM with the library classes on the classpath:
+ *
+ * 	javac -cp <library classes> -d out benchmark/com/valentine/esp/benchmark/*.java
+ * 	java -cp <library classes>:out com.valentine.esp.benchmark.QueueLatencyBenchmark
+ */
+public class QueueLatencyBenchmark
+{
+	private static final int 		SAMPLES = 100;
+	private static final long 		POLL_SLEEP_MILLIS = 100;
+	private static final int 		MAX_PUSH_DELAY_MILLIS = 50;
+
+	private interface Consumer
+	{
+		ESPPacket take() throws InterruptedException;
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		final PacketQueue queue = new PacketQueue();
+		final ESPPacket packet = new RequestVersion(Devices.VALENTINE1_WITH_CHECKSUM, Devices.VALENTINE1_WITH_CHECKSUM);
+
+		System.out.println(String.format("%-36s %12s %12s %12s", "Benchmark", "mean us", "median us", "max us"));
+
+		queue.initInputQueue(true);
+		mReport("input queue, polling", queue, packet, true, new Consumer() {
+			public ESPPacket take() throws InterruptedException
+			{
+				ESPPacket rc = queue.getNextInputPacket();
+				if ( rc == null ){
+					Thread.sleep(POLL_SLEEP_MILLIS);
+				}
+				return rc;
+			}
+		});
+		mReport("input queue, blocking", queue, packet, true, new Consumer() {
+			public ESPPacket take() throws InterruptedException
+			{
+				return queue.getNextInputPacket(POLL_SLEEP_MILLIS);
+			}
+		});
+
+		queue.initOutputQueue(Devices.UNKNOWN, true, false);
+		mReport("output queue, polling", queue, packet, false, new Consumer() {
+			public ESPPacket take() throws InterruptedException
+			{
+				ESPPacket rc = queue.getNextOutputPacket();
+				if ( rc == null ){
+					Thread.sleep(POLL_SLEEP_MILLIS);
+				}
+				return rc;
+			}
+		});
+		mReport("output queue, blocking", queue, packet, false, new Consumer() {
+			public ESPPacket take() throws InterruptedException
+			{
+				return queue.getNextOutputPacket(POLL_SLEEP_MILLIS);
+			}
+		});
+	}
+
+	/**
+	 * Pushes SAMPLES packets at random times, waiting for each one to be taken before pushing the next, and prints the
+	 * hand off latency.
+	 */
+	private static void mReport(String name, final PacketQueue queue, final ESPPacket packet, final boolean inputQueue, final Consumer consumer) throws InterruptedException
+	{
+		final long [] taken = new long[SAMPLES];
+		final Object lock = new Object();
+		final int [] takenCount = new int[1];
+
+		Thread consumerThread = new Thread() {
+			public void run()
+			{
+				try {
+					while ( takenCount[0] < SAMPLES ){
+						if ( consumer.take() != null ){
+							synchronized ( lock ){
+								taken[takenCount[0]] = System.nanoTime();
+								takenCount[0]++;
+								lock.notifyAll();
+							}
+						}
+					}
+				}
+				catch (InterruptedException e) {
+					// Stop taking packets
+				}
+			}
+		};
+		consumerThread.start();
+
+		Random random = new Random(1);
+		long [] latency = new long[SAMPLES];
+		for ( int i = 0; i < SAMPLES; i++ ){
+			Thread.sleep(random.nextInt(MAX_PUSH_DELAY_MILLIS));
+
+			long pushed = System.nanoTime();
+			if ( inputQueue ){
+				queue.pushInputPacketOntoQueue(packet);
+			}
+			else{
+				queue.pushOutputPacketOntoQueue(packet);
+			}
+
+			synchronized ( lock ){
+				while ( takenCount[0] <= i ){
+					lock.wait();
+				}
+			}
+			latency[i] = taken[i] - pushed;
+		}
+		consumerThread.join();
+
+		long total = 0;
+		for ( int i = 0; i < SAMPLES; i++ ){
+			total += latency[i];
+		}
+		Arrays.sort(latency);
+		System.out.println(String.format("%-36s %12.1f %12.1f %12.1f", name, total / (SAMPLES * 1000.0),
+				latency[SAMPLES / 2] / 1000.0, latency[SAMPLES - 1] / 1000.0));
+	}
+}
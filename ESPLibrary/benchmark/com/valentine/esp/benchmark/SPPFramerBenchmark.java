@@ -0,0 +1,258 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import com.valentine.esp.constants.Devices;
+import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.SPPFrameBuffer;
+import com.valentine.esp.packets.SPPFrameDecoder;
+import com.valentine.esp.packets.SPPFrameIndex;
+
+/**
+ * Compares the SPP receive path of VR_BluetoothSPPWrapper before and after it moved from an ArrayList<Byte> to the
+ * SPPFrameBuffer ring. Both paths read the {@link FrameMix} frames from an input stream that hands out at most
+ * READ_CHUNK bytes per read, the way the Bluetooth socket delivers data, and build a packet for every frame.
+ *
+ * {@link LegacyFramer} is a copy of the reader and framer the library used before the ring buffer: it boxes every byte
+ * into an ArrayList, copies the list for logging and trims the front of the list for every frame. The state machine that
+ * turned the located frame into a packet is replaced by the SPPFrameDecoder both paths now share, so the numbers compare
+ * the buffering and framing. Run on a desktop JVM with the library classes on the classpath:
+ *
+ * 	javac -cp <library classes> -d out benchmark/com/valentine/esp/benchmark/*.java
+ * 	java -cp <library classes>:out com.valentine.esp.benchmark.SPPFramerBenchmark
+ */
+public class SPPFramerBenchmark
+{
+	private static final int 	STREAM_REPEATS = 200;
+	private static final int [] READ_CHUNKS = { 20, 128, 1024 };
+
+	// Written by every benchmark so the JIT can not remove the work
+	private static int 			m_sink;
+
+	public static void main(String[] args) throws IOException
+	{
+		final Devices v1Type = Devices.VALENTINE1_WITH_CHECKSUM;
+		byte [][] frames = FrameMix.makeFrames(v1Type, true);
+		byte [][] repeated = new byte[frames.length * STREAM_REPEATS][];
+		for (int i = 0; i < repeated.length; i++)
+		{
+			repeated[i] = frames[i % frames.length];
+		}
+		final byte [] stream = FrameMix.concat(repeated);
+		final int frameCount = repeated.length;
+
+		BenchmarkReporter.printHeader();
+
+		for (final int chunk : READ_CHUNKS)
+		{
+			final LegacyFramer legacy = new LegacyFramer();
+			BenchmarkReporter.report("ArrayList<Byte> framer (" + chunk + " B reads)", frameCount, new Runnable() {
+				public void run()
+				{
+					m_sink += mCheckCount(legacy.readAll(new ChunkedInputStream(stream, chunk), v1Type), frameCount);
+				}
+			});
+
+			final SPPFrameBuffer frameBuffer = new SPPFrameBuffer(SPPFrameBuffer.DEFAULT_CAPACITY);
+			final SPPFrameIndex frameIndex = new SPPFrameIndex();
+			BenchmarkReporter.report("SPPFrameBuffer ring (" + chunk + " B reads)", frameCount, new Runnable() {
+				public void run()
+				{
+					m_sink += mCheckCount(mReadAllRing(frameBuffer, frameIndex, new ChunkedInputStream(stream, chunk), v1Type), frameCount);
+				}
+			});
+		}
+
+		System.out.println("(sink " + m_sink + ")");
+	}
+
+	/**
+	 * The read loop VR_BluetoothSPPWrapper.getAvailPackets runs, repeated until the stream is empty.
+	 *
+	 * @return The number of packets built.
+	 */
+	private static int mReadAllRing(SPPFrameBuffer frameBuffer, SPPFrameIndex frameIndex, InputStream inputStream, Devices v1Type)
+	{
+		int packets = 0;
+		try {
+			do
+			{
+				frameBuffer.readFrom(inputStream);
+				int frameCount = frameBuffer.indexFrames(frameIndex, v1Type);
+				for (int i = 0; i < frameCount; i++)
+				{
+					if (frameBuffer.buildPacket(frameIndex, i, v1Type) != null)
+					{
+						packets++;
+					}
+				}
+			} while (inputStream.available() > 0);
+		}
+		catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return packets;
+	}
+
+	private static int mCheckCount(int packets, int expected)
+	{
+		if (packets != expected)
+		{
+			throw new IllegalStateException("Built " + packets + " packets but expected " + expected);
+		}
+		return packets;
+	}
+
+	/**
+	 * An input stream that returns at most the chunk size from each read.
+	 */
+	private static class ChunkedInputStream extends ByteArrayInputStream
+	{
+		private final int 	m_chunk;
+
+		ChunkedInputStream(byte [] data, int chunk)
+		{
+			super(data);
+			m_chunk = chunk;
+		}
+
+		@Override
+		public synchronized int available()
+		{
+			return Math.min(super.available(), m_chunk);
+		}
+
+		@Override
+		public synchronized int read(byte [] b, int off, int len)
+		{
+			return super.read(b, off, Math.min(len, m_chunk));
+		}
+	}
+
+	/**
+	 * The ArrayList<Byte> reader and framer VR_BluetoothSPPWrapper and ESPPacket.makeFromBufferSPP used before the
+	 * SPPFrameBuffer ring was added.
+	 */
+	private static class LegacyFramer
+	{
+		private static final byte 			frameDelimitedConstant = 0x7F;
+		private static final int 			STREAM_BUFFER_SIZE = 1024;
+
+		private final byte [] 				m_streamBuffer = new byte[STREAM_BUFFER_SIZE];
+		private final ArrayList<Byte> 		m_readByteBuffer = new ArrayList<Byte>();
+		private final ArrayList<Byte> 		mLastStartBuffer = new ArrayList<Byte>();
+		private final ArrayList<Byte> 		mLastEndBuffer = new ArrayList<Byte>();
+
+		/**
+		 * Runs the old getAvailPackets read loop until the stream is empty.
+		 *
+		 * @return The number of packets built.
+		 */
+		int readAll(InputStream inputStream, Devices lastV1Type)
+		{
+			int packets = 0;
+			try {
+				do
+				{
+					// First, read all bytes that are available from the Bluetooth socket
+					if (inputStream.available() != 0)
+					{
+						int readSize = inputStream.read(m_streamBuffer);
+						for (int i = 0; i < readSize; i++)
+						{
+							m_readByteBuffer.add(Byte.valueOf(m_streamBuffer[i]));
+						}
+					}
+
+					ESPPacket curPacket;
+					do
+					{
+						curPacket = makeFromBufferSPP(m_readByteBuffer, lastV1Type);
+						if (curPacket != null)
+						{
+							packets++;
+						}
+					} while (curPacket != null);
+				} while (inputStream.available() > 0);
+			}
+			catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return packets;
+		}
+
+		private ESPPacket makeFromBufferSPP(ArrayList<Byte> buffer, Devices lastV1Type)
+		{
+			int startIdx = -1;
+			int endIdx = -1;
+
+			// Make a copy of the buffer as it was at the beginning of the method call
+			ArrayList<Byte> curStartBuffer = new ArrayList<Byte>();
+			mCopyBuffer(buffer, curStartBuffer);
+
+			for (int i = 0; i < buffer.size(); i++)
+			{
+				byte test = buffer.get(i).byteValue();
+				if (test == frameDelimitedConstant)
+				{
+					if (startIdx == -1)
+					{
+						startIdx = i;
+					}
+					else if (i == startIdx + 1)
+					{
+						startIdx = i;
+					}
+					else
+					{
+						endIdx = i;
+						break;
+					}
+				}
+			}
+
+			if (startIdx == -1 || endIdx == -1)
+			{
+				// Copy start and end buffer in case the next call fails
+				mCopyBuffer(curStartBuffer, mLastStartBuffer);
+				mCopyBuffer(buffer, mLastEndBuffer);
+				return null;
+			}
+
+			// The old state machine walked the boxed bytes the same way
+			SPPFrameDecoder decoder = new SPPFrameDecoder();
+			ESPPacket retPacket = null;
+			for (int i = startIdx; i <= endIdx; i++)
+			{
+				retPacket = decoder.processByte(buffer.get(i).byteValue(), lastV1Type);
+			}
+
+			// Remove all bytes up to and including the end index
+			buffer.subList(0, endIdx + 1).clear();
+
+			// Copy start and end buffer in case the next call fails
+			mCopyBuffer(curStartBuffer, mLastStartBuffer);
+			mCopyBuffer(buffer, mLastEndBuffer);
+
+			return retPacket;
+		}
+
+		private static void mCopyBuffer(ArrayList<Byte> src, ArrayList<Byte> dest)
+		{
+			dest.clear();
+			for (int i = 0; i < src.size(); i++)
+			{
+				byte b = src.get(i);
+				dest.add(b);
+			}
+		}
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.bluetooth;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+/**
+ * Compares the fixed limit of 4 packets waiting on an echo with the {@link EchoWindow} by simulating a bulk write, such as
+ * sweep programming, in virtual time. It is in the bluetooth package because EchoWindow is package private.
+ *
+ * The link model is an assumption, not a measurement of real hardware. Each write holds the Bluetooth link for a fixed
+ * time and reaches the V1connection after a fixed one way latency. The V1connection buffers a limited number of packets
+ * and places one on the ESP bus at a fixed interval; the echo comes back after the one way latency. A packet that arrives
+ * at a full buffer is answered with respRequestNotProcessed and sent again. While the V1 is busy it sends infV1Busy every
+ * 70 ms and, as in DataWriterThread, packets of the busy id are held back. Run on a desktop JVM with the library classes
+ * on the classpath:
+ *
+ * 	javac -cp <library classes> -d out benchmark/com/valentine/esp/benchmark/*.java benchmark/com/valentine/esp/bluetooth/*.java
+ * 	java -cp <library classes>:out com.valentine.esp.bluetooth.EchoWindowBenchmark
+ */
+public class EchoWindowBenchmark
+{
+	private static final int 	PACKETS = 200;
+	private static final int 	FIXED_WINDOW = 4;
+	private static final long 	PURGE_MILLIS = 1000;
+	private static final long 	BUSY_PACKET_INTERVAL_MILLIS = 70;
+	private static final long 	MAX_MILLIS = 10 * 60 * 1000;
+
+	/**
+	 * The link parameters of one simulated run.
+	 */
+	private static class Scenario
+	{
+		final String 	name;
+		final long 		writeMillis;
+		final long 		latencyMillis;
+		final long 		drainMillis;
+		final int 		bufferSize;
+		final long 		busyEveryMillis;
+		final long 		busyForMillis;
+
+		Scenario(String name, long writeMillis, long latencyMillis, long drainMillis, int bufferSize, long busyEveryMillis, long busyForMillis)
+		{
+			this.name = name;
+			this.writeMillis = writeMillis;
+			this.latencyMillis = latencyMillis;
+			this.drainMillis = drainMillis;
+			this.bufferSize = bufferSize;
+			this.busyEveryMillis = busyEveryMillis;
+			this.busyForMillis = busyForMillis;
+		}
+
+		boolean isBusy(long now)
+		{
+			return busyEveryMillis > 0 && (now % busyEveryMillis) >= busyEveryMillis - busyForMillis;
+		}
+	}
+
+	private static final Scenario [] SCENARIOS = {
+		new Scenario("healthy link", 4, 20, 5, 16, 0, 0),
+		new Scenario("healthy link, V1 busy", 4, 20, 5, 16, 600, 200),
+		new Scenario("struggling link", 4, 20, 40, 2, 0, 0),
+	};
+
+	/**
+	 * The result of one simulated run.
+	 */
+	private static class Result
+	{
+		long 	millis;
+		int 	notProcessed;
+		int 	purged;
+		int 	maxWindow;
+	}
+
+	public static void main(String[] args)
+	{
+		System.out.println(String.format("%-28s %-10s %10s %12s %8s %10s", "Scenario", "Window", "ms", "not proc.", "purged", "max window"));
+		for (Scenario scenario : SCENARIOS)
+		{
+			mPrint(scenario, "fixed " + FIXED_WINDOW, mSimulate(scenario, null));
+			mPrint(scenario, "adaptive", mSimulate(scenario, new EchoWindow()));
+		}
+	}
+
+	private static void mPrint(Scenario scenario, String window, Result result)
+	{
+		System.out.println(String.format("%-28s %-10s %10d %12d %8d %10d", scenario.name, window, result.millis, result.notProcessed,
+				result.purged, result.maxWindow));
+	}
+
+	/**
+	 * Writes PACKETS packets through the simulated link, one millisecond at a time.
+	 *
+	 * @param window	The window to use, or null to use the fixed limit.
+	 */
+	private static Result mSimulate(Scenario scenario, EchoWindow window)
+	{
+		Result result = new Result();
+		LinkedList<Integer> toSend = new LinkedList<Integer>();
+		for (int i = 0; i < PACKETS; i++)
+		{
+			toSend.add(i);
+		}
+		// Each entry is { time, packet }
+		ArrayList<long []> pending = new ArrayList<long []>();
+		ArrayList<long []> arriving = new ArrayList<long []>();
+		ArrayList<long []> echoes = new ArrayList<long []>();
+		ArrayList<long []> notProcessed = new ArrayList<long []>();
+		LinkedList<Integer> buffer = new LinkedList<Integer>();
+		long linkFreeAt = 0;
+		int echoed = 0;
+
+		long now = 0;
+		for (; echoed < PACKETS && now < MAX_MILLIS; now++)
+		{
+			for (long [] echo : mDue(echoes, now))
+			{
+				long sent = mRemovePending(pending, (int)echo[1]);
+				if (sent < 0)
+				{
+					// The echo of a purged packet, which has been queued to send again
+					continue;
+				}
+				if (window != null)
+				{
+					window.onEcho(now - sent);
+				}
+				echoed++;
+			}
+			for (long [] response : mDue(notProcessed, now))
+			{
+				mRemovePending(pending, (int)response[1]);
+				if (window != null)
+				{
+					window.onCongestion(now);
+				}
+				toSend.addFirst((int)response[1]);
+				result.notProcessed++;
+			}
+			for (int i = pending.size() - 1; i >= 0; i--)
+			{
+				if (now - pending.get(i)[0] > PURGE_MILLIS)
+				{
+					toSend.addFirst((int)pending.remove(i)[1]);
+					if (window != null)
+					{
+						window.onCongestion(now);
+					}
+					result.purged++;
+				}
+			}
+
+			for (long [] arrival : mDue(arriving, now))
+			{
+				if (buffer.size() < scenario.bufferSize)
+				{
+					buffer.addLast((int)arrival[1]);
+				}
+				else
+				{
+					notProcessed.add(new long [] { now + scenario.latencyMillis, arrival[1] });
+				}
+			}
+			if (now % scenario.drainMillis == 0 && !buffer.isEmpty())
+			{
+				echoes.add(new long [] { now + scenario.latencyMillis, buffer.removeFirst() });
+			}
+
+			boolean busy = scenario.isBusy(now);
+			if (busy && window != null && now % BUSY_PACKET_INTERVAL_MILLIS == 0)
+			{
+				long oldestEchoMillis = 0;
+				for (int i = 0; i < pending.size(); i++)
+				{
+					oldestEchoMillis = Math.max(oldestEchoMillis, now - pending.get(i)[0]);
+				}
+				// Every packet written is the same request, so any packet waiting on an echo is in the busy list
+				window.onV1Busy(now, oldestEchoMillis, !pending.isEmpty());
+			}
+
+			int size = (window == null) ? FIXED_WINDOW : window.getSize();
+			result.maxWindow = Math.max(result.maxWindow, size);
+			if (!busy && now >= linkFreeAt && !toSend.isEmpty() && pending.size() < size)
+			{
+				int packet = toSend.removeFirst();
+				pending.add(new long [] { now, packet });
+				arriving.add(new long [] { now + scenario.writeMillis + scenario.latencyMillis, packet });
+				linkFreeAt = now + scenario.writeMillis;
+			}
+		}
+		result.millis = now;
+		return result;
+	}
+
+	/**
+	 * Removes and returns the events that are due.
+	 */
+	private static ArrayList<long []> mDue(ArrayList<long []> events, long now)
+	{
+		ArrayList<long []> due = new ArrayList<long []>();
+		for (int i = 0; i < events.size(); i++)
+		{
+			if (events.get(i)[0] <= now)
+			{
+				due.add(events.remove(i));
+				i--;
+			}
+		}
+		return due;
+	}
+
+	/**
+	 * Removes the packet from the packets waiting on an echo and returns the time it was written, or -1 if it was not
+	 * waiting.
+	 */
+	private static long mRemovePending(ArrayList<long []> pending, int packet)
+	{
+		for (int i = 0; i < pending.size(); i++)
+		{
+			if (pending.get(i)[1] == packet)
+			{
+				return pending.remove(i)[0];
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license. 
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp;
+
+import com.valentine.esp.packets.ESPPacket;
+
+/**
+ * The reason a {@link RequestFuture} failed. It is the cause of the ExecutionException thrown by RequestFuture.get().
+ */
+public class ESPRequestException extends Exception
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Why the request did not get a response.
+	 */
+	public enum Reason
+	{
+		/**
+		 * The device answered with respUnsupportedPacket.
+		 */
+		UNSUPPORTED,
+		/**
+		 * The device answered with respRequestNotProcessed, after the library had already sent the request again.
+		 */
+		NOT_PROCESSED,
+		/**
+		 * The device answered with respDataError.
+		 */
+		DATA_ERROR,
+		/**
+		 * No response arrived before the request timed out.
+		 */
+		TIMEOUT,
+		/**
+		 * The library was stopped before a response arrived.
+		 */
+		STOPPED
+	}
+
+	private final Reason 		m_reason;
+	private final ESPPacket 	m_request;
+
+	/**
+	 * Creates the exception for a request that failed.
+	 * 
+	 * @param reason	Why the request failed.
+	 * @param request	The request packet that failed.
+	 */
+	public ESPRequestException(Reason reason, ESPPacket request)
+	{
+		super(request.getPacketIdentifier().toString() + " to " + request.getDestination().toString() + " failed: " + reason.toString());
+		m_reason = reason;
+		m_request = request;
+	}
+
+	/**
+	 * Retrieve why the request failed.
+	 * 
+	 * @return The reason the request failed.
+	 */
+	public Reason getReason()
+	{
+		return m_reason;
+	}
+
+	/**
+	 * Retrieve the request packet that failed.
+	 * 
+	 * @return The request packet.
+	 */
+	public ESPPacket getRequest()
+	{
+		return m_request;
+	}
+}
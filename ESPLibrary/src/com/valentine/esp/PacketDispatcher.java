@@ -0,0 +1,543 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.valentine.esp.constants.ESPLibraryLogController;
+import com.valentine.esp.constants.PacketId;
+import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.PacketPool;
+import com.valentine.esp.utilities.ESPLog;
+
+/** The callback registry and the processing thread that hands the packets received from the ESP bus to the registered
+ * 	callbacks. It only depends on the packet, queue and utilities classes, so packets can be dispatched on a desktop JVM,
+ * 	for example to replay a captured session in a test. {@link ValentineESP} owns one for each connection and forwards
+ * 	its registration methods to it.
+ *
+ * 	Each packet is first passed to the {@link RequestTracker}, then to every callback registered for its packet id, and
+ * 	is then released to the {@link PacketPool}. Callbacks can register and deregister while a packet is being
+ * 	dispatched; changes for the packet id that is being dispatched are applied once its callbacks have returned.
+ */
+public class PacketDispatcher
+{
+	private static final String 	LOG_TAG = "ValentineESP LOG";
+
+	/**
+	 * Told about a callback that threw an exception other than one thrown by the callback method itself.
+	 */
+	public interface ErrorListener
+	{
+		/**
+		 * Called on the processing thread when a callback could not be made.
+		 *
+		 * @param error	A description of the error.
+		 */
+		void onCallbackError(String error);
+	}
+
+	/**
+	 * Class to hold the callback data.
+	 */
+	private static class CallbackData
+	{
+		public Object callBackOwner;
+		public String method;
+	}
+
+	/**
+	 * Object to hold the items needed to register or deregister a callback
+	 */
+	private static class TempCallbackInfo
+	{
+		public PacketId type;
+		public Object callBackObject;
+		public String method;
+	}
+
+	private final PacketQueue 					m_packetQueue;
+	private final RequestTracker 				m_requestTracker;
+	private final ErrorListener 				m_errorListener;
+
+	private Map<PacketId, ArrayList<CallbackData>> m_callbackData = new HashMap<PacketId, ArrayList<CallbackData>>();
+
+	// The m_packetCallbackLock protects all of the following class members.
+	private ReentrantLock						m_packetCallbackLock = new ReentrantLock();
+	private PacketId							m_lockedPacket = PacketId.unknownPacketType;
+	private ArrayList<TempCallbackInfo>			m_packetsToDeregister = new ArrayList<TempCallbackInfo>();
+	private ArrayList<TempCallbackInfo> 		m_packetsToRegister = new ArrayList<TempCallbackInfo>();
+	private boolean								m_clearAllCallbacksOnUnlock = false;
+
+	private ProcessingThread 					m_processingThread;
+
+	/**
+	 * Creates a dispatcher for the packets pushed onto a packet queue, with its own request tracker.
+	 *
+	 * @param packetQueue		The queue the received packets are taken from.
+	 * @param errorListener		Told about callbacks that could not be made. May be null.
+	 */
+	public PacketDispatcher(PacketQueue packetQueue, ErrorListener errorListener)
+	{
+		this(packetQueue, new RequestTracker(packetQueue), errorListener);
+	}
+
+	/**
+	 * Creates a dispatcher for the packets pushed onto a packet queue.
+	 *
+	 * @param packetQueue		The queue the received packets are taken from.
+	 * @param requestTracker	The tracker that sees every packet before the callbacks do.
+	 * @param errorListener		Told about callbacks that could not be made. May be null.
+	 */
+	PacketDispatcher(PacketQueue packetQueue, RequestTracker requestTracker, ErrorListener errorListener)
+	{
+		m_packetQueue = packetQueue;
+		m_requestTracker = requestTracker;
+		m_errorListener = errorListener;
+	}
+
+	/**
+	 * Starts the processing thread if it is not running.
+	 */
+	public void start()
+	{
+		if ((m_processingThread == null) || (!m_processingThread.isAlive()))
+		{
+			m_processingThread = new ProcessingThread();
+			m_processingThread.start();
+		}
+	}
+
+	/**
+	 * Tells the processing thread to stop. The thread finishes the packet it is dispatching.
+	 */
+	public void stop()
+	{
+		if (m_processingThread != null)
+		{
+			m_processingThread.setRun(false);
+			m_processingThread.interrupt();
+			// Once the processing thread is stopped always set the object to null so it will be GB'd.
+			m_processingThread = null;
+		}
+	}
+
+	/**
+	 * Determine if the processing thread is running.
+	 *
+	 * @return 	Returns true if the processing thread is alive otherwise, false.
+	 */
+	public boolean isRunning()
+	{
+		if (m_processingThread == null)
+		{
+			return false;
+		}
+		return m_processingThread.isAlive();
+	}
+
+	/**
+	 * This method will set the locked packet type for this object. A locked Packet can not have any new
+	 * callbacks registered or any current callbacks deregistered. This is to prevent modifying
+	 * the arraylist while it is being traversed.
+	 *
+	 * @param lockedType The packet type to lock
+	 */
+	void setLockedPacket (PacketId lockedType)
+	{
+		m_packetCallbackLock.lock();
+		m_lockedPacket = lockedType;
+
+		if ( lockedType.toByteValue() == PacketId.unknownPacketType.toByteValue() ){
+			if ( m_clearAllCallbacksOnUnlock ){
+				// A request to clear all callbacks was received while we had a locked packet
+				if ( ESPLibraryLogController.LOG_WRITE_VERBOSE ){
+		    		ESPLog.v(LOG_TAG, "Clearing " + m_callbackData.size() + " callbacks after waiting for unlock");
+				}
+
+				m_callbackData.clear();
+				m_clearAllCallbacksOnUnlock = false;
+			}
+
+			// Note that we want to process the pending registrations and deregistrations even if m_clearAllCallbacksOnUnlock is set. We are doing that
+			// just in case someone performed one of those actions after calling clearAllCallbacks.
+
+			// If the packet passed in is for an unknown packet type, we are free to handle the packets that
+			// are queued up for registration and deregistration.
+			for ( int i = 0; i < m_packetsToDeregister.size(); i++ ){
+				TempCallbackInfo curInfo = m_packetsToDeregister.get(i);
+				// Call the private method because we have the queue locked
+				m_deregisterForPacket(curInfo.type, curInfo.callBackObject, curInfo.method);
+			}
+			m_packetsToDeregister.clear();
+
+			for ( int i = 0; i < m_packetsToRegister.size(); i++ ){
+				TempCallbackInfo temp = m_packetsToRegister.get(i);
+				// Call the private method because we have the queue locked
+				m_registerForPacket(temp.type, temp.callBackObject, temp.method);
+			}
+			m_packetsToRegister.clear();
+		}
+		m_packetCallbackLock.unlock();
+	}
+
+	/** This registers an object/function combination to be notified when a specific ESP packet is received.
+	 *  Requires a function with a Void parameter:  public void function( ESPPacket _parameter)
+	 *
+	 * @param _type - The packet id the registration is for.
+	 * @param _callBackObject - The object to use for the callback.
+	 * @param _method - The method in _callbackObject to call.
+	 */
+	public void registerForPacket(PacketId _type, Object _callBackObject, String _method)
+	{
+		m_packetCallbackLock.lock();
+		if ( m_lockedPacket.toByteValue() != _type.toByteValue() ){
+			// We are allowed to register the packet right now
+			m_registerForPacket(_type, _callBackObject, _method);
+		}
+		else{
+			// We are not allowed to register the packet right now. Put it in the queue for registration later.
+			m_packetsToRegister.add( m_makeTempInfo(_type, _callBackObject, _method) );
+		}
+		m_packetCallbackLock.unlock();
+	}
+
+	/**
+	 * This method will perform the actual work for registering a callback packet for a specific object.
+	 *
+	 * @precondition The caller has m_packetCallbackLock locked.
+	 *
+	 * @param _type - The packet type to register.
+	 * @param _callBackObject - The object to register.
+	 * @param _method - The name of the callback method.
+	 */
+	private void m_registerForPacket(PacketId _type, Object _callBackObject, String _method)
+	{
+		CallbackData newCallbackData = new CallbackData();
+		newCallbackData.callBackOwner = _callBackObject;
+		newCallbackData.method = _method;
+
+		if (m_callbackData.containsKey(_type))
+		{
+			ArrayList<CallbackData> list = m_callbackData.get(_type);
+			list.add(newCallbackData);
+		}
+		else
+		{
+			ArrayList<CallbackData> newList = new ArrayList<CallbackData>();
+			newList.add(newCallbackData);
+			m_callbackData.put(_type, newList);
+		}
+	}
+
+	/**
+	 * This method will deregister callback set up using registerForPacket. Only the callback that matches the object and
+	 * method passed in will be deregistered.
+	 *
+	 * @param _type		The packet id to deregister.
+	 * @param _object	The object to deregister.
+	 * @param _method	The callback method.
+	 */
+	public void deregisterForPacket(PacketId _type, Object _object, String _method)
+	{
+		m_packetCallbackLock.lock();
+		if ( m_lockedPacket.toByteValue() != _type.toByteValue() ){
+			// We are allowed to deregister the packet right now
+			m_deregisterForPacket(_type, _object, _method);
+		}
+		else{
+			// We are not allowed to deregister the packet right now. Put it in the queue for deregistration later.
+			m_packetsToDeregister.add( m_makeTempInfo(_type, _object, _method) );
+		}
+		m_packetCallbackLock.unlock();
+	}
+
+	/**
+	 * This method will deregister callback set up using registerForPacket. All callbacks for the PacketId and object
+	 * passed in will be deregistered.
+	 *
+	 * @param _type - The packet id to deregister.
+	 * @param _object - The object to deregister.
+	 */
+	public void deregisterForPacket(PacketId _type, Object _object)
+	{
+		deregisterForPacket(_type, _object, "");
+	}
+
+	/**
+	 * This method will perform the actual work for deregistering a packet for a specific object.
+	 *
+	 * @precondition The caller has m_packetCallbackLock locked.
+	 *
+	 * @param _type - The packet type to deregister
+	 * @param _object - The object to deregister.
+	 * @params _method - If "", then remove all callbacks else remove only the callbacks to _method.
+	 */
+	private void m_deregisterForPacket(PacketId _type, Object _object, String _method)
+	{
+		if (m_callbackData.containsKey(_type))
+		{
+			for (Iterator<Entry<PacketId, ArrayList<CallbackData>>> it = m_callbackData.entrySet().iterator(); it.hasNext();)
+			{
+			    Map.Entry<PacketId, ArrayList<CallbackData>> pairs = (Map.Entry<PacketId, ArrayList<CallbackData>>)it.next();
+
+			    if (pairs.getKey() == _type)
+			    {
+				    for (Iterator<CallbackData> it2 = pairs.getValue().iterator(); it2.hasNext();)
+				    {
+				    	CallbackData data = it2.next();
+				    	if (data.callBackOwner == _object && (_method == "" || _method == data.method) )
+				    	{
+				    		if ( ESPLibraryLogController.LOG_WRITE_VERBOSE ){
+				    			ESPLog.v(LOG_TAG, "Deregistering " + data.callBackOwner.toString() + "." + data.method + " for packet id " + _type.toString());
+				    		}
+
+				    		it2.remove();
+				    		break;
+				    	}
+				    }
+			    }
+
+			}
+		}
+	}
+
+	/**
+	 * This method will allow the caller to determine if they have already registered for a specific packet using registerForPacket.
+	 *
+	 * @param _type - The PacketId to search for.
+	 * @param _object - The object to search for.
+	 *
+	 * @return - true if the obect is already registered for the packet id passed in, else false.
+	 */
+	public boolean isRegisteredForPacket (PacketId _type, Object _object)
+	{
+		boolean rc = false;
+
+		// Lock here so the queue doesn't get modified while we are traversing it.
+		m_packetCallbackLock.lock();
+
+		ArrayList<CallbackData> list = m_callbackData.get(_type);
+		if (list != null)
+		{
+			for (int i = 0; i < list.size(); i++)
+			{
+				if (list.get(i).callBackOwner == _object)
+				{
+					// Found a registration for the requested packet
+					rc = true;
+					break;
+				}
+			}
+		}
+
+		m_packetCallbackLock.unlock();
+
+		return rc;
+	}
+
+	/**
+	 * This method will remove all callbacks set up using registerForPacket.
+	 */
+	public void clearAllCallbacks()
+	{
+		m_packetCallbackLock.lock();
+		if ( m_lockedPacket.toByteValue() == PacketId.unknownPacketType.toByteValue() ){
+		// We don't have a locked packet, so just clear everything
+			if ( ESPLibraryLogController.LOG_WRITE_VERBOSE ){
+	    		ESPLog.v(LOG_TAG, "Clearing " + m_callbackData.size() + " callbacks");
+			}
+
+			m_callbackData.clear();
+			m_clearAllCallbacksOnUnlock = false;
+		}
+		else{
+		// We have a locked packet type, so set the flag to clear all packets when we unlock the current packet type
+			m_clearAllCallbacksOnUnlock = true;
+		}
+
+		// Clear the pending queues while we are locked
+		m_packetsToDeregister.clear();
+		m_packetsToRegister.clear();
+
+		m_packetCallbackLock.unlock();
+	}
+
+	/**
+	 * This method will clear all callbacks set up using registerForPacket for the packet id passed in
+	 *
+	 * @param _type - The packet id to deregister.
+	 */
+	public void clearCallbacks(PacketId _type)
+	{
+		// Keep this locked for the duration of this method
+		m_packetCallbackLock.lock();
+
+		for (Iterator<Entry<PacketId, ArrayList<CallbackData>>> it = m_callbackData.entrySet().iterator(); it.hasNext();)
+		{
+		    Map.Entry<PacketId, ArrayList<CallbackData>> pairs = (Map.Entry<PacketId, ArrayList<CallbackData>>)it.next();
+
+		    if (pairs.getKey() == _type)
+		    {
+		    	if ( _type.toByteValue() != m_lockedPacket.toByteValue() ){
+		    		if ( ESPLibraryLogController.LOG_WRITE_VERBOSE ){
+		        		ESPLog.v(LOG_TAG, "Clearing all callbacks for packet id " + _type.toString());
+		    		}
+
+		    		it.remove();
+		    		break;
+		    	}
+		    	else{
+		    		// Add all callbacks of this packet type to the pending degistration queue
+		    		for ( int i = 0; i < pairs.getValue().size(); i++ ){
+		    			m_packetsToDeregister.add( m_makeTempInfo(pairs.getKey(), pairs.getValue().get(i).callBackOwner, "") );
+		    		}
+		    	}
+		    }
+		}
+
+		m_packetCallbackLock.unlock();
+	}
+
+	/**
+	 * Passes one received packet to the request tracker and the registered callbacks, then releases it to the
+	 * PacketPool. This is what the processing thread does with every packet it takes off the queue, and can be called
+	 * directly when there is no processing thread, such as when a capture is replayed in a test.
+	 *
+	 * @param packet	A packet received from the ESP bus.
+	 */
+	public void dispatch(ESPPacket packet)
+	{
+		// Complete the requests this packet answers before the callbacks see it
+		m_requestTracker.onPacketReceived(packet);
+
+		if (m_callbackData.containsKey(packet.getPacketIdentifier()))
+		{
+			// Do not allow deregistering packets while iterating through this list because that will
+			// cause a structural change to the list, which should not be done while iterating through
+			// the list.
+			setLockedPacket( packet.getPacketIdentifier() );
+
+			final ArrayList<CallbackData> list = m_callbackData.get(packet.getPacketIdentifier());
+
+			for (int i = 0; i < list.size(); i++)
+			{
+				CallbackData data = list.get(i);
+				if (data != null)
+				{
+					m_doCallback(data, packet);
+				}
+			}
+		}
+
+		// Allow registering and deregistering after we are done processing this packet
+		setLockedPacket( PacketId.unknownPacketType );
+
+		// Every callback has returned, so a pooled packet can be reused
+		PacketPool.release(packet);
+	}
+
+	/**
+	 * This method performs the actual callback for packets registered using registerForPacket
+	 *
+	 * @param _callbackData - The callback information.
+	 * @param _packet - The ESP packet to pass through the callback.
+	 */
+	private void m_doCallback(CallbackData _callbackData, ESPPacket _packet)
+	{
+		try
+		{
+			if (_callbackData.callBackOwner != null)
+			{
+				Class<? extends ESPPacket> packetClass = _packet.getClass();
+				_callbackData.callBackOwner.getClass().getMethod(_callbackData.method, packetClass).invoke(_callbackData.callBackOwner, _packet);
+			}
+		}
+		catch ( InvocationTargetException e )
+		{
+			if(ESPLibraryLogController.LOG_WRITE_INFO){
+				ESPLog.i(LOG_TAG, _callbackData.callBackOwner.toString() + " " + _callbackData.method + " There was an invoke error calling back to owner: " + e.getTargetException().toString());
+			}
+			e.printStackTrace();
+		}
+		catch (Exception e)
+		{
+			if (m_errorListener != null)
+			{
+				m_errorListener.onCallbackError(e.toString());
+			}
+			if(ESPLibraryLogController.LOG_WRITE_INFO){
+				ESPLog.i(LOG_TAG, _callbackData.callBackOwner.toString() + " " + _callbackData.method + " There was an error calling back to owner: " + e.toString());
+			}
+			e.printStackTrace();
+		}
+	}
+
+	private static TempCallbackInfo m_makeTempInfo(PacketId _type, Object _object, String _method)
+	{
+		TempCallbackInfo info = new TempCallbackInfo();
+		info.type = _type;
+		info.callBackObject = _object;
+		info.method = _method;
+		return info;
+	}
+
+	/**
+	 * The ProcessingThread class is responsible for processing all packets received from the ESP bus.
+	 */
+	private class ProcessingThread extends Thread
+	{
+		private volatile boolean m_run;
+
+		/**
+		 * Sets or clears the flag to keep the thread running.
+		 * @param _run - Set to true to keep the thread running, set to false to stop the thread.
+		 */
+		public void setRun(boolean _run)
+		{
+			m_run = _run;
+		}
+
+		/**
+		 * ProcessingThread constructor.
+		 */
+		public ProcessingThread()
+		{
+			m_run = true;
+		}
+
+		/**
+		 * This is the actual thread execution method.
+		 */
+		public void run()
+		{
+			while (m_run)
+			{
+				try
+				{
+					// Wait for the next packet. The reader thread wakes this thread as soon as it queues one.
+					ESPPacket packet = m_packetQueue.getNextInputPacket(100);
+
+					if (packet != null)
+					{
+						dispatch(packet);
+					}
+
+					m_requestTracker.expire(System.nanoTime());
+				}
+				catch (Exception e)
+				{
+					m_run = false;
+				}
+			}
+		}
+	}
+}
@@ -9,65 +9,320 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
-import android.util.Log;
-
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.constants.ESPLibraryLogController;
+import com.valentine.esp.constants.OutputPriority;
 import com.valentine.esp.constants.PacketId;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.PacketPool;
+import com.valentine.esp.utilities.ESPLog;
 
 /** This class encapsulates the input and output packet queues used by the ESP client and the reading and 
  * 	writing threads.  Should not be needed to be directly used.
+ * 
+ * 	The input queue can coalesce state packets, see setInputCoalescing(). While coalescing is on, a state packet that
+ * 	arrives while an older packet with the same id is still waiting replaces the older one, so a slow callback gets the
+ * 	latest display data instead of a backlog of stale frames. Other packets are always delivered in order.
+ * 
+ * 	The output queue has one FIFO for each {@link OutputPriority}. getNextOutputPacket() always returns the oldest packet
+ * 	of the highest priority class, so a mute request is not held up by a burst of sweep programming packets. Only the
+ * 	mute, display and mode requests are URGENT by default; every other packet is NORMAL and is sent in the order it was
+ * 	queued, so a settings read never overtakes the write before it. The priority of each packet id can be changed with
+ * 	setOutputPriority().
+ * 
+ * 	Each {@link ValentineESP} owns its own PacketQueue, along with the busy list and the last packets written, so
+ * 	several connections can run in the same process without sharing any queue state.
  *
  */
 public class PacketQueue 
 {
-	private static ReentrantLock m_inlock = new ReentrantLock();
-	private static ReentrantLock m_outlock = new ReentrantLock(); 
+	private ReentrantLock m_inlock = new ReentrantLock();
+	private ReentrantLock m_outlock = new ReentrantLock(); 
 	
-	private static LinkedList<ESPPacket> m_inputQueue = new LinkedList<ESPPacket>();
-	private static LinkedList<ESPPacket> m_outputQueue = new LinkedList<ESPPacket>();
+	// Signalled when a packet is pushed onto the input queue
+	private Condition m_inputAvailable = m_inlock.newCondition();
+	// Signalled when getNextOutputPacket might return a packet it could not return before
+	private Condition m_outputAvailable = m_outlock.newCondition();
+	// Signalled when the list of packet ids the V1 is busy with changes
+	private Condition m_busyChanged = m_outlock.newCondition();
 	
-	private static boolean m_holdoffOutput = true;						// If true, getNextOutputPacket will return null
-	private static Devices m_v1Type = Devices.UNKNOWN;					// This is used to rebuild ESP packets before they are written to the hardware if the V1 type changes while there are packets in the queue.
+	private LinkedList<ESPPacket> m_inputQueue = new LinkedList<ESPPacket>();
 	
-	private static ArrayList<Byte> m_busyPacketIds = new ArrayList<Byte>();
+	private boolean m_coalesceInput = false;
+	// True for the packet ids that are coalesced, indexed by the packet id byte
+	private boolean [] m_coalescedIds = new boolean[256];
+	// For each coalesced packet id waiting in the input queue, the packet that holds its place in the queue and the
+	// latest packet received with that id, which is delivered in its place. Indexed by the packet id byte.
+	private ESPPacket [] m_queuedState = new ESPPacket[256];
+	private ESPPacket [] m_latestState = new ESPPacket[256];
+	private long m_coalescedCount;
+	// One output FIFO for each priority class, indexed by OutputPriority.ordinal()
+	private ArrayList<LinkedList<ESPPacket>> m_outputQueues = new ArrayList<LinkedList<ESPPacket>>();
+	// The packets in the output queues, keyed by ESPPacket.getContentHash(), so a duplicate can be found without walking
+	// the queues. Queued packets are not changed until they are taken off the queue, so their hash stays the same.
+	private HashMap<Integer, ArrayList<ESPPacket>> m_outputIndex = new HashMap<Integer, ArrayList<ESPPacket>>();
+	// The priority class of each packet id, indexed by the packet id byte
+	private OutputPriority [] m_outputPriorities = new OutputPriority[256];
 	
-	private static Map<PacketId, ESPPacket> m_lastSentPacket = new HashMap<PacketId, ESPPacket>();
+	private boolean m_holdoffOutput = true;						// If true, getNextOutputPacket will return null
+	private Devices m_v1Type = Devices.UNKNOWN;					// This is used to rebuild ESP packets before they are written to the hardware if the V1 type changes while there are packets in the queue.
 	
-	private static ArrayList<ESPPacket> m_toSendAfterBusyClear = new ArrayList<ESPPacket>();
+	// The packet ids the V1 is busy with, as a 256 bit set indexed by the packet id byte. A set is never changed once it
+	// has been published, so the writer thread reads it without taking the lock. New sets are published under m_outlock.
+	private volatile long [] m_busyPacketIds = new long[4];
 	
-	/** Returns the next packet from the Valentine One
-	 * 
-	 * @return ESPPacket	The next packet from the Valentine One
+	private Map<PacketId, ESPPacket> m_lastSentPacket = new HashMap<PacketId, ESPPacket>();
+	
+	private ArrayList<ESPPacket> m_toSendAfterBusyClear = new ArrayList<ESPPacket>();
+	// True for each packet id in m_toSendAfterBusyClear, indexed by the packet id byte
+	private boolean [] m_sendAfterBusyIds = new boolean[256];
+	
+	/**
+	 * Creates empty input and output queues. The output is held off until setHoldoffOutput() is called with false.
 	 */
-	public static ESPPacket getNextInputPacket()
+	public PacketQueue()
 	{
-		ESPPacket rc;
-		m_inlock.lock();
-		if (m_inputQueue.size() == 0)
+		m_coalescedIds[PacketId.infDisplayData.toByteValue() & 0xFF] = true;
+		
+		for (int i = 0; i < OutputPriority.values().length; i++)
 		{
-			rc = null;
+			m_outputQueues.add(new LinkedList<ESPPacket>());
 		}
-		else
+		
+		for (int i = 0; i < m_outputPriorities.length; i++)
 		{
-			rc = m_inputQueue.remove();
+			m_outputPriorities[i] = OutputPriority.NORMAL;
 		}
+		// Direct user actions
+		mSetDefaultPriority(PacketId.reqMuteOn, OutputPriority.URGENT);
+		mSetDefaultPriority(PacketId.reqMuteOff, OutputPriority.URGENT);
+		mSetDefaultPriority(PacketId.reqTurnOffMainDisplay, OutputPriority.URGENT);
+		mSetDefaultPriority(PacketId.reqTurnOnMainDisplay, OutputPriority.URGENT);
+		mSetDefaultPriority(PacketId.reqChangeMode, OutputPriority.URGENT);
+		// Reads and writes of the same settings stay in one class, so a read sent after a write returns the new value
+	}
+	
+	private void mSetDefaultPriority(PacketId packetId, OutputPriority priority)
+	{
+		m_outputPriorities[packetId.toByteValue() & 0xFF] = priority;
+	}
+	
+	/** Sets the priority class packets with a packet id are sent with. Packets that are already in the output queue keep
+	 * 	the priority they were queued with. Give a read the same class as the write it follows, or the read can be sent
+ * 	first and return the old value.
+	 * 
+	 * @param packetId	The packet id to change the priority of.
+	 * @param priority	The priority class to send the packets in.
+	 */
+	public void setOutputPriority(PacketId packetId, OutputPriority priority)
+	{
+		m_outlock.lock();
+		m_outputPriorities[packetId.toByteValue() & 0xFF] = priority;
+		m_outlock.unlock();
+	}
+	
+	/** Get the priority class packets with a packet id are sent with.
+	 * 
+	 * @param packetId	The packet id to look up.
+	 * 
+	 * @return The priority class of the packet id.
+	 */
+	public OutputPriority getOutputPriority(PacketId packetId)
+	{
+		m_outlock.lock();
+		OutputPriority retVal = m_outputPriorities[packetId.toByteValue() & 0xFF];
+		m_outlock.unlock();
+		
+		return retVal;
+	}
+	
+	/** Returns the next packet from the Valentine One
+	 * 
+	 * @return ESPPacket	The next packet from the Valentine One
+	 */
+	public ESPPacket getNextInputPacket()
+	{
+		m_inlock.lock();
+		ESPPacket rc = mTakeInputPacket();
 		m_inlock.unlock();
 		return rc;
 	}
 	
+	/** Returns the next packet from the Valentine One, waiting for one to be pushed if the queue is empty. The wait ends
+	 * 	as soon as a packet is pushed, so the packet is handed over without the delay of polling.
+	 * 
+	 * @param timeoutMillis	The longest time to wait for a packet, in milliseconds.
+	 * 
+	 * @return ESPPacket	The next packet from the Valentine One, or null if no packet was pushed before the timeout.
+	 * 
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	public ESPPacket getNextInputPacket(long timeoutMillis) throws InterruptedException
+	{
+		long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		m_inlock.lock();
+		try {
+			while (m_inputQueue.size() == 0 && remaining > 0)
+			{
+				remaining = m_inputAvailable.awaitNanos(remaining);
+			}
+			return mTakeInputPacket();
+		}
+		finally {
+			m_inlock.unlock();
+		}
+	}
+	
 	/** Pushes a packet from the Valentine One onto the queue to be processed
 	 * 
 	 * @param packet The packet from the Valentine One
 	 */
-	public static void pushInputPacketOntoQueue(ESPPacket packet)
+	public void pushInputPacketOntoQueue(ESPPacket packet)
 	{
+		ESPPacket dropped = null;
+		
 		m_inlock.lock();
-		m_inputQueue.addLast(packet);
+		int id = packet.getPacketIdentifier().toByteValue() & 0xFF;
+		if ( m_coalesceInput && m_coalescedIds[id] && m_queuedState[id] != null ){
+			// A packet with this id is still waiting, so deliver this one in its place
+			if ( m_latestState[id] != m_queuedState[id] ){
+				// The packet holding the place in the queue must be kept until it is taken off the queue
+				dropped = m_latestState[id];
+			}
+			m_latestState[id] = packet;
+			m_coalescedCount++;
+		}
+		else{
+			if ( m_coalesceInput && m_coalescedIds[id] ){
+				m_queuedState[id] = packet;
+				m_latestState[id] = packet;
+			}
+			m_inputQueue.addLast(packet);
+			m_inputAvailable.signal();
+		}
 		m_inlock.unlock();
+		
+		PacketPool.release(dropped);
+	}
+	
+	/**
+	 * Take the next packet off the input queue, replacing a coalesced packet with the latest one received. The caller must
+	 * hold the input lock.
+	 */
+	private ESPPacket mTakeInputPacket()
+	{
+		ESPPacket rc = m_inputQueue.poll();
+		if ( rc == null ){
+			return null;
+		}
+		
+		int id = rc.getPacketIdentifier().toByteValue() & 0xFF;
+		if ( m_queuedState[id] == rc ){
+			ESPPacket latest = m_latestState[id];
+			m_queuedState[id] = null;
+			m_latestState[id] = null;
+			if ( latest != rc ){
+				PacketPool.release(rc);
+				rc = latest;
+			}
+		}
+		return rc;
+	}
+	
+	/** Turns coalescing of state packets in the input queue on or off. While it is on, a packet with a coalesced id
+	 * 	replaces the packet with the same id that is still waiting in the queue. infDisplayData is coalesced by default,
+	 * 	use setInputCoalesced() to change which packet ids are coalesced. Coalescing is off by default.
+	 * 
+	 * @param enabled	True to coalesce state packets, false to deliver every packet.
+	 */
+	public void setInputCoalescing(boolean enabled)
+	{
+		m_inlock.lock();
+		m_coalesceInput = enabled;
+		if ( !enabled ){
+			// Put the latest packets in place of the ones in the queue, then stop tracking them
+			for (int id = 0; id < m_queuedState.length; id++)
+			{
+				if ( m_queuedState[id] != null && m_latestState[id] != m_queuedState[id] ){
+					m_inputQueue.set(m_inputQueue.indexOf(m_queuedState[id]), m_latestState[id]);
+					PacketPool.release(m_queuedState[id]);
+				}
+				m_queuedState[id] = null;
+				m_latestState[id] = null;
+			}
+		}
+		m_inlock.unlock();
+	}
+	
+	/** Determine if state packets are coalesced in the input queue.
+	 * 
+	 * @return True if state packets are coalesced, else false.
+	 */
+	public boolean getInputCoalescing()
+	{
+		m_inlock.lock();
+		boolean retVal = m_coalesceInput;
+		m_inlock.unlock();
+		
+		return retVal;
+	}
+	
+	/** Sets if packets with a packet id are state packets that are coalesced while input coalescing is on. Only packets
+	 * 	where the latest one replaces every earlier one, such as display data, should be coalesced.
+	 * 
+	 * @param packetId	The packet id to change.
+	 * @param coalesced	True to coalesce the packet id, false to always deliver every packet with the id in order.
+	 */
+	public void setInputCoalesced(PacketId packetId, boolean coalesced)
+	{
+		m_inlock.lock();
+		m_coalescedIds[packetId.toByteValue() & 0xFF] = coalesced;
+		m_inlock.unlock();
+	}
+	
+	/** Determine if packets with a packet id are coalesced while input coalescing is on.
+	 * 
+	 * @param packetId	The packet id to look up.
+	 * 
+	 * @return True if the packet id is coalesced, else false.
+	 */
+	public boolean isInputCoalesced(PacketId packetId)
+	{
+		m_inlock.lock();
+		boolean retVal = m_coalescedIds[packetId.toByteValue() & 0xFF];
+		m_inlock.unlock();
+		
+		return retVal;
+	}
+	
+	/** Get the number of packets waiting in the input queue.
+	 * 
+	 * @return The depth of the input queue.
+	 */
+	public int getInputQueueDepth()
+	{
+		m_inlock.lock();
+		int retVal = m_inputQueue.size();
+		m_inlock.unlock();
+		
+		return retVal;
+	}
+	
+	/** Get the number of packets that replaced an older packet in the input queue since the queue was created.
+	 * 
+	 * @return The number of coalesced packets.
+	 */
+	public long getInputCoalescedCount()
+	{
+		m_inlock.lock();
+		long retVal = m_coalescedCount;
+		m_inlock.unlock();
+		
+		return retVal;
 	}
 	
 	/** Initialize the output queue. The initialization is done in a single lock, which makes this method preferable to using the individual methods.
@@ -76,19 +331,25 @@ public class PacketQueue
 	 * @param clearOutputQueue 	If true, the output queue will be cleared.
 	 * @param holdoffOutput 	If true, no output packets will be returned from getNextOutputPacket() until setHoldoffOutput() is called with the holdoffOutput parameter set to false.
 	 */
-	public static void initOutputQueue (Devices v1Type, boolean clearOutputQueue, boolean holdoffOutput)
+	public void initOutputQueue (Devices v1Type, boolean clearOutputQueue, boolean holdoffOutput)
 	{
 		m_outlock.lock();
 		if ( clearOutputQueue ){
-			if ( m_outputQueue.size() != 0 ){
+			int size = mGetOutputQueueSize();
+			if ( size != 0 ){
 				if(ESPLibraryLogController.LOG_WRITE_DEBUG){
-					Log.d("Valentine", "Deleting " + m_outputQueue.size() + " packets from output queue." );
+					ESPLog.d("Valentine", "Deleting " + size + " packets from output queue." );
 				}
 			}
-			m_outputQueue.clear();			
+			for (int i = 0; i < m_outputQueues.size(); i++)
+			{
+				m_outputQueues.get(i).clear();
+			}
+			m_outputIndex.clear();
 		}		
 		m_v1Type = v1Type;
 		m_holdoffOutput = holdoffOutput;
+		m_outputAvailable.signalAll();
 		m_outlock.unlock();		
 	}
 	
@@ -96,65 +357,59 @@ public class PacketQueue
 	 * 
 	 * @param clearOutputQueue 	If true, the output queue will be cleared.
 	 */
-	public static void initInputQueue (boolean clearOutputQueue)
+	public void initInputQueue (boolean clearOutputQueue)
 	{
 		m_inlock.lock();
 		if ( clearOutputQueue ){
 			if ( m_inputQueue.size() != 0 ){
 				if(ESPLibraryLogController.LOG_WRITE_DEBUG){
-					Log.d("Valentine", "Deleting " + m_inputQueue.size() + " packets from input queue." );
+					ESPLog.d("Valentine", "Deleting " + m_inputQueue.size() + " packets from input queue." );
 				}
 			}
 			m_inputQueue.clear();			
+			for (int id = 0; id < m_queuedState.length; id++)
+			{
+				m_queuedState[id] = null;
+				m_latestState[id] = null;
+			}
 		}	
 		m_inlock.unlock();
 	}
 	
 	
-	/** Gets the next packet off the queue to be written to the Valentine One
+	/** Gets the next packet off the queue to be written to the Valentine One. This is the oldest packet in the highest
+	 * 	priority class that has a packet.
 	 * 
 	 * @return ESPPacket The next packet to be written to the Valentine One
 	 */
-	public static ESPPacket getNextOutputPacket()
+	public ESPPacket getNextOutputPacket()
 	{
 		ESPPacket rc = null;
 		m_outlock.lock();
-		if (m_outputQueue.size() == 0 ){
-			// No packets to send or we don't have a V1 type yet			
-			rc = null;
-		}
-		else if ( m_holdoffOutput ){
-			rc = null;
-			
-			// Check for packets destined for the V1connection and allow them to override the holdoff
-			for ( int i = 0; i < m_outputQueue.size(); i++ ){
-				ESPPacket p = (ESPPacket)m_outputQueue.get(i);
-				
-				if ( p.getDestination() == Devices.V1CONNECT && p.getOrigin() == Devices.V1CONNECT ){
-					rc = m_outputQueue.remove(i);
-				}
+		for (int priority = 0; priority < m_outputQueues.size() && rc == null; priority++)
+		{
+			LinkedList<ESPPacket> queue = m_outputQueues.get(priority);
+			if (queue.size() == 0 ){
+				// No packets to send in this priority class
+				continue;
 			}
-		}
-		else{
-			int location = 0;
-			boolean found = false;
 			
-			while (rc == null)
-			{
-				if (!found)
-				{
-					rc = m_outputQueue.remove(location);
-				}
-				else
-				{
-					location++;
-				}
-				
-				if (location == m_outputQueue.size())
-				{
-					break;
+			if ( m_holdoffOutput ){
+				// Check for packets destined for the V1connection and allow them to override the holdoff
+				for ( int i = 0; i < queue.size(); i++ ){
+					ESPPacket p = queue.get(i);
+					
+					if ( p.getDestination() == Devices.V1CONNECT && p.getOrigin() == Devices.V1CONNECT ){
+						rc = queue.remove(i);
+						mRemoveFromOutputIndex(rc);
+						break;
+					}
 				}
 			}
+			else{
+				rc = queue.removeFirst();
+				mRemoveFromOutputIndex(rc);
+			}
 		}
 		
 		if ( rc != null ){
@@ -170,40 +425,115 @@ public class PacketQueue
 		return rc;
 	}
 	
+	/** Gets the next packet off the queue to be written to the Valentine One, waiting if there is no packet that can be
+	 * 	written yet. The wait ends as soon as a packet is pushed or the output holdoff is released.
+	 * 
+	 * @param timeoutMillis	The longest time to wait for a packet, in milliseconds.
+	 * 
+	 * @return ESPPacket The next packet to be written to the Valentine One, or null if there was none before the timeout.
+	 * 
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	public ESPPacket getNextOutputPacket(long timeoutMillis) throws InterruptedException
+	{
+		long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		m_outlock.lock();
+		try {
+			ESPPacket rc = getNextOutputPacket();
+			while (rc == null && remaining > 0)
+			{
+				remaining = m_outputAvailable.awaitNanos(remaining);
+				rc = getNextOutputPacket();
+			}
+			return rc;
+		}
+		finally {
+			m_outlock.unlock();
+		}
+	}
+	
 	/** Pushes a packet onto the queue to write to the Valentine One. If the packet was build with a different V1 than the V1 type specified in setNewV1Type() or initOutputQueue(), the packet will be rebuilt with the correct V1 type. 
 	 * 
 	 * @param packet The next packet to push on the output queue to write to the Valentine One
 	 */
-	public static void pushOutputPacketOntoQueue(ESPPacket packet)
+	public void pushOutputPacketOntoQueue(ESPPacket packet)
 	{
 		m_outlock.lock();			
+		Integer hash = Integer.valueOf(packet.getContentHash());
+		ArrayList<ESPPacket> sameHash = m_outputIndex.get(hash);
 		boolean addPacketToQueue = true;
 		
-		for ( int i = 0; i < m_outputQueue.size(); i++ ){
-			ESPPacket curPacket = m_outputQueue.get(i);
-			if ( packet.isSamePacket(curPacket) ){
-				// Don't put this packet into the queue
-				addPacketToQueue = false;
-				break;
+		if ( sameHash != null ){
+			for ( int i = 0; i < sameHash.size(); i++ ){
+				if ( packet.isSamePacket(sameHash.get(i)) ){
+					// Don't put this packet into the queue
+					addPacketToQueue = false;
+					break;
+				}
 			}
 		}
 		
 		if ( addPacketToQueue ){
-			m_outputQueue.addLast(packet);		
+			if ( sameHash == null ){
+				// Almost every hash is only used by one packet
+				sameHash = new ArrayList<ESPPacket>(1);
+				m_outputIndex.put(hash, sameHash);
+			}
+			sameHash.add(packet);
+			m_outputQueues.get(m_outputPriorities[packet.getPacketIdentifier().toByteValue() & 0xFF].ordinal()).addLast(packet);		
+			m_outputAvailable.signalAll();
 		}
 		
 		m_outlock.unlock();
 	}
 	
+	/**
+	 * Remove a packet that was taken off an output queue from the index. The caller must hold the output lock.
+	 */
+	private void mRemoveFromOutputIndex(ESPPacket packet)
+	{
+		Integer hash = Integer.valueOf(packet.getContentHash());
+		ArrayList<ESPPacket> sameHash = m_outputIndex.get(hash);
+		if ( sameHash == null ){
+			return;
+		}
+		
+		for ( int i = 0; i < sameHash.size(); i++ ){
+			if ( sameHash.get(i) == packet ){
+				sameHash.remove(i);
+				break;
+			}
+		}
+		if ( sameHash.size() == 0 ){
+			m_outputIndex.remove(hash);
+		}
+	}
+	
+	/**
+	 * Count the packets in every priority class. The caller must hold the output lock.
+	 */
+	private int mGetOutputQueueSize()
+	{
+		int size = 0;
+		for (int i = 0; i < m_outputQueues.size(); i++)
+		{
+			size += m_outputQueues.get(i).size();
+		}
+		return size;
+	}
+	
 	/** 
 	 * Tells the write queue to allow or prevent packets to be sent to the hardware.
 	 * 
 	 * @param holdoffOutput		Flag to control writing ESPPackets to the Valentine One.
 	 */
-	public static void setHoldoffOutput (boolean holdoffOutput)
+	public void setHoldoffOutput (boolean holdoffOutput)
 	{
 		m_outlock.lock();
 		m_holdoffOutput = holdoffOutput;
+		if ( !holdoffOutput ){
+			m_outputAvailable.signalAll();
+		}
 		m_outlock.unlock();	
 	}
 	
@@ -211,7 +541,7 @@ public class PacketQueue
 	 * 
 	 * @return true if packets can be sent to the hardware, else false
 	 */
-	public static boolean getHoldoffOutput ()
+	public boolean getHoldoffOutput ()
 	{
 		m_outlock.lock();
 		boolean retVal = m_holdoffOutput;
@@ -224,7 +554,7 @@ public class PacketQueue
 	 * 
 	 * @param v1Type	The new V1 type for the output queue.
 	 */
-	public static void setNewV1Type (Devices v1Type)
+	public void setNewV1Type (Devices v1Type)
 	{
 		m_outlock.lock();
 		m_v1Type = v1Type;
@@ -236,7 +566,7 @@ public class PacketQueue
 	 * 
 	 * @return The current V1 type.
 	 */
-	public static Devices getV1Type ()
+	public Devices getV1Type ()
 	{
 		m_outlock.lock();
 		byte typeByte = m_v1Type.toByteValue();
@@ -250,30 +580,32 @@ public class PacketQueue
 	 * 
 	 * @param newPacket the InfBusyPacket the Valentine One send.
 	 */
-	public static void setBusyPacketIds(ESPPacket newPacket) 
+	public void setBusyPacketIds(ESPPacket newPacket) 
 	{
-		m_busyPacketIds.clear();
+		long [] busyIds = new long[4];
 		String log = "";
 		
-		if (newPacket != null)
+		if (newPacket != null && newPacket.getPayload() != null)
 		{
 			byte[] payload = newPacket.getPayload();
 			for (int i = 0; i < payload.length; i++)
 			{
-				Byte newId = payload[i];
-				m_busyPacketIds.add(newId);
-			}
-			
-			/*
-			for (int i = 0; i < m_busyPacketIds.size(); i++)
-			{
-				log = log + "[" + Byte.toString(m_busyPacketIds.get(i)) + "] ";
+				int id = payload[i] & 0xFF;
+				busyIds[id >>> 6] |= 1L << (id & 63);
+				
+				if(ESPLibraryLogController.LOG_WRITE_INFO){
+					log = log + "[" + Byte.toString(payload[i]) + "] ";
+				}
 			}
-			*/
 		}
 		
+		m_outlock.lock();
+		m_busyPacketIds = busyIds;
+		m_busyChanged.signalAll();
+		m_outlock.unlock();
+		
 		if(ESPLibraryLogController.LOG_WRITE_INFO){
-			Log.i("Valentine", log);
+			ESPLog.i("Valentine", log);
 		}
 	}
 	
@@ -281,54 +613,70 @@ public class PacketQueue
 	 * 
 	 * @param _id the id of the packet to remove.
 	 */
-	public static void removeFromBusyPacketIds(PacketId _id)
+	public void removeFromBusyPacketIds(PacketId _id)
 	{
-		if (m_busyPacketIds.size() != 0)
+		int id = _id.toByteValue() & 0xFF;
+		
+		m_outlock.lock();
+		long [] busyIds = m_busyPacketIds;
+		if ((busyIds[id >>> 6] & (1L << (id & 63))) != 0)
 		{
-			byte id =  _id.toByteValue();
-			int toRemove = -1;
-			
-			for (int i = 0; i < m_busyPacketIds.size(); i++)
-			{
-				if (id == m_busyPacketIds.get(i) )
-				{
-					toRemove = 0;
-					break;
-				}
-			}
-			
-			if (toRemove != -1)
-			{
-				m_busyPacketIds.remove(toRemove);
-			}
+			// Publish a copy without the packet id, the writer thread may be reading the current set
+			busyIds = busyIds.clone();
+			busyIds[id >>> 6] &= ~(1L << (id & 63));
+			m_busyPacketIds = busyIds;
+			m_busyChanged.signalAll();
 		}
+		m_outlock.unlock();
 	}
 	
 	/**
-	 * Check for a specific packet id in the list of items the V1 is busy working on.
+	 * Check for a specific packet id in the list of items the V1 is busy working on. This does not take any lock.
 	 * 
 	 * @param _id The id of the packet to check for.
 	 * 
 	 * @return True if the packet id is in the list of items the V1 is busy working on, else false.
 	 */
-	public static boolean isPacketIdInBusyList(PacketId _id)
+	public boolean isPacketIdInBusyList(PacketId _id)
+	{
+		return mIsPacketIdInBusyList(_id.toByteValue());
+	}
+	
+	/**
+	 * Wait for a packet id to leave the list of items the V1 is busy working on. The wait ends as soon as the V1 reports
+	 * that it is no longer busy with the packet id.
+	 * 
+	 * @param _id 			The id of the packet to wait for.
+	 * @param timeoutMillis	The longest time to wait, in milliseconds.
+	 * 
+	 * @return True if the packet id is still in the busy list after the timeout, else false.
+	 * 
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	public boolean waitWhileInBusyList(PacketId _id, long timeoutMillis) throws InterruptedException
 	{
 		byte packetIdByte = _id.toByteValue();
-		
-		if (m_busyPacketIds.size() == 0)
-		{
-			return false;
-		}
-		
-		for (int i = 0; i < m_busyPacketIds.size(); i++)
-		{
-			if (m_busyPacketIds.get(i) == packetIdByte)
+		long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		m_outlock.lock();
+		try {
+			while (mIsPacketIdInBusyList(packetIdByte) && remaining > 0)
 			{
-				return true;
+				remaining = m_busyChanged.awaitNanos(remaining);
 			}
+			return mIsPacketIdInBusyList(packetIdByte);
+		}
+		finally {
+			m_outlock.unlock();
 		}
-		
-		return false;
+	}
+	
+	/**
+	 * Check the current busy set for a packet id.
+	 */
+	private boolean mIsPacketIdInBusyList(byte packetIdByte)
+	{
+		int id = packetIdByte & 0xFF;
+		return (m_busyPacketIds[id >>> 6] & (1L << (id & 63))) != 0;
 	}
 	
 	/**
@@ -336,7 +684,7 @@ public class PacketQueue
 	 * 
 	 * @param _packet The packet that was sent.
 	 */
-	public static void putLastWrittenPacketOfType(ESPPacket _packet)
+	public void putLastWrittenPacketOfType(ESPPacket _packet)
 	{
 		m_lastSentPacket.put(_packet.getPacketIdentifier(), _packet);
 	}
@@ -348,7 +696,7 @@ public class PacketQueue
 	 * 
 	 * @return If a packet was sent with the id passed in, return the last packet sent that has the packet id provided, else return null.
 	 */
-	public static ESPPacket getLastWrittenPacketOfType(PacketId _id)
+	public ESPPacket getLastWrittenPacketOfType(PacketId _id)
 	{
 		if (m_lastSentPacket.containsKey(_id))
 		{
@@ -365,30 +713,20 @@ public class PacketQueue
 	 * 
 	 * @param _packet The packet to send.
 	 */
-	public static void pushOnToSendAfterBusyQueue(ESPPacket _packet)
+	public void pushOnToSendAfterBusyQueue(ESPPacket _packet)
 	{
 		m_outlock.lock();
-		boolean addToQueue = true;
+		byte packetId = _packet.getPacketIdentifier().toByteValue();
 		
-		for (int i = 0; i < m_toSendAfterBusyClear.size(); i++){
-			ESPPacket curPacket = m_toSendAfterBusyClear.get(i);
-			if ( curPacket.getPacketIdentifier().toByteValue() == _packet.getPacketIdentifier().toByteValue() ){
-				// This packet is already in the queue, so don't resend it after we are busy
-				addToQueue = false;
-			}
+		if ( m_sendAfterBusyIds[packetId & 0xFF] ){
+			// This packet is already in the queue, so don't resend it after we are busy
 		}
-		
-		if ( addToQueue ){
-			for ( int i = 0; i < m_busyPacketIds.size(); i++ ){
-				if ( _packet.getPacketIdentifier().toByteValue() == m_busyPacketIds.get(i).byteValue() ){
-					// This packet is in the list of packets the V1 is working on, so don't add it to the queue
-					addToQueue = false;
-				}
-			}
+		else if ( mIsPacketIdInBusyList(packetId) ){
+			// This packet is in the list of packets the V1 is working on, so don't add it to the queue
 		}
-		
-		if ( addToQueue ){
+		else{
 			m_toSendAfterBusyClear.add(_packet);
+			m_sendAfterBusyIds[packetId & 0xFF] = true;
 		}
 		m_outlock.unlock();
 	}
@@ -396,28 +734,40 @@ public class PacketQueue
 	/**
 	 * This method will add all packets passed into pushOnToSendAfterBusyQueue() to the active write queue. 
 	 */
-	public static void sendAfterBusyQueue()
+	public void sendAfterBusyQueue()
 	{
 		m_outlock.lock();		
 		if ( m_toSendAfterBusyClear.size() > 0 ){
-			Log.i("Valentine", "V1 not busy. Trying to resend " + m_toSendAfterBusyClear.size() + " packets");
+			ESPLog.i("Valentine", "V1 not busy. Trying to resend " + m_toSendAfterBusyClear.size() + " packets");
 		}		
 		for (int i = 0; i < m_toSendAfterBusyClear.size(); i++)
 		{
 			ESPPacket packet = m_toSendAfterBusyClear.get(i);
-			PacketQueue.pushOutputPacketOntoQueue(packet);
+			pushOutputPacketOntoQueue(packet);
 		}
+		mClearSendAfterBusyQueue();
 		m_outlock.unlock();
-		m_toSendAfterBusyClear.clear();
 	}
 	
 	/**
 	 * This method will clear the send after busy queue.
 	 */
-	public static void clearSendAfterBusyQueue ()
+	public void clearSendAfterBusyQueue ()
 	{
 		m_outlock.lock();		
-		m_toSendAfterBusyClear.clear();
+		mClearSendAfterBusyQueue();
 		m_outlock.unlock();
 	}
+	
+	/**
+	 * Empty the send after busy queue. The caller must hold the output lock.
+	 */
+	private void mClearSendAfterBusyQueue ()
+	{
+		for (int i = 0; i < m_toSendAfterBusyClear.size(); i++)
+		{
+			m_sendAfterBusyIds[m_toSendAfterBusyClear.get(i).getPacketIdentifier().toByteValue() & 0xFF] = false;
+		}
+		m_toSendAfterBusyClear.clear();
+	}
 }
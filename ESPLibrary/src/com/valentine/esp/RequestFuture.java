@@ -0,0 +1,214 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.valentine.esp.constants.PacketId;
+import com.valentine.esp.packets.ESPPacket;
+
+/**
+ * The pending result of a request sent with {@link ValentineESP#sendRequest(ESPPacket, long)}. The future is completed
+ * with the response packet from the device the request was sent to, or fails with an {@link ESPRequestException} if the
+ * device reports an error, the request times out or the library is stopped.
+ *
+ * Several requests can be outstanding at once, including requests of the same type sent to different devices. Listeners
+ * are called on the thread that dispatches packets to the callbacks, so they must not block.
+ */
+public class RequestFuture implements Future<ESPPacket>
+{
+	/**
+	 * Receives a RequestFuture once it is done.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called once when the future is completed, has failed or was cancelled.
+		 *
+		 * @param future	The future that is done. get() will not block.
+		 */
+		void onDone(RequestFuture future);
+	}
+
+	private final ESPPacket 			m_request;
+	private final PacketId 				m_responseId;
+	private final long 					m_deadlineNanos;
+
+	private final CountDownLatch 		m_done = new CountDownLatch(1);
+	private ESPPacket 					m_response;
+	private ESPRequestException 		m_error;
+	private boolean 					m_cancelled;
+	private ArrayList<Listener> 		m_listeners = new ArrayList<Listener>();
+
+	RequestFuture(ESPPacket request, PacketId responseId, long timeoutMillis)
+	{
+		m_request = request;
+		m_responseId = responseId;
+		m_deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+	}
+
+	/**
+	 * Retrieve the request packet this future is waiting on.
+	 *
+	 * @return The request packet.
+	 */
+	public ESPPacket getRequest()
+	{
+		return m_request;
+	}
+
+	/**
+	 * Retrieve the packet id of the response that completes this future.
+	 *
+	 * @return The response packet id.
+	 */
+	public PacketId getResponseId()
+	{
+		return m_responseId;
+	}
+
+	/**
+	 * Adds a listener that is called once the future is done. If the future is already done the listener is called right
+	 * away on the calling thread.
+	 *
+	 * @param listener	The listener to call.
+	 */
+	public void addListener(Listener listener)
+	{
+		synchronized ( this ){
+			if ( m_listeners != null ){
+				m_listeners.add(listener);
+				return;
+			}
+		}
+		listener.onDone(this);
+	}
+
+	/**
+	 * Cancels the request. The request may already have been sent, in which case its response is ignored.
+	 *
+	 * @param mayInterruptIfRunning	Not used, the future never runs a task.
+	 *
+	 * @return True if the future was cancelled, false if it was already done.
+	 */
+	public boolean cancel(boolean mayInterruptIfRunning)
+	{
+		return mFinish(null, null, true);
+	}
+
+	public synchronized boolean isCancelled()
+	{
+		return m_cancelled;
+	}
+
+	public boolean isDone()
+	{
+		return m_done.getCount() == 0;
+	}
+
+	/**
+	 * Waits for the response.
+	 *
+	 * @return The response packet.
+	 *
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 * @throws ExecutionException if the request failed. The cause is an {@link ESPRequestException}.
+	 * @throws CancellationException if the request was cancelled.
+	 */
+	public ESPPacket get() throws InterruptedException, ExecutionException
+	{
+		m_done.await();
+		return mGetResult();
+	}
+
+	/**
+	 * Waits up to the time given for the response.
+	 *
+	 * @param timeout	The longest time to wait.
+	 * @param unit		The unit of the timeout.
+	 *
+	 * @return The response packet.
+	 *
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 * @throws ExecutionException if the request failed. The cause is an {@link ESPRequestException}.
+	 * @throws TimeoutException if the wait timed out. The request is still outstanding.
+	 * @throws CancellationException if the request was cancelled.
+	 */
+	public ESPPacket get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+	{
+		if ( !m_done.await(timeout, unit) ){
+			throw new TimeoutException();
+		}
+		return mGetResult();
+	}
+
+	/**
+	 * Completes the future with the response packet.
+	 *
+	 * @return True if the future was completed, false if it was already done.
+	 */
+	boolean complete(ESPPacket response)
+	{
+		return mFinish(response, null, false);
+	}
+
+	/**
+	 * Fails the future.
+	 *
+	 * @return True if the future failed, false if it was already done.
+	 */
+	boolean fail(ESPRequestException.Reason reason)
+	{
+		return mFinish(null, new ESPRequestException(reason, m_request), false);
+	}
+
+	/**
+	 * Determine if the request timed out.
+	 */
+	boolean isExpired(long nowNanos)
+	{
+		return nowNanos - m_deadlineNanos >= 0;
+	}
+
+	private boolean mFinish(ESPPacket response, ESPRequestException error, boolean cancelled)
+	{
+		ArrayList<Listener> listeners;
+		synchronized ( this ){
+			if ( m_listeners == null ){
+				// Already done
+				return false;
+			}
+			m_response = response;
+			m_error = error;
+			m_cancelled = cancelled;
+			listeners = m_listeners;
+			m_listeners = null;
+		}
+		m_done.countDown();
+
+		for ( int i = 0; i < listeners.size(); i++ ){
+			listeners.get(i).onDone(this);
+		}
+		return true;
+	}
+
+	private synchronized ESPPacket mGetResult() throws ExecutionException
+	{
+		if ( m_cancelled ){
+			throw new CancellationException();
+		}
+		if ( m_error != null ){
+			throw new ExecutionException(m_error);
+		}
+		return m_response;
+	}
+}
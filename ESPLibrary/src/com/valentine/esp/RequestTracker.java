@@ -0,0 +1,215 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+
+import com.valentine.esp.constants.ESPLibraryLogController;
+import com.valentine.esp.constants.PacketId;
+import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPLog;
+
+/**
+ * Matches the packets received from the ESP bus against the requests sent with {@link ValentineESP#sendRequest(ESPPacket, long)}
+ * and completes their {@link RequestFuture}s.
+ */
+class RequestTracker
+{
+	private static final String 	LOG_TAG = "ValentineESP/RequestTracker";
+
+	// The single response each supported request is answered with
+	private static final EnumMap<PacketId, PacketId> m_responseIds = new EnumMap<PacketId, PacketId>(PacketId.class);
+	static
+	{
+		m_responseIds.put(PacketId.reqVersion, PacketId.respVersion);
+		m_responseIds.put(PacketId.reqSerialNumber, PacketId.respSerialNumber);
+		m_responseIds.put(PacketId.reqUserBytes, PacketId.respUserBytes);
+		m_responseIds.put(PacketId.reqMaxSweepIndex, PacketId.respMaxSweepIndex);
+		m_responseIds.put(PacketId.reqBatteryVoltage, PacketId.respBatteryVoltage);
+		m_responseIds.put(PacketId.reqSavvyStatus, PacketId.respSavvyStatus);
+		m_responseIds.put(PacketId.reqVehicleSpeed, PacketId.respVehicleSpeed);
+	}
+
+	private final PacketQueue 					m_packetQueue;
+	private final ArrayList<RequestFuture> 	m_pending = new ArrayList<RequestFuture>();
+
+	RequestTracker(PacketQueue packetQueue)
+	{
+		m_packetQueue = packetQueue;
+	}
+
+	/**
+	 * Starts tracking a request. The request must be sent after this call so the response can not be missed.
+	 *
+	 * @param request		The request packet.
+	 * @param timeoutMillis	How long to wait for the response.
+	 *
+	 * @return The future that is completed by the response.
+	 *
+	 * @throws IllegalArgumentException if the request is not answered with a single response packet.
+	 */
+	RequestFuture track(ESPPacket request, long timeoutMillis)
+	{
+		PacketId responseId = m_responseIds.get(request.getPacketIdentifier());
+		if ( responseId == null ){
+			throw new IllegalArgumentException(request.getPacketIdentifier().toString() + " does not have a single response packet");
+		}
+
+		RequestFuture future = new RequestFuture(request, responseId, timeoutMillis);
+		synchronized ( m_pending ){
+			m_pending.add(future);
+		}
+		return future;
+	}
+
+	/**
+	 * Completes or fails every pending request the packet answers. Must be called before the packet is released to the
+	 * PacketPool.
+	 *
+	 * @param packet	A packet received from the ESP bus.
+	 */
+	void onPacketReceived(ESPPacket packet)
+	{
+		PacketId packetId = packet.getPacketIdentifier();
+		ESPRequestException.Reason reason = null;
+		byte failedId = 0;
+
+		switch ( packetId ){
+			case respUnsupportedPacket:
+				reason = ESPRequestException.Reason.UNSUPPORTED;
+				break;
+			case respRequestNotProcessed:
+				reason = ESPRequestException.Reason.NOT_PROCESSED;
+				break;
+			case respDataError:
+				reason = ESPRequestException.Reason.DATA_ERROR;
+				break;
+			default:
+				if ( !m_responseIds.containsValue(packetId) ){
+					// Nothing is waiting on this packet
+					return;
+				}
+				break;
+		}
+		if ( reason != null ){
+			failedId = ((Integer) packet.getResponseData()).byteValue();
+		}
+
+		ArrayList<RequestFuture> done = null;
+		synchronized ( m_pending ){
+			for ( int i = m_pending.size() - 1; i >= 0; i-- ){
+				RequestFuture future = m_pending.get(i);
+				ESPPacket request = future.getRequest();
+				boolean matches;
+				if ( reason == null ){
+					matches = future.getResponseId() == packetId;
+				}
+				else{
+					matches = request.getPacketIdentifier().toByteValue() == failedId;
+				}
+				if ( matches && mIsFromDestination(request, packet) ){
+					if ( done == null ){
+						done = new ArrayList<RequestFuture>();
+					}
+					done.add(future);
+					m_pending.remove(i);
+				}
+			}
+		}
+		if ( done == null ){
+			return;
+		}
+
+		// Complete the futures outside of the lock because listeners may send new requests. A pooled packet is reused
+		// once the callbacks return, so every future gets a copy it can keep.
+		ESPPacket response = null;
+		if ( reason == null ){
+			response = packet.isPooled() ? packet.copy() : packet;
+		}
+		// Identical requests are only sent once, so one response answers all of them
+		for ( int i = done.size() - 1; i >= 0; i-- ){
+			RequestFuture future = done.get(i);
+			if ( reason == null ){
+				future.complete(response);
+			}
+			else{
+				if(ESPLibraryLogController.LOG_WRITE_WARNING){
+					ESPLog.w(LOG_TAG, future.getRequest().getPacketIdentifier().toString() + " failed with " + packetId.toString());
+				}
+				future.fail(reason);
+			}
+			m_packetQueue.removeFromBusyPacketIds(future.getRequest().getPacketIdentifier());
+		}
+	}
+
+	/**
+	 * Fails every pending request whose timeout has passed, and drops the requests that were cancelled.
+	 *
+	 * @param nowNanos	The current System.nanoTime().
+	 */
+	void expire(long nowNanos)
+	{
+		ArrayList<RequestFuture> expired = null;
+		synchronized ( m_pending ){
+			for ( int i = m_pending.size() - 1; i >= 0; i-- ){
+				RequestFuture future = m_pending.get(i);
+				if ( future.isDone() ){
+					m_pending.remove(i);
+				}
+				else if ( future.isExpired(nowNanos) ){
+					if ( expired == null ){
+						expired = new ArrayList<RequestFuture>();
+					}
+					expired.add(future);
+					m_pending.remove(i);
+				}
+			}
+		}
+		if ( expired == null ){
+			return;
+		}
+
+		for ( int i = expired.size() - 1; i >= 0; i-- ){
+			RequestFuture future = expired.get(i);
+			if(ESPLibraryLogController.LOG_WRITE_WARNING){
+				ESPLog.w(LOG_TAG, future.getRequest().getPacketIdentifier().toString() + " timed out");
+			}
+			future.fail(ESPRequestException.Reason.TIMEOUT);
+		}
+	}
+
+	/**
+	 * Fails every pending request.
+	 *
+	 * @param reason	Why the requests failed.
+	 */
+	void failAll(ESPRequestException.Reason reason)
+	{
+		ArrayList<RequestFuture> pending;
+		synchronized ( m_pending ){
+			pending = new ArrayList<RequestFuture>(m_pending);
+			m_pending.clear();
+		}
+		for ( int i = 0; i < pending.size(); i++ ){
+			pending.get(i).fail(reason);
+		}
+	}
+
+	/**
+	 * Determine if a packet came from the device a request was sent to. The V1 answers from its own type, which may not be
+	 * the V1 type the request was addressed to, so any V1 origin matches a request sent to a V1.
+	 */
+	private static boolean mIsFromDestination(ESPPacket request, ESPPacket packet)
+	{
+		byte destination = request.getDestination().toByteValue();
+		byte origin = packet.getOrigin().toByteValue();
+		if ( destination == origin ){
+			return true;
+		}
+		return ESPPacket.isPacketFromV1(destination) && ESPPacket.isPacketFromV1(origin);
+	}
+}
@@ -27,12 +27,14 @@ import com.valentine.esp.bluetooth.ConnectionType;
 import com.valentine.esp.bluetooth.VRScanCallback;
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.constants.ESPLibraryLogController;
+import com.valentine.esp.constants.OutputPriority;
 import com.valentine.esp.constants.PacketId;
 import com.valentine.esp.data.InfDisplayInfoData;
 import com.valentine.esp.data.SavvyStatus;
 import com.valentine.esp.data.SweepDefinition;
 import com.valentine.esp.data.SweepSection;
 import com.valentine.esp.data.UserSettings;
+import com.valentine.esp.packets.ESPPacket;
 import com.valentine.esp.packets.InfDisplayData;
 import com.valentine.esp.packets.request.RequestBatteryVoltage;
 import com.valentine.esp.packets.request.RequestChangeMode;
@@ -218,6 +220,29 @@ public class ValentineClient
 	public void setNoDataReceivedDelay(int delay) {
 		this.m_valentineESP.setNoDataReceivedDelay(delay);
 	}
+
+	/**
+	 * Turns coalescing of display data on or off. While it is on, display data that is still waiting for a slow callback
+	 * is replaced by newer display data, so the callback gets the latest data instead of a backlog. Responses and alert
+	 * data are always delivered in order. Use {@link PacketQueue#setInputCoalesced(PacketId, boolean)} to coalesce other packets.
+	 *
+	 * @param enabled	True to coalesce display data, false to deliver every display data packet.
+	 */
+	public void setDisplayDataCoalescing(boolean enabled) {
+		this.m_valentineESP.getPacketQueue().setInputCoalescing(enabled);
+	}
+
+	/**
+	 * Sets the priority class requests with a packet id are sent with. By default the mute, display and mode requests are
+	 * URGENT and every other request is NORMAL. A read that is moved to a different class than the write it follows can
+	 * be sent before the write and return the old value.
+	 *
+	 * @param packetId	The request packet id to change the priority of.
+	 * @param priority	The priority class to send the requests in.
+	 */
+	public void setOutputPriority(PacketId packetId, OutputPriority priority) {
+		this.m_valentineESP.getPacketQueue().setOutputPriority(packetId, priority);
+	}
 	
 	/**
 	 * Initializes the library.
@@ -719,8 +744,8 @@ public class ValentineClient
 		m_v1TypeChangeCnt = 0;
 		
 		// Do not allow writing to the V1 until the type is known.
-		PacketQueue.initOutputQueue(Devices.UNKNOWN, false, true);
-		PacketQueue.initInputQueue (true);
+		m_valentineESP.getPacketQueue().initOutputQueue(Devices.UNKNOWN, false, true);
+		m_valentineESP.getPacketQueue().initInputQueue (true);
 		
 		if (m_bluetoothDevice == null || !m_bluetoothDevice.equals(deviceToConnect)) {
 			// Save the new bluetooth devices. 			
@@ -801,8 +826,8 @@ public class ValentineClient
 		m_v1TypeChangeCnt = 0;
 		
 		// Do not allow writing to the V1 until the type is known.
-		PacketQueue.initOutputQueue(Devices.UNKNOWN, false, true);
-		PacketQueue.initInputQueue (true);
+		m_valentineESP.getPacketQueue().initOutputQueue(Devices.UNKNOWN, false, true);
+		m_valentineESP.getPacketQueue().initInputQueue (true);
 		
 		if (m_bluetoothDevice == null || !m_bluetoothDevice.equals(deviceToConnect)) {
 			// Save the new bluetooth devices. 			
@@ -1018,7 +1043,7 @@ public class ValentineClient
 				}
 				
 				m_valentineType = devType;
-				PacketQueue.setNewV1Type(m_valentineType);
+				m_valentineESP.getPacketQueue().setNewV1Type(m_valentineType);
 				
 				// Always request the V1connection version whenever we change the V1 type
 				getV1connectionVerison();
@@ -1034,9 +1059,9 @@ public class ValentineClient
 			m_v1TypeChangeCnt = 0;
 		}
 		
-		if( PacketQueue.getV1Type() != Devices.UNKNOWN ){
+		if( m_valentineESP.getPacketQueue().getV1Type() != Devices.UNKNOWN ){
 			// Use the TS Holdoff bit to hold off or allow requests
-			PacketQueue.setHoldoffOutput(data.getAuxData().getTSHoldOff());
+			m_valentineESP.getPacketQueue().setHoldoffOutput(data.getAuxData().getTSHoldOff());
 		}	
 	}
 	
@@ -1092,6 +1117,12 @@ public class ValentineClient
 	/**
 	 * Registers a callback to handle InfDisplayInfoData data structures from the Valentine One.  Many can be registered.
 	 * Requires a function with a InfDisplayInfoData parameter:  public void function( InfDisplayInfoData _parameter).
+	 * If packet pooling is on (see PacketPool), the InfDisplayInfoData is reused after the function returns, so use the
+	 * InfDisplayInfoData copy constructor to keep it.
+	 * The BogeyCounterData, SignalStrengthData, BandAndArrowIndicatorData and AuxilaryData objects returned by its getters
+	 * are shared, read only instances; calling setFromByte() or clear() on them throws an UnsupportedOperationException.
+	 * Use the copy constructor of that class, for example new BogeyCounterData(data.getBogeyCounterData1()), to get a copy
+	 * that can be changed.
 	 * 
 	 * @param _callbackObject Object with the function to be called.
 	 * @param _function Function on the object to be called.
@@ -1128,7 +1159,8 @@ public class ValentineClient
 
 	/**
 	 * This is the callback from the ESP client to handle InfDisplayData coming from the Valentine One, it converts the response packet
-	 * into InfDisplayInfoData data and sends that on to the list of registered functions. 
+	 * into InfDisplayInfoData data and sends that on to the list of registered functions. The display objects inside the
+	 * InfDisplayInfoData are shared and read only, see {@link #registerForDisplayData(Object, String)}.
 	 * Do not call this directly.
 	 * 
 	 * @param _resp The InfDisplayData packet from the Valentine One.
@@ -1181,6 +1213,21 @@ public class ValentineClient
 		}		
 	}
 
+	/**
+	 * Sends a request and returns a future that is completed by the response from the device the request was sent to,
+	 * instead of calling back to a registered function. Requests to different devices can be outstanding at the same time.
+	 * See {@link ValentineESP#sendRequest(ESPPacket, long)} for the requests that are supported.
+	 * 
+	 * @param _packet The request to send. Use m_valentineType as the V1 type of the request.
+	 * @param _timeoutMillis How long to wait for the response, in milliseconds.
+	 * 
+	 * @return The future that holds the response packet.
+	 */
+	public RequestFuture sendRequest(ESPPacket _packet, long _timeoutMillis)
+	{
+		return m_valentineESP.sendRequest(_packet, _timeoutMillis);
+	}
+	
 	/**
 	 * Gets the version of the requested device.  Don't use this one for getting the Valentine One version, use the getV1Version call instead.
 	 * Requires a function with a String parameter:  public void function( String _parameter).
@@ -1369,7 +1416,7 @@ public class ValentineClient
 			m_valentineESP.deregisterForPacket(PacketId.respVersion, this);
 		}
 		
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqVersion);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqVersion);
 		
 		if ( callbackObj != null && callbackFunction != null ){		
 			Utilities.doCallback(callbackObj, callbackFunction, String.class, (String)_resp.getResponseData());
@@ -1401,7 +1448,7 @@ public class ValentineClient
 			m_valentineESP.deregisterForPacket(PacketId.respSerialNumber, this);
 		}
 		
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqSerialNumber);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqSerialNumber);
 		
 		Utilities.doCallback(callbackObj, callbackFunction, String.class, (String)_resp.getResponseData());
 	}
@@ -1417,7 +1464,7 @@ public class ValentineClient
 	{
 		m_valentineESP.deregisterForPacket(PacketId.respUserBytes, this);
 		
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqUserBytes);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqUserBytes);
 		
 		Utilities.doCallback(m_userBytesCallbackObject, m_userBytesCallbackFunction, UserSettings.class, (UserSettings)_resp.getResponseData());
 	}
@@ -1433,7 +1480,7 @@ public class ValentineClient
 	{
 		m_valentineESP.deregisterForPacket(PacketId.respBatteryVoltage, this);
 		
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqBatteryVoltage);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqBatteryVoltage);
 		Utilities.doCallback(m_voltageCallbackObject, m_voltageCallbackFunction, Float.class, (Float)_resp.getResponseData());
 	}	
 	
@@ -1558,7 +1605,7 @@ public class ValentineClient
 			Log.d("Valentine/SavvyStatus", "callback function = " + m_savvyStatusFunction);
 		}
 		m_valentineESP.deregisterForPacket(PacketId.respSavvyStatus, this);
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqSavvyStatus);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqSavvyStatus);
 		if ((m_savvyStatusObject != null) && (m_savvyStatusFunction != null))
 		{
 			Utilities.doCallback(m_savvyStatusObject, m_savvyStatusFunction, SavvyStatus.class, (SavvyStatus)_resp.getResponseData());
@@ -1577,7 +1624,7 @@ public class ValentineClient
 	public void getVehicleSpeedCallback(ResponseVehicleSpeed _resp)
 	{
 		m_valentineESP.deregisterForPacket(PacketId.respVehicleSpeed, this);
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqVehicleSpeed);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqVehicleSpeed);
 		Utilities.doCallback(m_vehicleSpeedObject, m_vehicleSpeedFunction, Integer.class, (Integer)_resp.getResponseData());
 	}
 	
@@ -1727,7 +1774,7 @@ public class ValentineClient
 		
 		setCachedSweepSections(temp);
 		
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqSweepSections);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqSweepSections);
 		
 		Utilities.doCallback(m_getSweepsObject, m_getSweepsFunction, SweepSection[].class, (SweepSection[])sections);
 	}
@@ -2089,7 +2136,7 @@ public class ValentineClient
 	public void maxSweepIndexCallback(ResponseMaxSweepIndex _maxSweep)
 	{
 		m_valentineESP.deregisterForPacket(PacketId.respMaxSweepIndex, this);
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqMaxSweepIndex);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqMaxSweepIndex);
 	
 		m_maxSweepIndex = (Integer)_maxSweep.getResponseData();
 		
@@ -5,13 +5,7 @@
  */
 package com.valentine.esp;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.locks.ReentrantLock;
 
 import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothSocket;
@@ -42,8 +36,6 @@ public class ValentineESP {
 	
 	private static final String 	LOG_TAG = "ValentineESP LOG";
 	
-	private Map<PacketId, ArrayList<CallbackData>> m_callbackData = new HashMap<PacketId, ArrayList<CallbackData>>();
-	
 	private Object 					m_stopObject;
 	private String 					m_stopFunction;
 	
@@ -51,6 +43,16 @@ public class ValentineESP {
 	private boolean 				m_inDemoMode;
 	
 	private DemoData 				m_demoData;
+	// The packet queues for this connection
+	private final PacketQueue 		m_packetQueue = new PacketQueue();
+	// The requests sent with sendRequest that are waiting on a response
+	private final RequestTracker 	m_requestTracker = new RequestTracker(m_packetQueue);
+	// The callback registry and the thread that dispatches the received packets
+	private final PacketDispatcher 	m_dispatcher = new PacketDispatcher(m_packetQueue, m_requestTracker, new PacketDispatcher.ErrorListener() {
+		public void onCallbackError(String error) {
+			ValentineClient.getInstance().reportError(error);
+		}
+	});
 	
 	// Callback object and function references.
 	private Object 					m_noDataObject;
@@ -60,7 +62,6 @@ public class ValentineESP {
 	
 
 	private Context 				mContext;
-	private ProcessingThread 		m_processingThread;
 	private VR_BluetoothWrapper 	mVrBluetoothWrapper;
 	private ProcessDemoFileThread 	m_demoFileThread;
 	private BluetoothDevice 		mBluetoothDevice;
@@ -79,22 +80,6 @@ public class ValentineESP {
 	 */
 	private final int 				m_secondsToWait;
 	
-	/**
-	 * Object to hold the items needed to register a callback
-	 */
-	private class TempCallbackInfo
-	{
-		public PacketId type;
-		public Object callBackObject;
-		public String method;	
-	}
-	
-	// The m_packetCallbackLock protects all of the following class members. 
-	private ReentrantLock						m_packetCallbackLock = new ReentrantLock();
-	private PacketId							m_lockedPacket = PacketId.unknownPacketType;;
-	private ArrayList<DeregCallbackInfo>		m_packetsToDeregister = new ArrayList<DeregCallbackInfo>();
-	private ArrayList<TempCallbackInfo> 		m_packetsToRegister = new ArrayList<TempCallbackInfo>();
-	private boolean								m_clearAllCallbacksOnUnlock = false;
 	
 	private VR_BluetoothWrapper 				scanner;
 	private VRScanCallback 						activeCallback;
@@ -135,7 +120,7 @@ public class ValentineESP {
 		mContext = context;
 		m_notified = true;
 		m_inDemoMode = false;
-		m_demoData = new DemoData();
+		m_demoData = new DemoData(m_packetQueue);
 		m_secondsToWait = secondsToWait;
 		// Determine Bluetooth LE supports.
 		mBLESupport = ValentineClient.checkBluetoothLESupport(context);	
@@ -224,28 +209,6 @@ public class ValentineESP {
 		return false;
 	}		
 	
-	/**
-	 * This method will show all callbacks in LogCat.
-	 * 
-	 * @precondition The caller has m_packetCallbackLock locked.
-	 * 
-	 */
-	/*
-	private void m_showAllCallbacks ()
-	{
-		if ( ESPLibraryLogController.LOG_WRITE_VERBOSE ){
-			Log.v("CallbackList","Current ValentineESP callbacks (" + this + ")");
-		
-			for (Map.Entry<PacketId, ArrayList<CallbackData>> entry : m_callbackData.entrySet())
-			{
-			    for ( int i = 0; i < entry.getValue().size(); i++ ){
-			    	Log.v("CallbackList", "   " + entry.getKey().toString() + ":" + entry.getValue().get(i).callBackOwner.toString());
-			    }
-			}
-		}
-	}
-	*/
-	
 	/**
 	 * This method will set the locked packet type for this object. A locked Packet can not have any new
 	 * callbacks registered or any current callbacks deregistered. This is to prevent modifying
@@ -255,40 +218,7 @@ public class ValentineESP {
 	 */
 	protected void setLockedPacket (PacketId lockedType)
 	{
-		m_packetCallbackLock.lock();
-		m_lockedPacket = lockedType;
-		
-		if ( lockedType.toByteValue() == PacketId.unknownPacketType.toByteValue() ){
-			if ( m_clearAllCallbacksOnUnlock ){
-				// A request to clear all callbacks was received while we had a locked packet
-				if ( ESPLibraryLogController.LOG_WRITE_VERBOSE ){
-		    		Log.v(LOG_TAG, "Clearing " + m_callbackData.size() + " callbacks after waiting for unlock");
-				}
-				
-				m_callbackData.clear();
-				m_clearAllCallbacksOnUnlock = false;
-			}
-			
-			// Note that we want to process the pending registrations and deregistrations even if m_clearAllCallbacksOnUnlock is set. We are doing that
-			// just in case someone performed one of those actions after calling clearAllCallbacks.
-			
-			// If the packet passed in is for an unknown packet type, we are free to handle the packets that
-			// are queued up for registration and deregistration.
-			for ( int i = 0; i < m_packetsToDeregister.size(); i++ ){
-				DeregCallbackInfo curInfo = m_packetsToDeregister.get(i);
-				// Call the private method because we have the queue locked
-				m_deregisterForPacket(curInfo.type, curInfo.callBackOwner, curInfo.method);
-			}			
-			m_packetsToDeregister.clear();
-			
-			for ( int i = 0; i < m_packetsToRegister.size(); i++ ){
-				TempCallbackInfo temp = m_packetsToRegister.get(i);
-				// Call the private method because we have the queue locked
-				m_registerForPacket(temp.type, temp.callBackObject, temp.method);
-			}			
-			m_packetsToRegister.clear();
-		}
-		m_packetCallbackLock.unlock();
+		m_dispatcher.setLockedPacket(lockedType);
 	}
 
 	/**
@@ -376,13 +306,8 @@ public class ValentineESP {
 		}				
 		
 		if(mVrBluetoothWrapper != null) {
-			// Set the connectionType for the remainder of all packets.
-			ESPPacket.setConnectionType(ConnectionType.V1Connection);
 			if (mVrBluetoothWrapper.startSync()) {
-				if(m_processingThread == null) {
-					m_processingThread = new ProcessingThread();
-					m_processingThread.start();
-				}
+				m_dispatcher.start();
 				m_notified = false;
 				return true;
 			}
@@ -481,14 +406,9 @@ public class ValentineESP {
 			mBluetoothDevice = deviceToConnect;
 			mVrBluetoothWrapper.setDevice(mBluetoothDevice);
 		}
-		// Set the connectionType for the remainder of all packets.
-		ESPPacket.setConnectionType(connectionType);
 		int retVal = mVrBluetoothWrapper.startAsync();
 		if (retVal >= ValentineClient.RESULT_OF_CONNECTION_EVENT_CONNECTING) {
-			if(m_processingThread == null) {
-				m_processingThread = new ProcessingThread();
-				m_processingThread.start();
-			}
+			m_dispatcher.start();
 			m_notified = false;
 		}
 		return retVal;		
@@ -593,49 +513,9 @@ public class ValentineESP {
 	 */
 	public void registerForPacket(PacketId _type, Object _callBackObject, String _method)
 	{
-		m_packetCallbackLock.lock();
-		if ( m_lockedPacket.toByteValue() != _type.toByteValue() ){
-			// We are allowed to deregister the packet right now
-			m_registerForPacket(_type, _callBackObject, _method);			
-		}
-		else{
-			// We are not allowed to register the packet right now. Put it in the queue for deregistration later.
-			TempCallbackInfo temp = new TempCallbackInfo();
-			temp.type = _type;
-			temp.callBackObject = _callBackObject;
-			temp.method = _method;
-			m_packetsToRegister.add( temp );
-		}
-		m_packetCallbackLock.unlock();
+		m_dispatcher.registerForPacket(_type, _callBackObject, _method);
 	}
 	
-	/**
-	 * This method will perform the actual work for registering a callback packet for a specific object.
-	 * 
-	 * @precondition The caller has m_packetCallbackLock locked.
-	 * 
-	 * @param _type - The packet type to register.
-	 * @param _callBackObject - The object to register.
-	 * @param _method - The name of the callback method.
-	 */
-	private void m_registerForPacket(PacketId _type, Object _callBackObject, String _method)
-	{
-		CallbackData newCallbackData = new CallbackData();
-		newCallbackData.callBackOwner = _callBackObject;
-		newCallbackData.method = _method;
-		
-		if (m_callbackData.containsKey(_type))
-		{
-			ArrayList<CallbackData> list = m_callbackData.get(_type);
-			list.add(newCallbackData);
-		}
-		else
-		{
-			ArrayList<CallbackData> newList = new ArrayList<CallbackData>();
-			newList.add(newCallbackData);
-			m_callbackData.put(_type, newList);
-		}
-	}
 	
 	/**
 	 * This method will deregister callback set up using registerForPacket. All callbacks for the PacketId and object 
@@ -647,21 +527,7 @@ public class ValentineESP {
 	 */
 	public void deregisterForPacket(PacketId _type, Object _object, String _method)
 	{
-	
-		m_packetCallbackLock.lock();
-		if ( m_lockedPacket.toByteValue() != _type.toByteValue() ){
-			// We are allowed to deregister the packet right now
-			m_deregisterForPacket(_type, _object, _method);			
-		}
-		else{
-			// We are not allowed to register the packet right now. Put it in the queue for deregistration later.
-			DeregCallbackInfo info = new DeregCallbackInfo();
-			info.callBackOwner = _object;
-			info.type = _type;
-			info.method = _method;
-			m_packetsToDeregister.add(info);
-		}
-		m_packetCallbackLock.unlock();
+		m_dispatcher.deregisterForPacket(_type, _object, _method);
 	}
 	
 	/**
@@ -674,60 +540,9 @@ public class ValentineESP {
 	 */
 	public void deregisterForPacket(PacketId _type, Object _object)
 	{
-		m_packetCallbackLock.lock();
-		if ( m_lockedPacket.toByteValue() != _type.toByteValue() ){
-			// We are allowed to deregister the packet right now
-			m_deregisterForPacket(_type, _object, "");			
-		}
-		else{
-			// We are not allowed to register the packet right now. Put it in the queue for deregistration later.
-			DeregCallbackInfo info = new DeregCallbackInfo();
-			info.callBackOwner = _object;
-			info.type = _type;
-			info.method = "";
-			m_packetsToDeregister.add(info);
-		}
-		m_packetCallbackLock.unlock();
+		m_dispatcher.deregisterForPacket(_type, _object);
 	}
 	
-	/**
-	 * This method will perform the actual work for deregistering a packet for a specific object.
-	 * 
-	 * @precondition The caller has m_packetCallbackLock locked.
-	 * 
-	 * @param _type - The packet type to deregister
-	 * @param _object - The object to deregister.
-	 * @params _method - If "", then remove all callbacks else remove only the callbacks to _method.
-	 */
-	private void m_deregisterForPacket(PacketId _type, Object _object, String _method)
-	{
-		if (m_callbackData.containsKey(_type))
-		{
-			for (Iterator<Entry<PacketId, ArrayList<CallbackData>>> it = m_callbackData.entrySet().iterator(); it.hasNext();) 
-			{ 
-			    Map.Entry<PacketId, ArrayList<CallbackData>> pairs = (Map.Entry<PacketId, ArrayList<CallbackData>>)it.next();
-			    
-			    if (pairs.getKey() == _type)
-			    {
-				    for (Iterator<CallbackData> it2 = pairs.getValue().iterator(); it2.hasNext();)
-				    {
-				    	CallbackData data = it2.next();
-				    	if (data.callBackOwner == _object && (_method == "" || _method == data.method) )				    		
-				    	{
-				    		if ( ESPLibraryLogController.LOG_WRITE_VERBOSE ){
-				    			Log.v(LOG_TAG, "Deregistering " + data.callBackOwner.toString() + "." + data.method + " for packet id " + _type.toString());
-				    		}
-				    		
-				    		it2.remove();
-				    		break;
-				    	}
-				    }
-			    }
-			    
-			}
-		}
-		
-	}
 	
 	/**
 	 * This method will allow the caller to determine if they have already registered for a specific packet using registerForPacket.
@@ -739,39 +554,7 @@ public class ValentineESP {
 	 */
 	public boolean isRegisteredForPacket (PacketId _type, Object _object)
 	{
-		// Lock here so the queue doesn't get modified while we are traversing it.
-		m_packetCallbackLock.lock();
-		
-		if (m_callbackData.containsKey(_type))
-		{
-			for (Iterator<Entry<PacketId, ArrayList<CallbackData>>> it = m_callbackData.entrySet().iterator(); it.hasNext();) 
-			{ 
-			    Map.Entry<PacketId, ArrayList<CallbackData>> pairs = (Map.Entry<PacketId, ArrayList<CallbackData>>)it.next();
-			    
-			    if (pairs.getKey() == _type)
-			    {
-				    for (Iterator<CallbackData> it2 = pairs.getValue().iterator(); it2.hasNext();)
-				    {
-				    	CallbackData data = it2.next();
-				    	if (data.callBackOwner == _object)
-				    	{
-				    		// Found a registration for the requested packet
-				    		
-				    		m_packetCallbackLock.unlock();
-				    		
-				    		return true;
-				    	}
-				    }
-			    }
-			    
-			} 
-			
-		}
-		
-		m_packetCallbackLock.unlock();
-		
-		// We didn't find any registration for the packet/object pair passed in. 
-		return false;		
+		return m_dispatcher.isRegisteredForPacket(_type, _object);
 	}
 	
 	/**
@@ -793,13 +576,9 @@ public class ValentineESP {
 		{
 			try 
 			{				
-				if (m_processingThread != null)
-				{
-					m_processingThread.setRun(false);
-					m_processingThread.interrupt();
-					// Once the processing thread is stopped always set the object to null so it will be GB'd.
-					m_processingThread = null;
-				}
+				m_dispatcher.stop();
+				// Nothing will answer the outstanding requests
+				m_requestTracker.failAll(ESPRequestException.Reason.STOPPED);
 				// Do not directly stop the reader and writer threads. Tell the VR_BluetoothWrapper to stop the the threads.
 				if(mVrBluetoothWrapper != null) {
 					mVrBluetoothWrapper.stopSync();
@@ -829,13 +608,9 @@ public class ValentineESP {
 		{
 			try 
 			{				
-				if (m_processingThread != null)
-				{
-					m_processingThread.setRun(false);
-					m_processingThread.interrupt();
-					// Once the processing thread is stopped always set the object to null so it will be GB'd.
-					m_processingThread = null;
-				}
+				m_dispatcher.stop();
+				// Nothing will answer the outstanding requests
+				m_requestTracker.failAll(ESPRequestException.Reason.STOPPED);
 				// Do not directly stop the reader and writer threads. Tell the VR_BluetoothWrapper to stop the the threads.
 				if(mVrBluetoothWrapper != null) {
 					mVrBluetoothWrapper.stopAsync();
@@ -854,47 +629,6 @@ public class ValentineESP {
 		}
 	}
 	
-	/**
-	 * This method performs the actual callback for packets registered using registerForPacket
-	 * 
-	 * @param _callbackData - The callback information.
-	 * @param _packet - The ESP packet to pass through the callback.
-	 */
-	private void m_doCallback(final CallbackData _callbackData, final ESPPacket _packet) 
-	{
-		Runnable callback = new Runnable()
-		{
-			public void run()
-			{
-				try 
-				{
-					if ((_callbackData != null) && (_callbackData.callBackOwner != null ) && (_callbackData.callBackOwner != null))
-					{
-						Class<? extends ESPPacket> packetClass = _packet.getClass();
-						_callbackData.callBackOwner.getClass().getMethod(_callbackData.method, packetClass).invoke(_callbackData.callBackOwner, _packet);
-					}
-				} 
-				catch ( InvocationTargetException e ) 
-				{
-		//			ValentineClient.getInstance().reportError(e.toString());
-					if(ESPLibraryLogController.LOG_WRITE_INFO){
-						Log.i(LOG_TAG, _callbackData.callBackOwner.toString() + " " + _callbackData.method + " There was an invoke error calling back to owner: " + e.getTargetException().toString());
-					}
-					e.printStackTrace();
-				} 
-				catch (Exception e) 
-				{
-					ValentineClient.getInstance().reportError(e.toString());
-					if(ESPLibraryLogController.LOG_WRITE_INFO){
-						Log.i(LOG_TAG, _callbackData.callBackOwner.toString() + " " + _callbackData.method + " There was an error calling back to owner: " + e.toString());
-					}
-					e.printStackTrace();
-				}
-			}
-		};
-		
-		callback.run();
-	}
 	
 	/**
 	 * Send a packet to the hardware.
@@ -909,10 +643,34 @@ public class ValentineESP {
 		}
 		else
 		{
-			PacketQueue.pushOutputPacketOntoQueue(_packet);
+			m_packetQueue.pushOutputPacketOntoQueue(_packet);
 		}
 	}
 	
+	/**
+	 * Send a request to the hardware and return a future that is completed by the response from the device the request
+	 * was sent to. The future fails if the device answers with respUnsupportedPacket, respRequestNotProcessed or
+	 * respDataError, if no response arrives before the timeout or if the library is stopped. Several requests, including
+	 * requests of the same type to different devices, can be outstanding at once.
+	 * 
+	 * Only requests that are answered with a single response packet can be sent this way: reqVersion, reqSerialNumber,
+	 * reqUserBytes, reqMaxSweepIndex, reqBatteryVoltage, reqSavvyStatus and reqVehicleSpeed.
+	 * 
+	 * @param _packet			The request to send.
+	 * @param _timeoutMillis	How long to wait for the response, in milliseconds.
+	 * 
+	 * @return	The future that holds the response.
+	 * 
+	 * @throws IllegalArgumentException if the request is not answered with a single response packet.
+	 */
+	public RequestFuture sendRequest(ESPPacket _packet, long _timeoutMillis)
+	{
+		// Track the request before sending it so a fast response can not be missed
+		RequestFuture rc = m_requestTracker.track(_packet, _timeoutMillis);
+		sendPacket(_packet);
+		return rc;
+	}
+	
 	/**
 	 * Starts the ESP Library demo mode. This will disconnect the client from a connected V1Connection.
 	 *  
@@ -942,12 +700,7 @@ public class ValentineESP {
 		m_demoFileThread = new ProcessDemoFileThread(_demoData, _repeat);
 		m_demoFileThread.start();
 		
-		if ((m_processingThread == null) || (!m_processingThread.isAlive()))
-		{
-			m_processingThread = new ProcessingThread();
-			
-			m_processingThread.start();
-		}
+		m_dispatcher.start();
 		
 		// Allow a stop notification when exiting demo mode
 		m_notified = false;
@@ -1004,7 +757,9 @@ public class ValentineESP {
 	/**
 	 * Class to hold the callback data.
 	 *
+	 * @deprecated The callbacks are held by the {@link PacketDispatcher}, which does not use this class.
 	 */
+	@Deprecated
 	public class CallbackData
 	{
 		public Object callBackOwner;
@@ -1013,7 +768,10 @@ public class ValentineESP {
 	
 	/** 
 	 * Class to hold information about callbacks that are waiting to be deregistered
+	 *
+	 * @deprecated The callbacks are held by the {@link PacketDispatcher}, which does not use this class.
 	 */
+	@Deprecated
 	public class DeregCallbackInfo
 	{
 		public Object callBackOwner;	
@@ -1021,89 +779,6 @@ public class ValentineESP {
 		public String method;
 	}
 	
-	/**
-	 * The ProcessingThread class is responsible for processing all packets received from the ESP bus.
-	 */
-	private class ProcessingThread extends Thread
-	{
-		private boolean m_run;
-		
-		/**
-		 * Sets or clears the flag to keep the thread running.
-		 * @param _run - Set to true to keep the thread running, set to false to stop the thread.
-		 */
-		public void setRun(boolean _run)
-		{
-			m_run = _run;
-		}
-		
-		/**
-		 * ProcessingThread constructor.
-		 */
-		public ProcessingThread()
-		{
-			m_run = true;
-		}
-		
-		/**
-		 * This is the actual thread execution method.
-		 */
-		public void run()
-		{
-			while (m_run)
-			{
-				try 
-				{
-					final ESPPacket packet = PacketQueue.getNextInputPacket();
-					
-					if (packet == null)
-					{
-						// No packets, so hang out for a while.
-						Thread.sleep(100);
-					}
-					else
-					{
-						if (m_callbackData.containsKey(packet.getPacketIdentifier()))
-						{
-							// Do not allow deregistering packets while iterating through this list because that will
-							// cause a structural change to the list, which should not be done while iterating through
-							// the list.							
-							ValentineESP.this.setLockedPacket( packet.getPacketIdentifier() );
-							
-							final ArrayList<CallbackData> list = m_callbackData.get(packet.getPacketIdentifier());
-							
-							for (int i = 0; i < list.size(); i++)
-							{
-								final CallbackData data = list.get(i);
-								
-								if (data == null)
-								{
-
-								}
-								else
-								{
-									new Runnable()
-									{
-										public void run()
-										{											
-											m_doCallback(data, packet);
-										}
-									}.run();
-								}
-							}
-						}
-						
-						// Allow registering and deregistering after we are done processing this packet
-						ValentineESP.this.setLockedPacket( PacketId.unknownPacketType );						
-					}
-				} 
-				catch (Exception e) 
-				{
-					m_run = false;
-				} 
-			}
-		}
-	};
 	
 	/**
 	 * This Thread will process the demo mode file contents as if they were ESP data.
@@ -1227,26 +902,7 @@ public class ValentineESP {
 	 */
 	public void clearAllCallbacks()
 	{
-		m_packetCallbackLock.lock();
-		if ( m_lockedPacket.toByteValue() == PacketId.unknownPacketType.toByteValue() ){
-		// We don't have a locked packet, so just clear everything
-			if ( ESPLibraryLogController.LOG_WRITE_VERBOSE ){
-	    		Log.v(LOG_TAG, "Clearing " + m_callbackData.size() + " callbacks");
-			}			
-			
-			m_callbackData.clear();
-			m_clearAllCallbacksOnUnlock = false;
-		}
-		else{		
-		// We have a locked packet type, so set the flag to clear all packets when we unlock the current packet type
-			m_clearAllCallbacksOnUnlock = true; 
-		}
-		
-		// Clear the pending queues while we are locked
-		m_packetsToDeregister.clear();
-		m_packetsToRegister.clear();
-		
-		m_packetCallbackLock.unlock();
+		m_dispatcher.clearAllCallbacks();
 	}
 	
 	/**
@@ -1256,38 +912,7 @@ public class ValentineESP {
 	 */
 	public void clearCallbacks(PacketId _type)
 	{
-		// Keep this locked for the duration of this method 
-		m_packetCallbackLock.lock();
-		
-		for (Iterator<Entry<PacketId, ArrayList<CallbackData>>> it = m_callbackData.entrySet().iterator(); it.hasNext();) 
-		{ 
-		    Map.Entry<PacketId, ArrayList<CallbackData>> pairs = (Map.Entry<PacketId, ArrayList<CallbackData>>)it.next();
-		    
-		    if (pairs.getKey() == _type)
-		    {
-		    	if ( _type.toByteValue() != m_lockedPacket.toByteValue() ){
-		    		if ( ESPLibraryLogController.LOG_WRITE_VERBOSE ){
-		        		Log.v(LOG_TAG, "Clearing all callbacks for packet id " + _type.toString());
-		    		}
-		    		
-		    		it.remove();
-		    		break;
-		    	}
-		    	else{
-		    		// Add all callbacks of this packet type to the pending degistration queue
-		    		for ( int i = 0; i < pairs.getValue().size(); i++ ){
-		    			DeregCallbackInfo info = new DeregCallbackInfo();
-		    			info.callBackOwner = pairs.getValue().get(i);
-		    			info.type = pairs.getKey();
-		    			info.method = "";
-		    			m_packetsToDeregister.add(info);
-		    		}
-		    	}
-		    }
-		} 
-		
-		m_packetCallbackLock.unlock();
-		
+		m_dispatcher.clearCallbacks(_type);
 	}
 		
 	/** 
@@ -1338,6 +963,15 @@ public class ValentineESP {
 		return m_demoData;
 	}
 	
+	/**
+	 * Return the packet queues used by this connection's reading, writing and processing threads.
+	 * @return The packet queues for this connection.
+	 */	
+	public PacketQueue getPacketQueue()
+	{
+		return m_packetQueue;
+	}
+	
 	/**
 	 * Notifies who ever is registered to receiver the Unsupported Device callback.
 	 */
@@ -1355,11 +989,7 @@ public class ValentineESP {
 	 */
 	public boolean isRunning() 
 	{
-		if (m_processingThread == null)
-		{
-			return false;
-		}
-		return m_processingThread.isAlive();
+		return m_dispatcher.isRunning();
 	}
 	
 	/**
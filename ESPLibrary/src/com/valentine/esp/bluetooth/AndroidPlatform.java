@@ -0,0 +1,82 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.bluetooth;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.valentine.esp.utilities.ESPClock;
+import com.valentine.esp.utilities.ESPLogger;
+
+/**
+ * The logger and clock ESPPlatform uses when the library is running on Android. Messages are written to logcat and the
+ * monotonic time comes from SystemClock.
+ */
+public class AndroidPlatform implements ESPLogger, ESPClock
+{
+	/**
+	 * See parent for default implementation.
+	 */
+	@Override
+	public void v(String tag, String msg)
+	{
+		Log.v(tag, msg);
+	}
+
+	/**
+	 * See parent for default implementation.
+	 */
+	@Override
+	public void d(String tag, String msg)
+	{
+		Log.d(tag, msg);
+	}
+
+	/**
+	 * See parent for default implementation.
+	 */
+	@Override
+	public void i(String tag, String msg)
+	{
+		Log.i(tag, msg);
+	}
+
+	/**
+	 * See parent for default implementation.
+	 */
+	@Override
+	public void w(String tag, String msg)
+	{
+		Log.w(tag, msg);
+	}
+
+	/**
+	 * See parent for default implementation.
+	 */
+	@Override
+	public void e(String tag, String msg)
+	{
+		Log.e(tag, msg);
+	}
+
+	/**
+	 * See parent for default implementation.
+	 */
+	@Override
+	public long currentTimeMillis()
+	{
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * See parent for default implementation.
+	 */
+	@Override
+	public long elapsedRealtime()
+	{
+		return SystemClock.elapsedRealtime();
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.bluetooth;
+
+/**
+ * The number of written packets the DataWriterThread may have waiting on an echo at one time. The window grows by one
+ * packet each time a full window of echoes comes back promptly, and is cut in half when the hardware shows it is
+ * struggling: a request not processed response, an echo that had to be purged, or an infV1Busy packet while the echoes
+ * are overdue. The V1 sends infV1Busy for as long as it is working through a bulk operation, so being busy alone is not
+ * a reason to send less.
+ *
+ * This class is not thread safe. VR_BluetoothWrapper only uses it while holding the echoLock.
+ */
+class EchoWindow
+{
+	/**
+	 * The window used when the connection starts. This is the number of pending echoes the library always allowed before
+	 * the window was made adaptive.
+	 */
+	static final int 			INITIAL_SIZE = 4;
+	static final int 			MIN_SIZE = 1;
+	static final int 			MAX_SIZE = 8;
+	/**
+	 * An echo that arrives within this time of the packet being written counts towards growing the window.
+	 */
+	static final long 			PROMPT_ECHO_MILLIS = 250;
+	/**
+	 * After the window shrinks, further congestion signals are ignored for this long. The packets that were already
+	 * written when the hardware got behind would otherwise shrink the window again for the same problem.
+	 */
+	static final long 			SHRINK_HOLDOFF_MILLIS = 250;
+
+	private int 				m_size;
+	private int 				m_promptEchoes;
+	private long 				m_lastShrinkTime;
+
+	EchoWindow()
+	{
+		reset();
+	}
+
+	/**
+	 * Starts over with the initial window.
+	 */
+	void reset()
+	{
+		m_size = INITIAL_SIZE;
+		m_promptEchoes = 0;
+		m_lastShrinkTime = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Retrieve the number of packets that may be waiting on an echo.
+	 *
+	 * @return The window size.
+	 */
+	int getSize()
+	{
+		return m_size;
+	}
+
+	/**
+	 * Called when the echo of a written packet is received.
+	 *
+	 * @param echoMillis	The time from the packet being written to its echo.
+	 *
+	 * @return True if the window grew.
+	 */
+	boolean onEcho(long echoMillis)
+	{
+		if ( echoMillis > PROMPT_ECHO_MILLIS ){
+			// The link is keeping up, but not well enough to send more at once
+			m_promptEchoes = 0;
+			return false;
+		}
+
+		m_promptEchoes++;
+		if ( m_promptEchoes < m_size || m_size >= MAX_SIZE ){
+			return false;
+		}
+		m_promptEchoes = 0;
+		m_size++;
+		return true;
+	}
+
+	/**
+	 * Called when the hardware could not keep up with the packets written to it.
+	 *
+	 * @param nowMillis	The current SystemClock.elapsedRealtime().
+	 *
+	 * @return True if the window shrank.
+	 */
+	boolean onCongestion(long nowMillis)
+	{
+		if ( m_size <= MIN_SIZE || (m_lastShrinkTime != Long.MIN_VALUE && nowMillis - m_lastShrinkTime < SHRINK_HOLDOFF_MILLIS) ){
+			// Ignored signals do not hold back the growth of the window
+			return false;
+		}
+		m_promptEchoes = 0;
+		m_lastShrinkTime = nowMillis;
+		m_size = Math.max(MIN_SIZE, m_size / 2);
+		return true;
+	}
+
+	/**
+	 * Called when an infV1Busy packet is received. The window only shrinks if the oldest echo is overdue, or if the V1 is
+	 * busy with a packet whose echo is still expected.
+	 *
+	 * @param nowMillis				The current SystemClock.elapsedRealtime().
+	 * @param oldestEchoMillis		How long the oldest packet waiting on an echo has been waiting, or 0 if none are waiting.
+	 * @param waitingOnBusyPacket	True if a packet waiting on an echo has a packet id in the busy list.
+	 *
+	 * @return True if the window shrank.
+	 */
+	boolean onV1Busy(long nowMillis, long oldestEchoMillis, boolean waitingOnBusyPacket)
+	{
+		if ( !waitingOnBusyPacket && oldestEchoMillis <= PROMPT_ECHO_MILLIS ){
+			// The V1 is working through packets it already has, and the echoes are keeping up
+			return false;
+		}
+		return onCongestion(nowMillis);
+	}
+}
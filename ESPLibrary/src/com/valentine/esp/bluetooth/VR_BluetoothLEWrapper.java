@@ -10,6 +10,7 @@ import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import android.annotation.TargetApi;
@@ -36,6 +37,8 @@ import com.valentine.esp.packets.ESPPacket;
 public class VR_BluetoothLEWrapper extends VR_BluetoothWrapper {
 
 	private static final String 		LOG_TAG = "VR_BluetoothLEWrapper LOG";
+	// Large enough to hold the largest ESP packet.
+	private static final int 			WRITE_BUFFER_SIZE = 256;
 		
 	// The UUID of the V1connection LE Service we need to discover so we can use it BluetoothGattCharacteristic.
 	private static final String 		V1_CONNECTION_LE_SERVICE = "92a0aff4-9e05-11e2-aa59-f23c91aec05e";
@@ -80,6 +83,14 @@ public class VR_BluetoothLEWrapper extends VR_BluetoothWrapper {
 	 */
 	private ArrayList<ESPPacket> 		receivedPackets = new ArrayList<ESPPacket>();
 	private ReentrantLock 				lock = new ReentrantLock();
+	// The bytes in m_readByteBuffer that were not part of a valid frame
+	private final AtomicLong 			mDiscardedByteCount = new AtomicLong();
+	
+	/**
+	 * Buffer the packets are encoded into before they are written. Only used by the writer thread.
+	 */
+	private final ByteBuffer 			mWriteBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+	private final byte [][] 			mWriteArrays = new byte[WRITE_BUFFER_SIZE + 1][];
 	
 	private BluetoothManager  			mBluetoothManager = null;
 	private BluetoothAdapter			mBluetoothAdapter = null;
@@ -387,7 +398,7 @@ public class VR_BluetoothLEWrapper extends VR_BluetoothWrapper {
 		for(Byte data: packetData) {
 			m_readByteBuffer.add(data);
 		}
-		ESPPacket packet = ESPPacket.makeFromBuffer(m_readByteBuffer, ConnectionType.V1Connection_LE, mlastKnownV1Type);
+		ESPPacket packet = ESPPacket.makeFromBuffer(m_readByteBuffer, ConnectionType.V1Connection_LE, mlastKnownV1Type, mDiscardedByteCount);
 		if(packet != null) { 			
 			// Lock the code to prevent access to the receivedPackets list.
 			lock.lock();
@@ -600,10 +611,19 @@ public class VR_BluetoothLEWrapper extends VR_BluetoothWrapper {
 			if(service != null) {
 				// We want to get the CLIENT_OUT_V1_IN_SHORT BluetoothGattGharacterisitic so we can write to ESPPacket to the V1.
 				BluetoothGattCharacteristic characteristic = service.getCharacteristic(CLIENT_OUT_SHORT_UUID);			
-				byte [] packetData = ESPPacket.makeByteStream(packet, ConnectionType.V1Connection_LE);
-				if(packetData == null) {
+				mWriteBuffer.clear();
+				int length = ESPPacket.encode(packet, ConnectionType.V1Connection_LE, mWriteBuffer);
+				if(length < 0) {
 					return false;
 				}
+				// The characteristic needs an array that is exactly the size of the packet, so keep one for each length.
+				// Only one write can be outstanding at a time, so the array is free again by the time it is reused.
+				byte [] packetData = mWriteArrays[length];
+				if(packetData == null) {
+					packetData = new byte[length];
+					mWriteArrays[length] = packetData;
+				}
+				System.arraycopy(mWriteBuffer.array(), 0, packetData, 0, length);
 				// Add the ESPPacket to the CLIENT_OUT_V1_IN_SHORT BluetoothGattGharacterisitic.
 				characteristic.setValue(packetData);
 				
@@ -635,4 +655,9 @@ public class VR_BluetoothLEWrapper extends VR_BluetoothWrapper {
 	public BluetoothSocket getSocket() {
 		return null;
 	}
+	
+	@Override
+	public long getDiscardedByteCount() {
+		return mDiscardedByteCount.get();
+	}
 }
@@ -10,8 +10,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.UUID;
 
 import android.bluetooth.BluetoothAdapter;
@@ -26,19 +26,40 @@ import android.util.Log;
 import com.valentine.esp.ValentineESP;
 import com.valentine.esp.constants.ESPLibraryLogController;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.SPPFrameBuffer;
+import com.valentine.esp.packets.SPPFrameIndex;
 
 public class VR_BluetoothSPPWrapper extends VR_BluetoothWrapper {
 	
 	private static final String 					LOG_TAG = "VR_BluetoothsppWrapper LOG";
 	
-	private static final int						STREAM_BUFFER_SIZE = 1024;
+	private static final int						STREAM_BUFFER_SIZE = SPPFrameBuffer.DEFAULT_CAPACITY;
+	private static final int						WRITE_BUFFER_SIZE = 512;
 	
 	private BluetoothSocket 						mBluetoothSocket;
 	private InputStream 							mInputStream;
 	private OutputStream 							mOutputStream;	
-	protected ArrayList<Byte> 						m_readByteBuffer;
 	
-	private static byte[] 							m_streamBuffer = new byte[STREAM_BUFFER_SIZE];		
+	/**
+	 * Ring buffer that the SPP data is read into and framed from.
+	 */
+	private SPPFrameBuffer 							mFrameBuffer = new SPPFrameBuffer(STREAM_BUFFER_SIZE);
+	/**
+	 * The frames found in the last read. Reused for every read.
+	 */
+	private final SPPFrameIndex 					mFrameIndex = new SPPFrameIndex();
+	/**
+	 * Buffer the escaped packets are encoded into before they are written. Only used by the writer thread.
+	 * This is large enough to hold the largest ESP packet with every byte escaped.
+	 */
+	private final ByteBuffer 						mWriteBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+	/**
+	 * The received bytes are framed from mFrameBuffer, so this list is no longer filled or read.
+	 * 
+	 * @deprecated DO NOT USE. THIS FIELD WILL BE REMOVED IN THE NEXT API RELEASE.
+	 */
+	@Deprecated
+	protected ArrayList<Byte> 						m_readByteBuffer = new ArrayList<Byte>();
 	
 	private static final String 					SPP_NAME_SEARCH_PREFIX = "V1connection-";
 	
@@ -46,7 +67,6 @@ public class VR_BluetoothSPPWrapper extends VR_BluetoothWrapper {
 		super(valentineESP, deviceToConnect, secondsToWait, ConnectionType.V1Connection, context.getApplicationContext());
 		// Always get application context to make sure we don't unintentionally leak an activity.
 		mContext = context.getApplicationContext();
-		m_readByteBuffer = new ArrayList<Byte>();
 		// SPP is always allowed to write because writing to the output stream is blocking call.
 		setCanWrite(true);
 		registerConnectStateReceiver();
@@ -378,6 +398,11 @@ public class VR_BluetoothSPPWrapper extends VR_BluetoothWrapper {
 		return mBluetoothSocket;
 	}
 	
+	@Override
+	public long getDiscardedByteCount() {
+		return mFrameBuffer.getDiscardedCount();
+	}
+	
 	/**
 	 * Stores {@link ESPPacket}s into an ArrayList, read from the bluetooth connections inputstream.
 	 */
@@ -392,32 +417,20 @@ public class VR_BluetoothSPPWrapper extends VR_BluetoothWrapper {
 
 			packetList.clear();
 			try {
-				// First, read all bytes that are available from the Bluetooth socket
-				if (mInputStream.available() != 0) {			
-					int readSize = mInputStream.read(m_streamBuffer);
-					
-					// Copy the data just read into the buffer for later processing. We can't use the read buffer for
-					// processing because there may be data left in the buffer that will need to be used on the next 
-					// call to this method. We can eliminate the need to copy each byte if we can find a way to read
-					// from the input stream and append directly to the m_readByteBuffer ArrayList instead of using the
-					// interim m_streamBuffer buffer.
-					for (int i = 0; i < readSize; i++)
-					{
-						// Using the value of method is more efficient than casting according to the warning compiler warning message.
-						m_readByteBuffer.add(Byte.valueOf(m_streamBuffer[i]));
-					}
-				}
+				// First, read all bytes that are available from the Bluetooth socket directly into the frame buffer.
+				mFrameBuffer.readFrom(mInputStream);
 				
-				// Generate all of the packets available in the data just read. Note that there may be data left in
-				// the buffer after this processing. If there is data left in the buffer, then the data represents a
-				// partial ESP packet and it will be used to build packets the next time this method is called.
-				ESPPacket curPacket;			
-				do {
-					curPacket = ESPPacket.makeFromBuffer(m_readByteBuffer, mConnectedType, mlastKnownV1Type);
+				// Find every frame in the data just read in a single pass, then build the packets for the valid frames.
+				// Note that there may be data left in the buffer after this processing. If there is data left in the
+				// buffer, then the data represents a partial ESP packet and it will be used to build packets the next
+				// time this method is called.
+				int frameCount = mFrameBuffer.indexFrames(mFrameIndex, mlastKnownV1Type);
+				for ( int i = 0; i < frameCount; i++ ){
+					ESPPacket curPacket = mFrameBuffer.buildPacket(mFrameIndex, i, mlastKnownV1Type);
 					if ( curPacket != null ){
 						packetList.add(curPacket);
-					}				
-				} while ( curPacket != null);
+					}
+				}
 				
 			} catch (IOException e) {
 				if(ESPLibraryLogController.LOG_WRITE_WARNING){
@@ -444,10 +457,7 @@ public class VR_BluetoothSPPWrapper extends VR_BluetoothWrapper {
 		prepForStartBase();
 		
 		// Make sure there is no left over data in the buffer for a previous connection
-		Arrays.fill(m_streamBuffer, 0, STREAM_BUFFER_SIZE, (byte)0);		
-		if ( m_readByteBuffer != null ){
-			m_readByteBuffer.clear();
-		}
+		mFrameBuffer.clear();
 	}
 	
 	/**
@@ -455,14 +465,13 @@ public class VR_BluetoothSPPWrapper extends VR_BluetoothWrapper {
 	 */
 	@Override
 	protected boolean writePacket(ESPPacket packet) {
-		// Pass in the connection type to makeByteStream to get the byte array for ESP packet.
-		byte[] buffer = ESPPacket.makeByteStream(packet, mConnectedType);
-		if(buffer == null) {
+		// Pass in the connection type to encode the escaped ESP packet into the reusable write buffer.
+		mWriteBuffer.clear();
+		int length = ESPPacket.encode(packet, mConnectedType, mWriteBuffer);
+		if(length < 0) {
 			return false;
 		}
 		boolean retVal = false;		
-		// Delimit the byte array.
-		buffer = escape(buffer);		
 		try {
 			
 			if(ESPLibraryLogController.LOG_WRITE_INFO){
@@ -470,7 +479,7 @@ public class VR_BluetoothSPPWrapper extends VR_BluetoothWrapper {
 			}
 			
 			// Do the actual writing
-			mOutputStream.write(buffer);
+			mOutputStream.write(mWriteBuffer.array(), 0, length);
 			mOutputStream.flush();
 			retVal = true;
 		} catch (IOException e) {
@@ -481,63 +490,6 @@ public class VR_BluetoothSPPWrapper extends VR_BluetoothWrapper {
 		}
 		return retVal;
 	}
-	
-	/**
-	 * Converts reserved bytes to escape bytes, so they can be sent to the V1Connection.
-	 * 
-	 * @param _bytes	The byte to escape.
-	 * 
-	 * @return			The modified byte.
-	 */
-	private byte[] escape(byte[] _bytes)
-	{
-		int count = 0;
-		for (int i = 1; i < _bytes.length-1; i++)
-		{
-			if (_bytes[i] == 0x7d )
-			{
-				count++;
-			}
-			else if (_bytes[i] == 0x7f)
-			{
-				count++;
-			}
-		}
-		
-		if (count == 0)
-		{
-			return _bytes;
-		}
-		else
-		{
-			byte[] escaped = new byte[_bytes.length + count];
-			int escapedCounter = 1;
-			escaped[0] = _bytes[0];
-			
-			for (int i = 1; i < _bytes.length-1; i++)
-			{
-				if (_bytes[i] == 0x7d )
-				{
-					escaped[escapedCounter] = 0x7d;
-					escapedCounter++;
-					escaped[escapedCounter] = 0x5d;
-				}
-				else if (_bytes[i] == 0x7f)
-				{
-					escaped[escapedCounter] = 0x7d;
-					escapedCounter++;
-					escaped[escapedCounter] = 0x5f;
-				}
-				else
-				{
-					escaped[escapedCounter] = _bytes[i];
-				}
-				escapedCounter++;
-			}
-			escaped[escaped.length-1] = _bytes[_bytes.length-1];
-			return escaped;
-		}
-	}
 
 	protected void mDisconnect() {
 		// DO NOTHING HERE. THIS METHOD WAS DESIGNED FOR A DISCONNECTION PROCESS THAT NEED TO OCCUR ON THE UI THREAD.
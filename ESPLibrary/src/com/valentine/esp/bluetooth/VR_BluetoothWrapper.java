@@ -8,6 +8,8 @@ package com.valentine.esp.bluetooth;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import android.bluetooth.BluetoothDevice;
@@ -49,6 +51,8 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 	
 	protected 	ConnectionType 						mConnectedType;
 	protected 	ValentineESP 						mValentineESP;
+	// The packet queues of the ValentineESP that owns this connection
+	protected 	PacketQueue 						mPacketQueue;
 	private 	int             					m_emptyReadCount;
 	private 	boolean 							m_notifiedNoData;
 	protected boolean 								mShouldNotify = false;
@@ -86,6 +90,10 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 	
 	protected ReentrantLock							echoLock  = new ReentrantLock();
 	protected ArrayList<Pair<Long,ESPPacket>>		expectedEchoPackets = new ArrayList<Pair<Long,ESPPacket>>();
+	// Signalled when packets are removed from expectedEchoPackets, so the writer thread can send the next packet
+	protected Condition								echoRemoved = echoLock.newCondition();
+	// The number of packets that may be waiting on an echo. Only used while holding the echoLock.
+	protected EchoWindow							mEchoWindow = new EchoWindow();
 	
 	protected Devices 								mlastKnownV1Type =  Devices.UNKNOWN;
 	
@@ -205,6 +213,7 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 			throw new IllegalArgumentException("The ValentineESP instance was null. A valid instance of ValentienESP must be passed in.");
 		}
 		this.mValentineESP = valentineESP;
+		this.mPacketQueue = valentineESP.getPacketQueue();
 		this.m_retryOnConnectFailure = true;
 		this.mSecondsToWait =  secondsToWait;
 		this.MAX_EMPTY_READS = mSecondsToWait * 10;
@@ -508,7 +517,7 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 	public void sendPacket(ESPPacket packet) {
 		// The write thread is responsible for the actual packet write. We just need to add the packet 
 		// to the queue here so the write thread can find it.		
-		PacketQueue.pushOutputPacketOntoQueue(packet);		
+		mPacketQueue.pushOutputPacketOntoQueue(packet);		
 	}
 	
 	/**
@@ -668,6 +677,18 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 	 */
 	public abstract	BluetoothSocket 	getSocket();
 	
+	/**
+	 * Retrieve the number of bytes received on this connection that were thrown away because they were not part of a
+	 * valid frame.
+	 * 
+	 * Subclasses that do not track discarded bytes inherit this implementation, which always returns 0.
+	 * 
+	 * @return	The number of discarded bytes since this wrapper was created.
+	 */
+	public long getDiscardedByteCount() {
+		return 0;
+	}
+	
 	/**
 	 * Method initialize the sub class variables that are expected to be in a specific state before the library is started. 
 	 */
@@ -727,51 +748,52 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 		 */
 		public void run() {
 			
-			int maxPendingEchoes = 4;
+			// The longest time to block before checking m_run again. Any change that lets the thread write ends the wait early.
+			long waitMillis = 100;
 			
-			// Clear the echo queue when starting the write thread
+			// Clear the echo queue and start with the initial window when starting the write thread
 			echoLock.lock();
 			expectedEchoPackets.clear();
+			mEchoWindow.reset();
+			echoRemoved.signalAll();
 			echoLock.unlock();
 			
 			while (m_run) {
 				// Check to see if the writer thread is able to write to the bluetooth connection.
 				if(canWriteToV1()) {
 					try {
-						ESPPacket packet = PacketQueue.getNextOutputPacket();
+						// Blocks until a packet can be written, instead of polling the queue
+						ESPPacket packet = mPacketQueue.getNextOutputPacket(waitMillis);
 						
 						if ( packet != null && !m_allowSendingPacket (packet) ){
 							// Don't send this packet
 							packet = null;
 						}
 						
-						if (packet == null)
-						{
-							sleep(100);
-						}
-						else
+						if (packet != null)
 						{	
-							if (PacketQueue.isPacketIdInBusyList(packet.getPacketIdentifier()))
+							if (mPacketQueue.isPacketIdInBusyList(packet.getPacketIdentifier()))
 							{
-								PacketQueue.pushOutputPacketOntoQueue(packet);
-								sleep(100);
+								mPacketQueue.pushOutputPacketOntoQueue(packet);
+								mPacketQueue.waitWhileInBusyList(packet.getPacketIdentifier(), waitMillis);
 							}
 							else
 							{
 								// Wait while the echo wait queue is full to avoid the request not processed from the V1connection due to 
-								// a full request buffer in the hardware.
-								echoLock.lock();									
-								int pendingEchoCnt = expectedEchoPackets.size();
-								echoLock.unlock();									
-								while ( pendingEchoCnt >= maxPendingEchoes ){
-									Thread.sleep (5);
-									echoLock.lock();
-									pendingEchoCnt = expectedEchoPackets.size();
+								// a full request buffer in the hardware. The window grows while the echoes come back promptly and
+								// shrinks when the hardware falls behind.
+								echoLock.lock();
+								try {
+									while ( expectedEchoPackets.size() >= mEchoWindow.getSize() ){
+										echoRemoved.await(waitMillis, TimeUnit.MILLISECONDS);
+									}
+								}
+								finally {
 									echoLock.unlock();
 								}
 								
 								// Store the last packet of this type in the packet queue for handling busy and not processed responses
-								PacketQueue.putLastWrittenPacketOfType(packet);
+								mPacketQueue.putLastWrittenPacketOfType(packet);
 
 								// Write ESPPacket to the V1 connection; bluetooth connection type agnostic. 
 								boolean retVal = writePacket(packet);
@@ -836,7 +858,7 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 		 */
 		private boolean m_allowSendingPacket (ESPPacket packet)
 		{
-			if ( PacketQueue.getV1Type() == Devices.VALENTINE1_LEGACY && m_protectLegacyMode ){
+			if ( mPacketQueue.getV1Type() == Devices.VALENTINE1_LEGACY && m_protectLegacyMode ){
 				// Check to see if the packet should be prohibited by Legacy Mode rules
 				PacketId id = packet.getPacketIdentifier();
 				if ( id == PacketId.reqVersion ){
@@ -929,8 +951,8 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 		public void run() {
 			// Reset the display count before starting and clear the busy packets in the packet queue
 			m_dispCount = V1_BUSY_RESET_VAL;
-			PacketQueue.setBusyPacketIds(null);
-			PacketQueue.clearSendAfterBusyQueue();
+			mPacketQueue.setBusyPacketIds(null);
+			mPacketQueue.clearSendAfterBusyQueue();
 			// An array list that holds the packets received from the Bluetooth connection.
 			ArrayList<ESPPacket> packets = new ArrayList<ESPPacket>();
 			
@@ -987,7 +1009,8 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 								{
 									// Clear the counter when we get a busy packet and tell the packet queue what the V1 is busy working on.
 									m_dispCount = V1_BUSY_RESET_VAL;
-									PacketQueue.setBusyPacketIds(newPacket);
+									mPacketQueue.setBusyPacketIds(newPacket);
+									mCheckEchoWindowWhileBusy();
 								}
 								else if (newPacket.getPacketIdentifier() == PacketId.respRequestNotProcessed)
 								{
@@ -998,7 +1021,8 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 									// so we will requeue the packet to be sent out again
 									Integer idInt = (Integer)newPacket.getResponseData();
 									byte packetId = idInt.byteValue(); // (Byte)newPacket.getResponseData();
-									ESPPacket packet = PacketQueue.getLastWrittenPacketOfType(PacketIdLookup.getConstant(packetId));
+									mShrinkEchoWindow("respRequestNotProcessed");
+									ESPPacket packet = mPacketQueue.getLastWrittenPacketOfType(PacketIdLookup.getConstant(packetId));
 									if (packet != null && !packet.getResentFlag())
 									{
 										if(ESPLibraryLogController.LOG_WRITE_INFO){
@@ -1008,11 +1032,11 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 										
 										if ( m_dispCount < V1_NOT_BUSY_THRESH ){
 											// Send the try resending the packet after the V1 is not busy
-											PacketQueue.pushOnToSendAfterBusyQueue(packet);
+											mPacketQueue.pushOnToSendAfterBusyQueue(packet);
 										}
 										else{
 											// The V1 is not busy now, so send the packet to the V1 now
-											PacketQueue.pushOutputPacketOntoQueue(packet);
+											mPacketQueue.pushOutputPacketOntoQueue(packet);
 										}
 									}
 									else
@@ -1020,7 +1044,7 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 										if(ESPLibraryLogController.LOG_WRITE_INFO){
 											Log.i(LOG_TAG, "Aborting resend of packet of type " + PacketIdLookup.getConstant(packetId).toString() );												
 										}
-										PacketQueue.pushInputPacketOntoQueue(newPacket);
+										mPacketQueue.pushInputPacketOntoQueue(newPacket);
 									}
 								}
 								else if (newPacket.getPacketIdentifier() == PacketId.infDisplayData)
@@ -1035,18 +1059,18 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 									if ( m_dispCount == V1_NOT_BUSY_THRESH){
 										// We hit the trigger point to decide that the V1 is not busy. Transfer packets that were not processsed
 										// to the output queue so we can try again.
-										PacketQueue.setBusyPacketIds(null);
-										PacketQueue.sendAfterBusyQueue();
+										mPacketQueue.setBusyPacketIds(null);
+										mPacketQueue.sendAfterBusyQueue();
 									}
 
 									// Always send display packets to the app.
-									PacketQueue.pushInputPacketOntoQueue(newPacket);
+									mPacketQueue.pushInputPacketOntoQueue(newPacket);
 								}
 
 								else
 								{
 									// This is not a special case, so send this packet to the app
-									PacketQueue.pushInputPacketOntoQueue(newPacket);
+									mPacketQueue.pushInputPacketOntoQueue(newPacket);
 								}
 							}												
 						} // for (ESPPacket newPacket : packets)
@@ -1087,7 +1111,7 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 			while ( it.hasNext() ){
 				Pair<Long,ESPPacket> curPacketPair = it.next();
 				if ( curPacketPair.first < minKeepTime ){
-					if ( PacketQueue.getHoldoffOutput() ){
+					if ( mPacketQueue.getHoldoffOutput() ){
 						// Don't throw away the echoes if the V1 is not allowing transmission right now. Instead, update the transmission time to now
 						if ( modifiedPackets == null ){
 							modifiedPackets = new ArrayList<Pair<Long,ESPPacket>>();
@@ -1110,6 +1134,14 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 				Log.e (LOG_TAG, "Purged " + purgeCnt + " expired echo wait packet(s). Queue size = " + expectedEchoPackets.size());
 			}
 			
+			if ( purgeCnt > 0 ){
+				echoRemoved.signalAll();
+				// The echoes were lost, so write fewer packets at once
+				if ( mEchoWindow.onCongestion(SystemClock.elapsedRealtime()) && ESPLibraryLogController.LOG_WRITE_ECHO_INFO ){
+					Log.d (LOG_TAG, "Echo window shrank to " + mEchoWindow.getSize() + " after purging echoes");
+				}
+			}
+			
 			if ( modifiedPackets != null ){
 				// Add the packets that have been modified due to the V1 time slice holdoff
 				expectedEchoPackets.addAll(modifiedPackets);
@@ -1164,6 +1196,7 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 								Log.i (LOG_TAG, "Removing echo packet #" + i);
 							}
 							removePacket = true;					
+							mOnEchoReceived(packetPair.first);
 						}
 						else{
 							// The V1connection/LE hardware only echoes packets that are placed on the ESP hardware bus. It will not echo packets
@@ -1177,6 +1210,7 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 										 testPacket.getPacketIdentifier() == PacketId.reqVersion ){
 									// The newPacket passed in is the response to the V1connection/LE version request
 										removePacket = true;
+										mOnEchoReceived(packetPair.first);
 									}	
 								}
 							}
@@ -1188,6 +1222,7 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 				if ( removePacket ){
 					// We want to remove this packet from the queue.
 					expectedEchoPackets.remove(i);					
+					echoRemoved.signalAll();
 					if ( ESPLibraryLogController.LOG_WRITE_ECHO_INFO ){
 						Log.i (LOG_TAG, "After removal, queue size = " + expectedEchoPackets.size() );
 					}
@@ -1198,6 +1233,56 @@ public abstract class VR_BluetoothWrapper implements IVR_BluetoothWrapper {
 			echoLock.unlock();
 		}
 
+		/**
+		 * Grows the echo window if echoes are coming back promptly. Must be called while holding the echoLock.
+		 * 
+		 * @param sentTime - The time the echoed packet was written.
+		 */
+		private void mOnEchoReceived (long sentTime)
+		{
+			if ( mEchoWindow.onEcho(SystemClock.elapsedRealtime() - sentTime) && ESPLibraryLogController.LOG_WRITE_ECHO_INFO ){
+				Log.d (LOG_TAG, "Echo window grew to " + mEchoWindow.getSize());
+			}
+		}
+		
+		/**
+		 * Shrinks the echo window because the hardware is not keeping up with the packets written to it.
+		 * 
+		 * @param reason - The packet that showed the hardware is behind, for logging.
+		 */
+		private void mShrinkEchoWindow (String reason)
+		{
+			echoLock.lock();
+			if ( mEchoWindow.onCongestion(SystemClock.elapsedRealtime()) && ESPLibraryLogController.LOG_WRITE_ECHO_INFO ){
+				Log.d (LOG_TAG, "Echo window shrank to " + mEchoWindow.getSize() + " after " + reason);
+			}
+			echoLock.unlock();
+		}
+
+		/**
+		 * Shrinks the echo window after an infV1Busy packet if the echoes are overdue or the V1 is busy with a packet we are
+		 * still waiting to see the echo of. Must be called after the packet queue has been given the busy packet ids.
+		 */
+		private void mCheckEchoWindowWhileBusy ()
+		{
+			long now = SystemClock.elapsedRealtime();
+			long oldestEchoMillis = 0;
+			boolean waitingOnBusyPacket = false;
+			
+			echoLock.lock();
+			for ( int i = 0; i < expectedEchoPackets.size(); i++ ){
+				Pair<Long,ESPPacket> packetPair = expectedEchoPackets.get(i);
+				oldestEchoMillis = Math.max(oldestEchoMillis, now - packetPair.first);
+				if ( packetPair.second != null && mPacketQueue.isPacketIdInBusyList(packetPair.second.getPacketIdentifier()) ){
+					waitingOnBusyPacket = true;
+				}
+			}
+			if ( mEchoWindow.onV1Busy(now, oldestEchoMillis, waitingOnBusyPacket) && ESPLibraryLogController.LOG_WRITE_ECHO_INFO ){
+				Log.d (LOG_TAG, "Echo window shrank to " + mEchoWindow.getSize() + " after infV1Busy");
+			}
+			echoLock.unlock();
+		}
+
 		/**
 		 * Prints out a log statement containing information about the supplied {@link ESPPacket}.
 		 * 
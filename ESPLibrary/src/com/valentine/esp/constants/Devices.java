@@ -27,6 +27,9 @@ public enum Devices
 	VALENTINE1_LEGACY ((byte)(0x98), "Legacy Valentine1"),
 	UNKNOWN ((byte)0x99, "Unknown");
 	
+	// values() returns a new copy every time it is called, so keep one to index into.
+	private static final Devices[] m_valuesByIndex = values();
+	
 	byte m_value;
 	String m_name;
 		
@@ -75,6 +78,6 @@ public enum Devices
 			return Devices.UNKNOWN;
 		}
 		
-		return Devices.values()[val]; 
+		return m_valuesByIndex[val]; 
 	}
 }
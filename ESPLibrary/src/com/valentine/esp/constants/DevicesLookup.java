@@ -5,15 +5,18 @@
  */
 package com.valentine.esp.constants;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /** This utility class converts a byte value to a Devices value
  * 
  */
 public class DevicesLookup 
 {
-	static Map<Byte, Devices> m_values = new HashMap<Byte, Devices>();  
+	// Indexed by the unsigned device byte. Built when the class is loaded, so it is safe to use from any thread.
+	private static final Devices[] m_values = new Devices[256];
+	
+	static
+	{
+		setUpValues();
+	}
 	
 	/** Converts a byte value to a Devices value
 	 * @param _value the byte value to return the Devices value for
@@ -21,43 +24,37 @@ public class DevicesLookup
 	 */
 	public static Devices getConstant(byte _value)
 	{
-		if (m_values.size() == 0)
-		{
-			setUpValues();
-		}
-		
-		// Trap special cases
-		if ( _value == Devices.VALENTINE1_LEGACY.toByteValue() ){
-			return Devices.VALENTINE1_LEGACY;
-		}
-		if ( _value == Devices.UNKNOWN.toByteValue() ){
-			return Devices.UNKNOWN;
-		}
-		
-		// Cast to char so it isn't treated as a signed value.
-		if ( (char)_value > (char)0x0F ){
-			_value &= (byte)0x0F;
-		}
-		
-		Devices retDev = m_values.get(_value);
-		
-		if ( retDev == null ){
-			retDev = Devices.UNKNOWN;
-		}
-		
-		return retDev; 
+		return m_values[_value & 0xFF];
 	}
 	
 	/**
-	 * Sets up a map containing the all the Devices values using the Devices byte value as the key.
+	 * Sets up a table containing the Devices value for every possible byte value.
 	 */
 	private static void setUpValues()
 	{
 		Devices[] array = Devices.values();
 		
+		for (int i = 0; i < m_values.length; i++)
+		{
+			m_values[i] = Devices.UNKNOWN;
+		}
+		
+		// Only the low nibble identifies the device, so every value that shares the low nibble maps to the same device.
 		for (int i = 0; i < array.length; i++)
 		{
-			m_values.put(array[i].toByteValue(), array[i]);
+			byte value = array[i].toByteValue();
+			if ( (value & 0xF0) != 0 ){
+				// The special cases are trapped below
+				continue;
+			}
+			for (int upper = 0x00; upper <= 0xF0; upper += 0x10)
+			{
+				m_values[upper | value] = array[i];
+			}
 		}
+		
+		// Trap special cases
+		m_values[Devices.VALENTINE1_LEGACY.toByteValue() & 0xFF] = Devices.VALENTINE1_LEGACY;
+		m_values[Devices.UNKNOWN.toByteValue() & 0xFF] = Devices.UNKNOWN;
 	}
 }
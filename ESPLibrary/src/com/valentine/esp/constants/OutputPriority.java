@@ -0,0 +1,27 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license. 
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.constants;
+
+/**
+ * The priority classes of the output queue, from highest to lowest. The writer thread always sends the oldest packet of
+ * the highest priority class that has a packet ready, so packets in the same class are sent in the order they were queued.
+ */
+public enum OutputPriority 
+{
+	/**
+	 * User actions that should reach the V1 right away, such as mute and display requests.
+	 */
+	URGENT,
+	/**
+	 * Queries and other requests. Packets that have not been given a priority are sent with this one.
+	 */
+	NORMAL,
+	/**
+	 * Traffic that may wait behind everything else. No packet id uses this class unless it is set with
+	 * PacketQueue.setOutputPriority().
+	 */
+	BULK
+}
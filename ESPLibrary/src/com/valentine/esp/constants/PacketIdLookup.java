@@ -5,12 +5,15 @@
  */
 package com.valentine.esp.constants;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class PacketIdLookup 
 {
-	static Map<Byte, PacketId> m_values = new HashMap<Byte, PacketId>();  
+	// Indexed by the unsigned packet id byte. Built when the class is loaded, so it is safe to use from any thread.
+	private static final PacketId[] m_values = new PacketId[256];
+	
+	static
+	{
+		setUpValues();
+	}
 	
 	/**
 	 * Gets a packetId for a given byte value.
@@ -21,30 +24,24 @@ public class PacketIdLookup
 	 */
 	public static PacketId getConstant(byte _value)
 	{
-		if (m_values.size() == 0)
-		{
-			setUpValues();
-		}
-		
-		PacketId retId = m_values.get(_value);
-		
-		if ( retId == null ){
-			retId = PacketId.unknownPacketType;			
-		}
-		
-		return retId;
+		return m_values[_value & 0xFF];
 	}
 	
 	/**
-	 * Sets up the packetId map, used for retrieving packetIds from byte values.
+	 * Sets up the packetId table, used for retrieving packetIds from byte values.
 	 */
 	private static void setUpValues()
 	{
+		for (int i = 0; i < m_values.length; i++)
+		{
+			m_values[i] = PacketId.unknownPacketType;
+		}
+		
 		PacketId[] array = PacketId.values();
 		
 		for (int i = 0; i < array.length; i++)
 		{
-			m_values.put(array[i].toByteValue(), array[i]);
+			m_values[array[i].toByteValue() & 0xFF] = array[i];
 		}
 	}
 }
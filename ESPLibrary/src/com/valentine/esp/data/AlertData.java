@@ -5,7 +5,7 @@
  */
 package com.valentine.esp.data;
 
-import java.nio.ByteBuffer;
+import com.valentine.esp.packets.PacketLayout;
 
 public class AlertData 
 {
@@ -43,6 +43,33 @@ public class AlertData
 	private BandArrowData m_bandArrowData;
 	private boolean m_priorityAlert;
 	
+	/**
+	 * Creates an empty AlertData. Call buildFromData() to fill it in.
+	 */
+	public AlertData()
+	{
+		// Nothing to do in the empty constructor
+	}
+	
+	/**
+	 * Creates a copy of the AlertData passed in. Use this to keep alert data that came from a pooled packet.
+	 * 
+	 * @param src	The AlertData to copy.
+	 */
+	public AlertData(AlertData src)
+	{
+		m_alertIndexAndCount = (src.m_alertIndexAndCount == null) ? null : new AlertIndexAndCount(src.m_alertIndexAndCount);
+		m_frequencyMSB = src.m_frequencyMSB;
+		m_frequencyLSB = src.m_frequencyLSB;
+		m_frequency = src.m_frequency;
+		m_frontSignalStrength = src.m_frontSignalStrength;
+		m_rearSignalStrength = src.m_rearSignalStrength;
+		m_frontSignalStrengthByte = src.m_frontSignalStrengthByte;
+		m_rearSignalStrengthByte = src.m_rearSignalStrengthByte;
+		m_bandArrowData = (src.m_bandArrowData == null) ? null : new BandArrowData(src.m_bandArrowData);
+		m_priorityAlert = src.m_priorityAlert;
+	}
+	
 	/**
 	 * Returns the AlertIndex count
 	 * 
@@ -263,31 +290,28 @@ public class AlertData
 	 */
 	public void buildFromData(byte[] _bytes)
 	{
-		m_alertIndexAndCount = new AlertIndexAndCount();
-		m_bandArrowData = new BandArrowData();
-		
-		m_alertIndexAndCount.buildFromByte(_bytes[0]);
-		m_frequencyMSB = _bytes[1];
-		m_frequencyLSB = _bytes[2];
-		
-		ByteBuffer b = ByteBuffer.allocate(4);
-		b.put((byte) 0);
-		b.put((byte) 0);
-		b.put(m_frequencyMSB);
-		b.put(m_frequencyLSB);
-		int temp = b.getInt(0);
+		// Reuse the sub structures when this object is filled in again
+		if ( m_alertIndexAndCount == null ){
+			m_alertIndexAndCount = new AlertIndexAndCount();
+		}
+		if ( m_bandArrowData == null ){
+			m_bandArrowData = new BandArrowData();
+		}
 		
-		m_frequency = temp;
+		m_alertIndexAndCount.buildFromByte(PacketLayout.ALERT_INDEX_AND_COUNT.getByte(_bytes));
+		m_frequency = PacketLayout.ALERT_FREQUENCY.getUnsigned(_bytes);
+		m_frequencyMSB = (byte) (m_frequency >> 8);
+		m_frequencyLSB = (byte) m_frequency;
 		
-		m_frontSignalStrength = (int)(_bytes[3] & 0xff);
-		m_rearSignalStrength = (int)(_bytes[4] & 0xff);
+		m_frontSignalStrengthByte = PacketLayout.ALERT_FRONT_SIGNAL_STRENGTH.getByte(_bytes);
+		m_rearSignalStrengthByte = PacketLayout.ALERT_REAR_SIGNAL_STRENGTH.getByte(_bytes);
 		
-		m_frontSignalStrengthByte = _bytes[3];
-		m_rearSignalStrengthByte = _bytes[4];
+		m_frontSignalStrength = (int)(m_frontSignalStrengthByte & 0xff);
+		m_rearSignalStrength = (int)(m_rearSignalStrengthByte & 0xff);
 		
-		m_bandArrowData.buildFromByte(_bytes[5]);
+		m_bandArrowData.buildFromByte(PacketLayout.ALERT_BAND_ARROW.getByte(_bytes));
 		
-		if ((_bytes[6] & 128) > 0)
+		if ((PacketLayout.ALERT_AUX.getByte(_bytes) & 128) > 0)
 		{
 			m_priorityAlert = true;
 		}
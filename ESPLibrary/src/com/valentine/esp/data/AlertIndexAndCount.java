@@ -10,6 +10,25 @@ public class AlertIndexAndCount
 	private int m_count;
 	private int m_index;
 	
+	/**
+	 * Creates an empty AlertIndexAndCount.
+	 */
+	public AlertIndexAndCount()
+	{
+		// Nothing to do in the empty constructor
+	}
+	
+	/**
+	 * Creates a copy of the AlertIndexAndCount passed in.
+	 * 
+	 * @param src	The AlertIndexAndCount to copy.
+	 */
+	public AlertIndexAndCount(AlertIndexAndCount src)
+	{
+		m_count = src.m_count;
+		m_index = src.m_index;
+	}
+	
 	/**
 	 * Gets the number of current alerts present.
 	 * @return	The number of present alerts.
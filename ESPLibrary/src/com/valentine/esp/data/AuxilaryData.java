@@ -16,6 +16,16 @@ public class AuxilaryData
 	private boolean m_legacy;
 	private boolean m_reserved2;
 	
+	// Read only objects for every possible byte value, see fromByte()
+	private static final AuxilaryData [] m_sharedValues = new AuxilaryData[256];
+	
+	static
+	{
+		for ( int i = 0; i < m_sharedValues.length; i++ ){
+			m_sharedValues[i] = new SharedAuxilaryData((byte) i);
+		}
+	}
+	
 	public AuxilaryData ()
 	{
 		// Nothing to do in the empty constructor
@@ -36,6 +46,30 @@ public class AuxilaryData
 		 m_legacy = src.m_legacy;
 		 m_reserved2 = src.m_reserved2;
 	}
+	
+	/**
+	 * Retrieve the shared object for a raw byte. There is one read only object for each of the 256 byte values, so
+	 * decoding a byte does not allocate anything. Calling setFromByte or clear on the object returned throws an
+	 * UnsupportedOperationException. Use the copy constructor to get an object that can be changed.
+	 * 
+	 * @param _data packed byte containing the auxiliary data.
+	 * 
+	 * @return The shared object for the byte.
+	 */
+	public static AuxilaryData fromByte(byte _data)
+	{
+		return m_sharedValues[_data & 0xFF];
+	}
+	
+	/**
+	 * Determine if this is one of the read only objects returned by fromByte().
+	 * 
+	 * @return true if this object can not be changed, else false.
+	 */
+	boolean isShared()
+	{
+		return false;
+	}
 
 	/**
 	 * Method to clear all bits in this object
@@ -54,6 +88,10 @@ public class AuxilaryData
 	 */
 	public boolean isEqual(AuxilaryData src)
 	{
+		if ( src == this ){
+			return true;
+		}
+		
 		if (  m_soft != src.m_soft) { return false;	}
 		if (  m_TSHoldOff != src.m_TSHoldOff) { return false;	}
 		if (  m_sysStatus != src.m_sysStatus) { return false;	}
@@ -238,4 +276,27 @@ public class AuxilaryData
 			m_reserved2 = false;
 		}
 	}
+	
+	/**
+	 * The read only objects returned by fromByte().
+	 */
+	private static final class SharedAuxilaryData extends AuxilaryData
+	{
+		SharedAuxilaryData(byte _data)
+		{
+			super.setFromByte(_data);
+		}
+		
+		@Override
+		public void setFromByte(byte _data)
+		{
+			throw new UnsupportedOperationException("The shared AuxilaryData objects can not be changed");
+		}
+		
+		@Override
+		boolean isShared()
+		{
+			return true;
+		}
+	}
 }
@@ -15,6 +15,16 @@ public class BandAndArrowIndicatorData
 	private boolean m_side;
 	private boolean m_rear;
 	
+	// Read only objects for every possible byte value, see fromByte()
+	private static final BandAndArrowIndicatorData [] m_sharedValues = new BandAndArrowIndicatorData[256];
+	
+	static
+	{
+		for ( int i = 0; i < m_sharedValues.length; i++ ){
+			m_sharedValues[i] = new SharedBandAndArrowIndicatorData((byte) i);
+		}
+	}
+	
 	public BandAndArrowIndicatorData ()
 	{
 		// Nothing to do in the empty constructor
@@ -35,6 +45,30 @@ public class BandAndArrowIndicatorData
 		 m_rear= src.m_rear;
 	}
 	
+	/**
+	 * Retrieve the shared object for a raw byte. There is one read only object for each of the 256 byte values, so
+	 * decoding a byte does not allocate anything. Calling setFromByte or clear on the object returned throws an
+	 * UnsupportedOperationException. Use the copy constructor to get an object that can be changed.
+	 * 
+	 * @param _data packed byte containing the band and arrow data.
+	 * 
+	 * @return The shared object for the byte.
+	 */
+	public static BandAndArrowIndicatorData fromByte(byte _data)
+	{
+		return m_sharedValues[_data & 0xFF];
+	}
+	
+	/**
+	 * Determine if this is one of the read only objects returned by fromByte().
+	 * 
+	 * @return true if this object can not be changed, else false.
+	 */
+	boolean isShared()
+	{
+		return false;
+	}
+	
 	/**
 	 * Method to clear the data to provide a blank band/arrow indicator
 	 */
@@ -52,6 +86,10 @@ public class BandAndArrowIndicatorData
 	 */
 	public boolean isEqual(BandAndArrowIndicatorData src)
 	{
+		if ( src == this ){
+			return true;
+		}
+		
 		if (  m_laser != src.m_laser) { return false;	}
 		if (  m_kaBand != src.m_kaBand) { return false;	}
 		if (  m_kBand != src.m_kBand) { return false;	}
@@ -216,4 +254,27 @@ public class BandAndArrowIndicatorData
 			m_rear = false;
 		}		
 	}
+	
+	/**
+	 * The read only objects returned by fromByte().
+	 */
+	private static final class SharedBandAndArrowIndicatorData extends BandAndArrowIndicatorData
+	{
+		SharedBandAndArrowIndicatorData(byte _data)
+		{
+			super.setFromByte(_data);
+		}
+		
+		@Override
+		public void setFromByte(byte _data)
+		{
+			throw new UnsupportedOperationException("The shared BandAndArrowIndicatorData objects can not be changed");
+		}
+		
+		@Override
+		boolean isShared()
+		{
+			return true;
+		}
+	}
 }
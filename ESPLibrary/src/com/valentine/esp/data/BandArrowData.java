@@ -18,6 +18,31 @@ public class BandArrowData
 	private boolean m_side;
 	private boolean m_rear;
 	
+	/**
+	 * Creates an empty BandArrowData.
+	 */
+	public BandArrowData()
+	{
+		// Nothing to do in the empty constructor
+	}
+	
+	/**
+	 * Creates a copy of the BandArrowData passed in.
+	 * 
+	 * @param src	The BandArrowData to copy.
+	 */
+	public BandArrowData(BandArrowData src)
+	{
+		m_laser = src.m_laser;
+		m_kaBand = src.m_kaBand;
+		m_kBand = src.m_kBand;
+		m_xBand = src.m_xBand;
+		m_kuBand = src.m_kuBand;
+		m_front = src.m_front;
+		m_side = src.m_side;
+		m_rear = src.m_rear;
+	}
+	
 	/**
 	 * This is for future use, use the laser information from the BandAndArrowIndicator1 from the most recent 
 	 * InfoDisplayInfoData object to know if laser alerts are present.
@@ -18,6 +18,19 @@ public class BogeyCounterData
 	private boolean m_segG;
 	private boolean m_dp;
 	
+	// Read only objects for every possible byte value, see fromByte()
+	private static final BogeyCounterData [] m_sharedValues = new BogeyCounterData[256];
+	// The result of convertToLetter() for every possible byte value
+	private static final String [] m_letters = new String[256];
+	
+	static
+	{
+		for ( int i = 0; i < m_sharedValues.length; i++ ){
+			m_sharedValues[i] = new SharedBogeyCounterData((byte) i);
+			m_letters[i] = m_sharedValues[i].mDecodeLetter();
+		}
+	}
+	
 	public BogeyCounterData ()
 	{
 		// Nothing to do in the empty constructor
@@ -43,6 +56,30 @@ public class BogeyCounterData
 		 m_dp = src.m_dp;
 	}
 	
+	/**
+	 * Retrieve the shared object for a raw byte. There is one read only object for each of the 256 byte values, so
+	 * decoding a byte does not allocate anything. Calling setFromByte or clear on the object returned throws an
+	 * UnsupportedOperationException. Use the copy constructor to get an object that can be changed.
+	 * 
+	 * @param _data packed byte containing the Bogey counter data.
+	 * 
+	 * @return The shared object for the byte.
+	 */
+	public static BogeyCounterData fromByte(byte _data)
+	{
+		return m_sharedValues[_data & 0xFF];
+	}
+	
+	/**
+	 * Determine if this is one of the read only objects returned by fromByte().
+	 * 
+	 * @return true if this object can not be changed, else false.
+	 */
+	boolean isShared()
+	{
+		return false;
+	}
+	
 	/**
 	 * This method will compare the contents of this object to the object passed in to see if all of the contents are equal.
 	 * 
@@ -52,6 +89,10 @@ public class BogeyCounterData
 	 */
 	public boolean isEqual(BogeyCounterData src)
 	{
+		if ( src == this ){
+			return true;
+		}
+		
 		if (  m_rawData != src.m_rawData){
 			return false;
 		}
@@ -295,6 +336,16 @@ public class BogeyCounterData
 	 * @return	Returns the string representation of the active segments.
 	 */
 	public String convertToLetter()
+	{
+		return m_letters[m_rawData & 0xFF];
+	}
+	
+	/**
+	 * Converts the segments turned on into a letter. This is only used to build the table used by convertToLetter().
+	 * 
+	 * @return	Returns the string representation of the active segments.
+	 */
+	private String mDecodeLetter()
 	{
 		String rc = "?";
 		
@@ -410,4 +461,26 @@ public class BogeyCounterData
 		return rc;
 	}
 	
+	/**
+	 * The read only objects returned by fromByte().
+	 */
+	private static final class SharedBogeyCounterData extends BogeyCounterData
+	{
+		SharedBogeyCounterData(byte _data)
+		{
+			super.setFromByte(_data);
+		}
+		
+		@Override
+		public void setFromByte(byte _data)
+		{
+			throw new UnsupportedOperationException("The shared BogeyCounterData objects can not be changed");
+		}
+		
+		@Override
+		boolean isShared()
+		{
+			return true;
+		}
+	}
 }
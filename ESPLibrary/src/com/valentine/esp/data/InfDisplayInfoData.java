@@ -22,17 +22,18 @@ public class InfDisplayInfoData
 	}
 	
 	/**
-	 *  Use the copy constructor to make a deep copy of this object
+	 *  Use the copy constructor to make a deep copy of this object. The read only objects returned by the fromByte() methods
+	 *  can not change, so they are shared with the copy instead of being copied.
 	 * @param src InfDisplayInfoData object to make an exact copy of.
 	 */
 	public InfDisplayInfoData (InfDisplayInfoData src)
 	{
-		m_bogeyCounterData1 = new BogeyCounterData(src.m_bogeyCounterData1);
-		m_bogeyCounterData2 = new BogeyCounterData(src.m_bogeyCounterData2);
-		m_signalStrengthData = new SignalStrengthData(src.m_signalStrengthData);
-		m_bandAndArrowIndicatorData1 = new BandAndArrowIndicatorData(src.m_bandAndArrowIndicatorData1);
-		m_bandAndArrowIndicatorData2 = new BandAndArrowIndicatorData(src.m_bandAndArrowIndicatorData2);
-		m_auxData = new AuxilaryData(src.m_auxData);
+		m_bogeyCounterData1 = src.m_bogeyCounterData1.isShared() ? src.m_bogeyCounterData1 : new BogeyCounterData(src.m_bogeyCounterData1);
+		m_bogeyCounterData2 = src.m_bogeyCounterData2.isShared() ? src.m_bogeyCounterData2 : new BogeyCounterData(src.m_bogeyCounterData2);
+		m_signalStrengthData = src.m_signalStrengthData.isShared() ? src.m_signalStrengthData : new SignalStrengthData(src.m_signalStrengthData);
+		m_bandAndArrowIndicatorData1 = src.m_bandAndArrowIndicatorData1.isShared() ? src.m_bandAndArrowIndicatorData1 : new BandAndArrowIndicatorData(src.m_bandAndArrowIndicatorData1);
+		m_bandAndArrowIndicatorData2 = src.m_bandAndArrowIndicatorData2.isShared() ? src.m_bandAndArrowIndicatorData2 : new BandAndArrowIndicatorData(src.m_bandAndArrowIndicatorData2);
+		m_auxData = src.m_auxData.isShared() ? src.m_auxData : new AuxilaryData(src.m_auxData);
 		m_auxData1 = src.m_auxData1;
 		m_auxData2 = src.m_auxData2;
 	}
@@ -47,12 +48,43 @@ public class InfDisplayInfoData
 			noDataInit();
 		}
 		
-		m_bogeyCounterData1.clear();
-		m_bogeyCounterData2.clear();
-		m_signalStrengthData.clear();
-		m_bandAndArrowIndicatorData1.clear();
-		m_bandAndArrowIndicatorData2.clear();
-		m_auxData.clear();
+		// The shared objects can not be cleared, so replace them with the shared blank objects
+		if ( m_bogeyCounterData1.isShared() ){
+			m_bogeyCounterData1 = BogeyCounterData.fromByte((byte)0x00);
+		}
+		else{
+			m_bogeyCounterData1.clear();
+		}
+		if ( m_bogeyCounterData2.isShared() ){
+			m_bogeyCounterData2 = BogeyCounterData.fromByte((byte)0x00);
+		}
+		else{
+			m_bogeyCounterData2.clear();
+		}
+		if ( m_signalStrengthData.isShared() ){
+			m_signalStrengthData = SignalStrengthData.fromByte((byte)0x00);
+		}
+		else{
+			m_signalStrengthData.clear();
+		}
+		if ( m_bandAndArrowIndicatorData1.isShared() ){
+			m_bandAndArrowIndicatorData1 = BandAndArrowIndicatorData.fromByte((byte)0x00);
+		}
+		else{
+			m_bandAndArrowIndicatorData1.clear();
+		}
+		if ( m_bandAndArrowIndicatorData2.isShared() ){
+			m_bandAndArrowIndicatorData2 = BandAndArrowIndicatorData.fromByte((byte)0x00);
+		}
+		else{
+			m_bandAndArrowIndicatorData2.clear();
+		}
+		if ( m_auxData.isShared() ){
+			m_auxData = AuxilaryData.fromByte((byte)0x00);
+		}
+		else{
+			m_auxData.clear();
+		}
 		m_auxData1 = 0x00;
 		m_auxData2 = 0x00;
 	}
@@ -60,6 +92,9 @@ public class InfDisplayInfoData
 	/**
 	 * Gets the seven segment image 0.
 	 * 
+	 * The returned object is a shared, read only instance. Calling setFromByte() or clear() on it throws an
+	 * UnsupportedOperationException. Use {@link BogeyCounterData#BogeyCounterData(BogeyCounterData)} to get a copy that can be changed.
+	 * 
 	 * @return	Returns {@link BogeyCounterData} that represents this packets bogey counter image 1.
 	 */
 	public BogeyCounterData getBogeyCounterData1()
@@ -70,6 +105,9 @@ public class InfDisplayInfoData
 	/**
 	 * Gets the seven segment image 1.
 	 * 
+	 * The returned object is a shared, read only instance. Calling setFromByte() or clear() on it throws an
+	 * UnsupportedOperationException. Use {@link BogeyCounterData#BogeyCounterData(BogeyCounterData)} to get a copy that can be changed.
+	 * 
 	 * @return	Returns {@link BogeyCounterData} that represents this packets bogey counter image 2.
 	 */
 	public BogeyCounterData getBogeyCounterData2()
@@ -80,6 +118,9 @@ public class InfDisplayInfoData
 	/**
 	 * Gets the Signal Strength Data from this packets.
 	 * 
+	 * The returned object is a shared, read only instance. Calling setFromByte() or clear() on it throws an
+	 * UnsupportedOperationException. Use {@link SignalStrengthData#SignalStrengthData(SignalStrengthData)} to get a copy that can be changed.
+	 * 
 	 * @return	Returns {@link SignalStrengthData} that represents this packets signal strength.
 	 */
 	public SignalStrengthData getSignalStrengthData()
@@ -90,6 +131,9 @@ public class InfDisplayInfoData
 	/**
 	 * Gets the Band Arrow Indicator image 1.
 	 * 
+	 * The returned object is a shared, read only instance. Calling setFromByte() or clear() on it throws an
+	 * UnsupportedOperationException. Use {@link BandAndArrowIndicatorData#BandAndArrowIndicatorData(BandAndArrowIndicatorData)} to get a copy that can be changed.
+	 * 
 	 * @return	Returns {@link BandAndArrowIndicatorData} that represents this packets band and arrow data.
 	 */
 	public BandAndArrowIndicatorData getBandAndArrowIndicator1()
@@ -100,6 +144,9 @@ public class InfDisplayInfoData
 	/**
 	 * Gets the Band Arrow Indicator image 2.
 	 * 
+	 * The returned object is a shared, read only instance. Calling setFromByte() or clear() on it throws an
+	 * UnsupportedOperationException. Use {@link BandAndArrowIndicatorData#BandAndArrowIndicatorData(BandAndArrowIndicatorData)} to get a copy that can be changed.
+	 * 
 	 * @return	Returns {@link BandAndArrowIndicatorData} that represents this packets band and arrow data.
 	 */
 	public BandAndArrowIndicatorData getBandAndArrowIndicator2()
@@ -110,6 +157,9 @@ public class InfDisplayInfoData
 	/**
 	 * Gets the Aux data byte 0.
 	 * 
+	 * The returned object is a shared, read only instance. Calling setFromByte() or clear() on it throws an
+	 * UnsupportedOperationException. Use {@link AuxilaryData#AuxilaryData(AuxilaryData)} to get a copy that can be changed.
+	 * 
 	 * @return	Returns {@link AuxilaryData} that represents this packets aux byte 0.
 	 */
 	public AuxilaryData getAuxData()
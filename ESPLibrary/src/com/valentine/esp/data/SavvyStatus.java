@@ -5,6 +5,8 @@
  */
 package com.valentine.esp.data;
 
+import com.valentine.esp.packets.PacketLayout;
+
 public class SavvyStatus 
 {
 	private int m_speedThreshold;
@@ -45,9 +47,10 @@ public class SavvyStatus
 	 */
 	public void buildFromBytes(byte[] _data)
 	{
-		m_speedThreshold = (int) _data[0] & 0xff;
+		m_speedThreshold = PacketLayout.SAVVY_SPEED_THRESHOLD.getUnsigned(_data);
+		byte unmute = PacketLayout.SAVVY_UNMUTE.getByte(_data);
 		
-		if ((_data[1] & 1) > 0)
+		if ((unmute & 1) > 0)
 		{
 			m_thresholdOverriddenByUser = true;
 		}
@@ -57,7 +60,7 @@ public class SavvyStatus
 			
 		}
 		
-		if ((_data[1] & 2) > 0)
+		if ((unmute & 2) > 0)
 		{
 			m_unmuteEnabled = true;
 		}
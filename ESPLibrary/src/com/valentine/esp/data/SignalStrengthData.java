@@ -18,6 +18,16 @@ public class SignalStrengthData
 
 	private byte m_rawData;
 	
+	// Read only objects for every possible byte value, see fromByte()
+	private static final SignalStrengthData [] m_sharedValues = new SignalStrengthData[256];
+	
+	static
+	{
+		for ( int i = 0; i < m_sharedValues.length; i++ ){
+			m_sharedValues[i] = new SharedSignalStrengthData((byte) i);
+		}
+	}
+	
 	public SignalStrengthData ()
 	{
 		// Nothing to do in the empty constructor
@@ -40,6 +50,30 @@ public class SignalStrengthData
 
 		m_rawData = src.m_rawData;
 	}
+	
+	/**
+	 * Retrieve the shared object for a raw byte. There is one read only object for each of the 256 byte values, so
+	 * decoding a byte does not allocate anything. Calling setFromByte or clear on the object returned throws an
+	 * UnsupportedOperationException. Use the copy constructor to get an object that can be changed.
+	 * 
+	 * @param _data packed byte containing the signal strength data.
+	 * 
+	 * @return The shared object for the byte.
+	 */
+	public static SignalStrengthData fromByte(byte _data)
+	{
+		return m_sharedValues[_data & 0xFF];
+	}
+	
+	/**
+	 * Determine if this is one of the read only objects returned by fromByte().
+	 * 
+	 * @return true if this object can not be changed, else false.
+	 */
+	boolean isShared()
+	{
+		return false;
+	}
 		
 	/**
 	 * This method will compare the contents of this object to the object passed in to see if all of the contents are equal.
@@ -50,6 +84,10 @@ public class SignalStrengthData
 	 */
 	public boolean isEqual(SignalStrengthData src)
 	{
+		if ( src == this ){
+			return true;
+		}
+		
 		if (  m_rawData != src.m_rawData){
 			return false;
 		}
@@ -302,4 +340,27 @@ public class SignalStrengthData
 			m_b7 = false;
 		}
 	}
+	
+	/**
+	 * The read only objects returned by fromByte().
+	 */
+	private static final class SharedSignalStrengthData extends SignalStrengthData
+	{
+		SharedSignalStrengthData(byte _data)
+		{
+			super.setFromByte(_data);
+		}
+		
+		@Override
+		public void setFromByte(byte _data)
+		{
+			throw new UnsupportedOperationException("The shared SignalStrengthData objects can not be changed");
+		}
+		
+		@Override
+		boolean isShared()
+		{
+			return true;
+		}
+	}
 }
@@ -9,6 +9,8 @@ import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 
+import com.valentine.esp.packets.PacketLayout;
+
 public class SweepDefinition 
 {
 	private int m_index;
@@ -122,8 +124,9 @@ public class SweepDefinition
 		\----------------------- Reserved
 		*/
 		
-		m_index = _data[0] & 0x3f;
-		if ((_data[0] & 64) > 1)
+		byte index = PacketLayout.SWEEP_INDEX.getByte(_data);
+		m_index = index & 0x3f;
+		if ((index & 64) > 1)
 		{
 			m_commit = true;
 		}
@@ -132,15 +135,9 @@ public class SweepDefinition
 			m_commit = false;
 		}
 		
-		m_msbUpperFrequencyEdge = _data[1];
-		m_lsbUpperFrequencyEdge = _data[2];
-		
-		ByteBuffer b = ByteBuffer.allocate(4);
-		b.put((byte) 0);
-		b.put((byte) 0);
-		b.put(m_msbUpperFrequencyEdge);
-		b.put(m_lsbUpperFrequencyEdge);
-		int temp = b.getInt(0);
+		int temp = PacketLayout.SWEEP_UPPER_EDGE.getUnsigned(_data);
+		m_msbUpperFrequencyEdge = (byte) (temp >> 8);
+		m_lsbUpperFrequencyEdge = (byte) temp;
 		
 		
 		NumberFormat nf = DecimalFormat.getInstance();
@@ -150,15 +147,9 @@ public class SweepDefinition
 		
 		m_upperFrequencyEdge = temp;
 		
-		m_msbLowerFrequencyEdge = _data[3];
-		m_lsbLowerFrequencyEdge = _data[4];
-
-		b = ByteBuffer.allocate(4);
-		b.put((byte) 0);
-		b.put((byte) 0);
-		b.put(m_msbLowerFrequencyEdge);
-		b.put(m_lsbLowerFrequencyEdge);
-		temp = b.getInt(0);
+		temp = PacketLayout.SWEEP_LOWER_EDGE.getUnsigned(_data);
+		m_msbLowerFrequencyEdge = (byte) (temp >> 8);
+		m_lsbLowerFrequencyEdge = (byte) temp;
 
 		m_lowerFrequencyEdge = temp;
 	}
@@ -5,7 +5,7 @@
  */
 package com.valentine.esp.data;
 
-import java.nio.ByteBuffer;
+import com.valentine.esp.packets.PacketLayout;
 
 public class SweepSection 
 {
@@ -95,31 +95,15 @@ public class SweepSection
 	public void buildFromBytes(byte[] _data, int _startIndex)
 	{
 		m_sweepDefinition = new SweepDefinitionIndex();
-		m_sweepDefinition.buildFromByte(_data[_startIndex]);
+		m_sweepDefinition.buildFromByte(PacketLayout.SWEEP_SECTION_INDEX.getByte(_data, _startIndex));
 		
-		byte msbUpperFrequencyEdge = _data[_startIndex+1];
-		byte lsbUpperFrequencyEdge = _data[_startIndex+2];
-		
-		ByteBuffer b = ByteBuffer.allocate(4);
-		b.put((byte) 0);
-		b.put((byte) 0);
-		b.put(msbUpperFrequencyEdge);
-		b.put(lsbUpperFrequencyEdge);
-		int temp = b.getInt(0);
+		int temp = PacketLayout.SWEEP_SECTION_UPPER_EDGE.getUnsigned(_data, _startIndex);
 		
 		//m_upperFrequencyEdge = temp / 1000.0f;
 		
 		m_upperFrequencyEdgeInt = temp;
 		
-		byte msbLowerFrequencyEdge = _data[_startIndex+3];
-		byte lsbLowerFrequencyEdge = _data[_startIndex+4];
-		
-		b = ByteBuffer.allocate(4);
-		b.put((byte) 0);
-		b.put((byte) 0);
-		b.put(msbLowerFrequencyEdge);
-		b.put(lsbLowerFrequencyEdge);
-		temp = b.getInt(0);
+		temp = PacketLayout.SWEEP_SECTION_LOWER_EDGE.getUnsigned(_data, _startIndex);
 		
 		//m_lowerFrequencyEdge = temp / 1000.0f;
 		
@@ -7,6 +7,7 @@ package com.valentine.esp.data;
 
 import java.util.ArrayList;
 
+import com.valentine.esp.packets.PacketLayout;
 import com.valentine.esp.utilities.V1VersionSettingLookup;
 
 public class UserSettings 
@@ -1030,9 +1031,9 @@ public class UserSettings
 		 L 			Force Legacy CD 								User 2 		4 		Off
 		*/
 		
-		byte userByte0 = _data[0];
-		byte userByte1 = _data[1];
-		byte userByte2 = _data[2];
+		byte userByte0 = PacketLayout.USER_BYTE_0.getByte(_data);
+		byte userByte1 = PacketLayout.USER_BYTE_1.getByte(_data);
+		byte userByte2 = PacketLayout.USER_BYTE_2.getByte(_data);
 		
 		setXBand(getOnOffValue(getBitFromByte(userByte0, 0)));
 		setKBand(getOnOffValue(getBitFromByte(userByte0, 1)));
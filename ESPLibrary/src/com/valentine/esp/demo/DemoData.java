@@ -48,9 +48,16 @@ public class DemoData
 	private Object m_V1ConfigObject;
 	private String m_V1ConfigFunction;
 	
+	private PacketQueue m_packetQueue;
 	
-	public DemoData()
+	/**
+	 * Sets up the demo data to answer requests on a connection's packet queue.
+	 * 
+	 * @param _packetQueue	The packet queue the responses are pushed onto.
+	 */
+	public DemoData(PacketQueue _packetQueue)
 	{
+		m_packetQueue = _packetQueue;
 		m_versionPackets = new HashMap<Devices, ResponseVersion>();
 		m_V1SerialPackets = new HashMap<Devices, ResponseSerialNumber>();
 		m_ResponseSweepDefinitions = new ArrayList<ResponseSweepDefinitions>();
@@ -111,19 +118,19 @@ public class DemoData
 				m_VehicleSpeed = (ResponseVehicleSpeed) _packet;
 				break;
 			case reqVersion:
-				PacketQueue.pushInputPacketOntoQueue(m_versionPackets.get(_packet.getDestination()));
+				m_packetQueue.pushInputPacketOntoQueue(m_versionPackets.get(_packet.getDestination()));
 				break;
 			case reqSerialNumber:
-				PacketQueue.pushInputPacketOntoQueue(m_V1SerialPackets.get(_packet.getDestination()));
+				m_packetQueue.pushInputPacketOntoQueue(m_V1SerialPackets.get(_packet.getDestination()));
 				break;
 			case reqUserBytes:
-				PacketQueue.pushInputPacketOntoQueue(m_V1Configuration);
+				m_packetQueue.pushInputPacketOntoQueue(m_V1Configuration);
 				break;
 			case reqAllSweepDefinitions:
 			case reqSetSweepsToDefault:
 				for (int i = 0; i < m_ResponseSweepDefinitions.size(); i++)
 				{
-					PacketQueue.pushInputPacketOntoQueue(m_ResponseSweepDefinitions.get(i));
+					m_packetQueue.pushInputPacketOntoQueue(m_ResponseSweepDefinitions.get(i));
 				}
 				break;				
 			case reqDefaultSweepDefinitions:
@@ -131,22 +138,22 @@ public class DemoData
 				// Ignore these packets in the demo mode file.
 				break;				
 			case reqMaxSweepIndex:
-				PacketQueue.pushInputPacketOntoQueue(m_MaximumCustomSweepIndex);
+				m_packetQueue.pushInputPacketOntoQueue(m_MaximumCustomSweepIndex);
 				break;
 			case reqSweepSections:
 				for (int i = 0; i < m_CustomSweepSections.size(); i++)
 				{
-					PacketQueue.pushInputPacketOntoQueue(m_CustomSweepSections.get(i));
+					m_packetQueue.pushInputPacketOntoQueue(m_CustomSweepSections.get(i));
 				}
 				break;
 			case reqBatteryVoltage:
-				PacketQueue.pushInputPacketOntoQueue(m_BatteryVoltage);
+				m_packetQueue.pushInputPacketOntoQueue(m_BatteryVoltage);
 				break;
 			case reqSavvyStatus:
-				PacketQueue.pushInputPacketOntoQueue(m_SavvyConfiguration);
+				m_packetQueue.pushInputPacketOntoQueue(m_SavvyConfiguration);
 				break;
 			case reqVehicleSpeed:
-				PacketQueue.pushInputPacketOntoQueue(m_VehicleSpeed);
+				m_packetQueue.pushInputPacketOntoQueue(m_VehicleSpeed);
 				break;
 			
 				
@@ -173,7 +180,7 @@ public class DemoData
 			
 			case respAlertData:
 			case infDisplayData:
-				PacketQueue.pushInputPacketOntoQueue(_packet);
+				m_packetQueue.pushInputPacketOntoQueue(_packet);
 				break;
 			
 			case unknownPacketType:
@@ -0,0 +1,22 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license. 
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.factories;
+
+import com.valentine.esp.packets.ESPPacket;
+
+/**
+ * Creates the {@link ESPPacket} for a single packet id. Implementations are registered with the {@link PacketRegistry}
+ * and are called every time a packet with that id is received.
+ */
+public interface PacketCreator 
+{
+	/**
+	 * Returns a new ESP packet with the Device initialized to Unknown. The decoder fills in the header and payload.
+	 * 
+	 * @return	A new packet. Must not be null.
+	 */
+	ESPPacket createPacket();
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license. 
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.factories;
+
+import com.valentine.esp.constants.Devices;
+import com.valentine.esp.constants.PacketId;
+import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.InfDisplayData;
+import com.valentine.esp.packets.InfV1Busy;
+import com.valentine.esp.packets.UnknownPacket;
+import com.valentine.esp.packets.request.RequestAllSweepDefinitions;
+import com.valentine.esp.packets.request.RequestBatteryVoltage;
+import com.valentine.esp.packets.request.RequestChangeMode;
+import com.valentine.esp.packets.request.RequestDefaultSweepDefinitions;
+import com.valentine.esp.packets.request.RequestSetSweepsToDefault;
+import com.valentine.esp.packets.request.RequestFactoryDefault;
+import com.valentine.esp.packets.request.RequestMaxSweepIndex;
+import com.valentine.esp.packets.request.RequestMuteOff;
+import com.valentine.esp.packets.request.RequestMuteOn;
+import com.valentine.esp.packets.request.RequestOverrideThumbwheel;
+import com.valentine.esp.packets.request.RequestSavvyStatus;
+import com.valentine.esp.packets.request.RequestSerialNumber;
+import com.valentine.esp.packets.request.RequestSetSavvyUnmute;
+import com.valentine.esp.packets.request.RequestStartAlertData;
+import com.valentine.esp.packets.request.RequestStopAlertData;
+import com.valentine.esp.packets.request.RequestSweepSections;
+import com.valentine.esp.packets.request.RequestTurnOffMainDisplay;
+import com.valentine.esp.packets.request.RequestTurnOnMainDisplay;
+import com.valentine.esp.packets.request.RequestUserBytes;
+import com.valentine.esp.packets.request.RequestVehicleSpeed;
+import com.valentine.esp.packets.request.RequestVersion;
+import com.valentine.esp.packets.request.RequestWriteSweepDefinition;
+import com.valentine.esp.packets.request.RequestWriteUserBytes;
+import com.valentine.esp.packets.response.ResponseAlertData;
+import com.valentine.esp.packets.response.ResponseBatteryVoltage;
+import com.valentine.esp.packets.response.ResponseDataError;
+import com.valentine.esp.packets.response.ResponseDataReceived;
+import com.valentine.esp.packets.response.ResponseDefaultSweepDefinitions;
+import com.valentine.esp.packets.response.ResponseMaxSweepIndex;
+import com.valentine.esp.packets.response.ResponseRequestNotProcessed;
+import com.valentine.esp.packets.response.ResponseSavvyStatus;
+import com.valentine.esp.packets.response.ResponseSerialNumber;
+import com.valentine.esp.packets.response.ResponseSweepDefinitions;
+import com.valentine.esp.packets.response.ResponseSweepSections;
+import com.valentine.esp.packets.response.ResponseSweepWriteResult;
+import com.valentine.esp.packets.response.ResponseUnsupported;
+import com.valentine.esp.packets.response.ResponseUserBytes;
+import com.valentine.esp.packets.response.ResponseVehicleSpeed;
+import com.valentine.esp.packets.response.ResponseVersion;
+
+/**
+ * Maps packet id bytes to the {@link PacketCreator} used to build the matching {@link ESPPacket}. The library registers
+ * all of the ESP packets it knows about. Applications can register additional creators for vendor specific or
+ * experimental packet ids, or replace the built in ones, without changing the library. 
+ * 
+ * Lookups are a direct index into a 256 entry table. Registering a creator replaces the table, so lookups never
+ * need to lock.
+ */
+public class PacketRegistry 
+{
+	private static volatile PacketCreator[] m_creators;
+	
+	static
+	{
+		registerDefaults();
+	}
+	
+	/**
+	 * Registers the creator to use for a packet id. Any creator already registered for the packet id is replaced.
+	 * 
+	 * @param packetId	The packet id byte.
+	 * @param creator	The creator to use for the packet id, or null to treat the packet id as unknown.
+	 * 
+	 * @return	The creator that was previously registered for the packet id, or null if there wasn't one.
+	 */
+	public static synchronized PacketCreator register(byte packetId, PacketCreator creator)
+	{
+		PacketCreator[] creators = m_creators.clone();
+		PacketCreator previous = creators[packetId & 0xFF];
+		creators[packetId & 0xFF] = creator;
+		m_creators = creators;
+		return previous;
+	}
+	
+	/**
+	 * Retrieve the creator registered for a packet id.
+	 * 
+	 * @param packetId	The packet id byte.
+	 * 
+	 * @return	The registered creator or null if the packet id is unknown.
+	 */
+	public static PacketCreator getCreator(byte packetId)
+	{
+		return m_creators[packetId & 0xFF];
+	}
+	
+	/**
+	 * Returns a new ESP packet with the Device initialized to Unknown for the packet id byte passed in.
+	 * 
+	 * @param packetId	The packet id byte.
+	 * 
+	 * @return	The packet built by the registered creator, otherwise 'UnknownPacket'.
+	 */
+	public static ESPPacket createPacket(byte packetId)
+	{
+		PacketCreator creator = m_creators[packetId & 0xFF];
+		if ( creator == null ){
+			return new UnknownPacket(Devices.UNKNOWN);
+		}
+		return creator.createPacket();
+	}
+	
+	/**
+	 * Builds the table with the creators for all of the packets defined by the ESP specification.
+	 */
+	private static void registerDefaults()
+	{
+		PacketCreator[] creators = new PacketCreator[256];
+		
+		creators[PacketId.reqVersion.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestVersion(Devices.UNKNOWN, Devices.UNKNOWN); }
+		};
+		creators[PacketId.respVersion.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseVersion(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqSerialNumber.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestSerialNumber(Devices.UNKNOWN, Devices.UNKNOWN); }
+		};
+		creators[PacketId.respSerialNumber.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseSerialNumber(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqUserBytes.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestUserBytes(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respUserBytes.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseUserBytes(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqWriteUserBytes.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestWriteUserBytes(null, Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqFactoryDefault.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestFactoryDefault(Devices.UNKNOWN, Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqDefaultSweepDefinitions.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestDefaultSweepDefinitions(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respDefaultSweepDefinition.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseDefaultSweepDefinitions(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqWriteSweepDefinition.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestWriteSweepDefinition(null, Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqAllSweepDefinitions.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestAllSweepDefinitions(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respSweepDefinition.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseSweepDefinitions(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqSetSweepsToDefault.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestSetSweepsToDefault(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqMaxSweepIndex.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestMaxSweepIndex(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respMaxSweepIndex.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseMaxSweepIndex(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respSweepWriteResult.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseSweepWriteResult(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqSweepSections.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestSweepSections(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respSweepSections.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseSweepSections(Devices.UNKNOWN); }
+		};
+		creators[PacketId.infDisplayData.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new InfDisplayData(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqTurnOffMainDisplay.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestTurnOffMainDisplay(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqTurnOnMainDisplay.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestTurnOnMainDisplay(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqMuteOn.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestMuteOn(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqMuteOff.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestMuteOff(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqChangeMode.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestChangeMode((byte) 0, Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqStartAlertData.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestStartAlertData(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqStopAlertData.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestStopAlertData(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respAlertData.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseAlertData(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respDataReceived.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseDataReceived(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqBatteryVoltage.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestBatteryVoltage(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respBatteryVoltage.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseBatteryVoltage(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respUnsupportedPacket.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseUnsupported(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respRequestNotProcessed.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseRequestNotProcessed(Devices.UNKNOWN); }
+		};
+		creators[PacketId.infV1Busy.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new InfV1Busy(Devices.UNKNOWN); }
+		};
+		creators[PacketId.respDataError.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseDataError(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqSavvyStatus.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestSavvyStatus(Devices.UNKNOWN, Devices.UNKNOWN); }
+		};
+		creators[PacketId.respSavvyStatus.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseSavvyStatus(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqVehicleSpeed.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestVehicleSpeed(Devices.UNKNOWN, Devices.UNKNOWN); }
+		};
+		creators[PacketId.respVehicleSpeed.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new ResponseVehicleSpeed(Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqOverrideThumbwheel.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestOverrideThumbwheel(Devices.UNKNOWN, (byte) 0, Devices.UNKNOWN); }
+		};
+		creators[PacketId.reqSetSavvyUnmuteEnable.toByteValue() & 0xFF] = new PacketCreator() {
+			public ESPPacket createPacket() { return new RequestSetSavvyUnmute(Devices.UNKNOWN, false, Devices.UNKNOWN); }
+		};
+		
+		m_creators = creators;
+	}
+}
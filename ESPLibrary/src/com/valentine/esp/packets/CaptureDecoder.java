@@ -0,0 +1,238 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.packets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.valentine.esp.constants.Devices;
+
+/**
+ * Decodes captures of the raw bytes received from a V1connection (SPP) on several threads. The capture is split into
+ * chunks at frame boundaries, each chunk is decoded with its own {@link SPPFrameBuffer}, and the results are merged in
+ * the order the frames appear in the capture. The result is the same as feeding the whole capture through one
+ * SPPFrameBuffer.
+ *
+ * A chunk is only split between the trailing delimiter of one frame and the leading delimiter of the next. Frame
+ * delimiters are always escaped inside a frame, so two delimiters in a row can only be the end of one frame and the
+ * start of the next.
+ *
+ * Packets are decoded with the V1 type passed in for frames that were not sent by a V1, the same as the reader thread
+ * does with the last known V1 type. The packets returned are never pooled, so they can be kept.
+ */
+public class CaptureDecoder
+{
+	/**
+	 * The default number of capture bytes given to each task.
+	 */
+	public static final int 		DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+	private final ExecutorService 	m_executor;
+	private final boolean 			m_ownsExecutor;
+	private final int 				m_chunkSize;
+
+	/**
+	 * Creates a decoder with its own thread pool. Call {@link #shutdown()} when the decoder is no longer needed.
+	 *
+	 * @param threadCount	The number of decoding threads, usually Runtime.availableProcessors().
+	 */
+	public CaptureDecoder(int threadCount)
+	{
+		this(Executors.newFixedThreadPool(threadCount), DEFAULT_CHUNK_SIZE, true);
+	}
+
+	/**
+	 * Creates a decoder that runs its tasks on an executor owned by the caller. shutdown() does not shut the executor
+	 * down.
+	 *
+	 * @param executor	The executor to decode the chunks on.
+	 * @param chunkSize	The number of capture bytes given to each task.
+	 */
+	public CaptureDecoder(ExecutorService executor, int chunkSize)
+	{
+		this(executor, chunkSize, false);
+	}
+
+	private CaptureDecoder(ExecutorService executor, int chunkSize, boolean ownsExecutor)
+	{
+		if ( chunkSize <= 0 ){
+			throw new IllegalArgumentException("The CaptureDecoder chunk size must be greater than zero.");
+		}
+		m_executor = executor;
+		m_chunkSize = chunkSize;
+		m_ownsExecutor = ownsExecutor;
+	}
+
+	/**
+	 * Shuts down the thread pool if it was created by this decoder.
+	 */
+	public void shutdown()
+	{
+		if ( m_ownsExecutor ){
+			m_executor.shutdown();
+		}
+	}
+
+	/**
+	 * Decodes every valid frame in the capture.
+	 *
+	 * @param capture		The bytes exactly as they were received from the V1connection.
+	 * @param lastV1Type	The V1 type to use for frames that were not sent by a V1.
+	 *
+	 * @return The packets in the order their frames appear in the capture.
+	 *
+	 * @throws InterruptedException if the thread was interrupted while waiting for the tasks.
+	 * @throws ExecutionException if a task failed.
+	 */
+	public List<ESPPacket> decode(final byte [] capture, final Devices lastV1Type) throws InterruptedException, ExecutionException
+	{
+		int [] splits = mFindChunks(capture);
+
+		List<Future<List<ESPPacket>>> futures = new ArrayList<Future<List<ESPPacket>>>(splits.length - 1);
+		for ( int i = 0; i < splits.length - 1; i++ ){
+			final int from = splits[i];
+			final int to = splits[i + 1];
+			futures.add(m_executor.submit(new Callable<List<ESPPacket>>() {
+				public List<ESPPacket> call()
+				{
+					return mDecodeChunk(capture, from, to, lastV1Type);
+				}
+			}));
+		}
+
+		List<ESPPacket> rc = new ArrayList<ESPPacket>();
+		for ( int i = 0; i < futures.size(); i++ ){
+			rc.addAll(futures.get(i).get());
+		}
+		return rc;
+	}
+
+	/**
+	 * Counts the valid frames in the capture for each packet id. No packets are built.
+	 *
+	 * @param capture		The bytes exactly as they were received from the V1connection.
+	 * @param lastV1Type	The V1 type to use for frames that were not sent by a V1.
+	 *
+	 * @return The number of frames for each packet id, indexed by the unsigned packet id byte.
+	 *
+	 * @throws InterruptedException if the thread was interrupted while waiting for the tasks.
+	 * @throws ExecutionException if a task failed.
+	 */
+	public long [] countPacketIds(final byte [] capture, final Devices lastV1Type) throws InterruptedException, ExecutionException
+	{
+		int [] splits = mFindChunks(capture);
+
+		List<Future<long []>> futures = new ArrayList<Future<long []>>(splits.length - 1);
+		for ( int i = 0; i < splits.length - 1; i++ ){
+			final int from = splits[i];
+			final int to = splits[i + 1];
+			futures.add(m_executor.submit(new Callable<long []>() {
+				public long [] call()
+				{
+					return mCountChunk(capture, from, to, lastV1Type);
+				}
+			}));
+		}
+
+		long [] rc = new long[256];
+		for ( int i = 0; i < futures.size(); i++ ){
+			long [] counts = futures.get(i).get();
+			for ( int j = 0; j < rc.length; j++ ){
+				rc[j] += counts[j];
+			}
+		}
+		return rc;
+	}
+
+	/**
+	 * Splits the capture into chunks of about the chunk size that start at a frame boundary.
+	 *
+	 * @param capture	The capture to split.
+	 *
+	 * @return The offset of the first byte of every chunk followed by the length of the capture.
+	 */
+	private int [] mFindChunks(byte [] capture)
+	{
+		int [] splits = new int[(capture.length / m_chunkSize) + 2];
+		int count = 0;
+		splits[count++] = 0;
+
+		int pos = m_chunkSize;
+		while ( pos < capture.length ){
+			// Move forward to the start of the next frame that follows the end of another frame
+			while ( pos < capture.length && !(capture[pos - 1] == ESPPacket.frameDelimitedConstant && capture[pos] == ESPPacket.frameDelimitedConstant) ){
+				pos++;
+			}
+			if ( pos >= capture.length ){
+				break;
+			}
+			splits[count++] = pos;
+			pos += m_chunkSize;
+		}
+		splits[count++] = capture.length;
+
+		int [] rc = new int[count];
+		System.arraycopy(splits, 0, rc, 0, count);
+		return rc;
+	}
+
+	/**
+	 * Decodes the valid frames in part of the capture.
+	 */
+	private static List<ESPPacket> mDecodeChunk(byte [] capture, int from, int to, Devices lastV1Type)
+	{
+		List<ESPPacket> rc = new ArrayList<ESPPacket>();
+		SPPFrameBuffer buffer = new SPPFrameBuffer();
+		SPPFrameIndex index = new SPPFrameIndex();
+
+		int pos = from;
+		while ( pos < to ){
+			pos += buffer.write(capture, pos, to - pos);
+			buffer.indexFrames(index, lastV1Type);
+			for ( int i = 0; i < index.size(); i++ ){
+				ESPPacket packet = buffer.buildPacket(index, i, lastV1Type);
+				if ( packet != null && packet.isPooled() ){
+					// Keep a copy so the pooled packet can be reused
+					ESPPacket copy = packet.copy();
+					PacketPool.release(packet);
+					packet = copy;
+				}
+				if ( packet != null ){
+					rc.add(packet);
+				}
+			}
+		}
+		return rc;
+	}
+
+	/**
+	 * Counts the valid frames in part of the capture for each packet id.
+	 */
+	private static long [] mCountChunk(byte [] capture, int from, int to, Devices lastV1Type)
+	{
+		long [] rc = new long[256];
+		SPPFrameBuffer buffer = new SPPFrameBuffer();
+		SPPFrameIndex index = new SPPFrameIndex();
+		SPPFrameView view = new SPPFrameView();
+
+		int pos = from;
+		while ( pos < to ){
+			pos += buffer.write(capture, pos, to - pos);
+			buffer.indexFrames(index, lastV1Type);
+			for ( int i = 0; i < index.size(); i++ ){
+				if ( buffer.getView(index, i, lastV1Type, view) ){
+					rc[view.getPacketIdByte() & 0xFF]++;
+				}
+			}
+		}
+		return rc;
+	}
+}
@@ -5,9 +5,10 @@
  */
 package com.valentine.esp.packets;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-
-import android.util.Log;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.valentine.esp.bluetooth.ConnectionType;
 import com.valentine.esp.constants.Devices;
@@ -15,7 +16,9 @@ import com.valentine.esp.constants.DevicesLookup;
 import com.valentine.esp.constants.ESPLibraryLogController;
 import com.valentine.esp.constants.PacketId;
 import com.valentine.esp.constants.PacketIdLookup;
-import com.valentine.esp.factories.PacketFactory;
+import com.valentine.esp.factories.PacketRegistry;
+import com.valentine.esp.utilities.ESPLog;
+import com.valentine.esp.utilities.ESPPlatform;
 
 /** Base class for all the packets.  Has all the basic functionality for getting source, destination, building from a buffer,
  * and turning into a buffer to send to the Valentine One.  Due to this class being abstract, it can't be created directly, but
@@ -60,12 +63,55 @@ public abstract class ESPPacket
 	
 	protected boolean 				m_resent = false;
 	
-	private static ArrayList<Byte> 	mLastStartBuffer = new ArrayList<Byte>();
-	private static ArrayList<Byte> 	mLastEndBuffer = new ArrayList<Byte>();
+	// The object built from the payload by decodePayload(), or NO_DECODED_PAYLOAD if it has not been built yet
+	private static final Object 	NO_DECODED_PAYLOAD = new Object();
+	private volatile Object 		m_decodedPayload = NO_DECODED_PAYLOAD;
+	
+	// Pooled packets keep the object decoded from their last payload so decodePayload() can fill it in again
+	private Object 					m_recycledPayload;
+	// True if this packet came from the PacketPool and goes back to it after it has been dispatched
+	private boolean 				m_pooled;
+	// True while this packet is sitting in the PacketPool waiting to be reused
+	private boolean 				m_inPool;
+	
+	// Enum values for the identifier bytes, along with the byte each one was looked up from. The packet builders
+	// write the identifier bytes directly, so the cached value is only used while the byte still matches.
+	private PacketId 				m_packetIdConstant;
+	private byte 					m_packetIdConstantKey;
+	private Devices 				m_destinationConstant;
+	private byte 					m_destinationConstantKey;
+	private Devices 				m_originConstant;
+	private byte 					m_originConstantKey;
+	
+	// Hash of the fields compared by isSamePacket, or zero if it has not been computed since the packet last changed
+	private int 					m_contentHash;
 	
-	private static ConnectionType 	mConnectionType = ConnectionType.UNKNOWN;
+	// The longest frames that can be built from a one byte payload length. The SPP length assumes every byte between
+	// the delimiters is escaped.
+	private static final int 		MAX_LE_FRAME_LENGTH = 6 + 255;
+	private static final int 		MAX_SPP_FRAME_LENGTH = 2 + (2 * (MAX_LE_FRAME_LENGTH + 2));
+	// Only this many bytes of the last buffers are kept for the error log
+	private static final int 		MAX_LOGGED_BYTES = 64;
+	
+	// Copies of the buffer from the last makeFromBufferSPP call. Each connection decodes on its own reader thread, so
+	// these are kept per thread to keep one connection's log from showing another connection's bytes.
+	private static final ThreadLocal<ArrayList<Byte>> mLastStartBuffer = new ThreadLocal<ArrayList<Byte>>() {
+		@Override
+		protected ArrayList<Byte> initialValue() {
+			return new ArrayList<Byte>();
+		}
+	};
+	private static final ThreadLocal<ArrayList<Byte>> mLastEndBuffer = new ThreadLocal<ArrayList<Byte>>() {
+		@Override
+		protected ArrayList<Byte> initialValue() {
+			return new ArrayList<Byte>();
+		}
+	};
 	
-	private enum ProcessState
+	// The connection this packet was received from or last encoded for. Used by toString() to pick the framing.
+	private ConnectionType 			m_connectionType = ConnectionType.UNKNOWN;
+	
+	enum ProcessState
 	{
 		START_PACK_BYTE,
 		PACKET_LENGTH,
@@ -96,6 +142,11 @@ public abstract class ESPPacket
 	 */
 	public boolean isSamePacket (ESPPacket rhs)
 	{
+		if ( getContentHash() != rhs.getContentHash() ){
+			// Packets with different hashes can not contain the same data
+			return false;
+		}
+		
 		if ( headerDelimter != rhs.headerDelimter ||
 			packetLength != rhs.packetLength ||
 			startOfFrame != rhs.startOfFrame ||
@@ -137,6 +188,62 @@ public abstract class ESPPacket
 		return true;
 	}
 	
+	/**
+	 * Retrieve a hash of the data compared by {@link #isSamePacket(ESPPacket)}. Packets that are the same always have the
+	 * same hash, so the hash can be used to find the packets that need a full comparison. The hash is computed the first
+	 * time it is needed and kept until the packet is rebuilt.
+	 * 
+	 * @return The content hash for this packet.
+	 */
+	public int getContentHash()
+	{
+		int hash = m_contentHash;
+		if ( hash == 0 ){
+			hash = mComputeContentHash();
+			m_contentHash = hash;
+		}
+		return hash;
+	}
+	
+	/**
+	 * Throws away the content hash so it is computed again the next time it is needed. This must be called if any of the
+	 * fields compared by isSamePacket change after the hash may have been computed.
+	 */
+	protected void invalidateContentHash()
+	{
+		m_contentHash = 0;
+	}
+	
+	/**
+	 * Computes the hash returned by getContentHash() from the fields compared by isSamePacket.
+	 * 
+	 * @return The hash. Never zero, so zero can mean the hash has not been computed.
+	 */
+	private int mComputeContentHash()
+	{
+		int hash = headerDelimter;
+		hash = 31 * hash + packetLength;
+		hash = 31 * hash + startOfFrame;
+		hash = 31 * hash + destinationIdentifier;
+		hash = 31 * hash + originatorIdentifier;
+		hash = 31 * hash + packetIdentifier;
+		hash = 31 * hash + payloadLength;
+		hash = 31 * hash + checkSum;
+		hash = 31 * hash + endOfFrame;
+		hash = 31 * hash + packetChecksum;
+		hash = 31 * hash + endDelimter;
+		hash = 31 * hash + m_destination;
+		
+		if ( payloadData != null ){
+			int count = Math.min(payloadLength, payloadData.length);
+			for ( int i = 0; i < count; i++ ){
+				hash = 31 * hash + payloadData[i];
+			}
+		}
+		
+		return (hash == 0) ? 1 : hash;
+	}
+	
 	/**
 	 * Retrieve the {@link PacketId} enum for this packet's packet identifier. 
 	 * 
@@ -144,7 +251,13 @@ public abstract class ESPPacket
 	 */
 	public PacketId getPacketIdentifier()
 	{
-		return PacketIdLookup.getConstant(packetIdentifier);
+		PacketId packetId = m_packetIdConstant;
+		if ( packetId == null || m_packetIdConstantKey != packetIdentifier ){
+			packetId = PacketIdLookup.getConstant(packetIdentifier);
+			m_packetIdConstant = packetId;
+			m_packetIdConstantKey = packetIdentifier;
+		}
+		return packetId;
 	}
 	
 	/**
@@ -154,7 +267,13 @@ public abstract class ESPPacket
 	 */
 	public Devices getDestination()
 	{
-		return DevicesLookup.getConstant(destinationIdentifier);
+		Devices destination = m_destinationConstant;
+		if ( destination == null || m_destinationConstantKey != destinationIdentifier ){
+			destination = DevicesLookup.getConstant(destinationIdentifier);
+			m_destinationConstant = destination;
+			m_destinationConstantKey = destinationIdentifier;
+		}
+		return destination;
 	}
 	
 	/**
@@ -164,7 +283,13 @@ public abstract class ESPPacket
 	 */
 	public Devices getOrigin()
 	{
-		return DevicesLookup.getConstant(originatorIdentifier);
+		Devices origin = m_originConstant;
+		if ( origin == null || m_originConstantKey != originatorIdentifier ){
+			origin = DevicesLookup.getConstant(originatorIdentifier);
+			m_originConstant = origin;
+			m_originConstantKey = originatorIdentifier;
+		}
+		return origin;
 	}
 	
 	/**
@@ -208,7 +333,8 @@ public abstract class ESPPacket
 	}
 	
 	/**
-	 * This method will copy bytes from one array list to another.
+	 * This method will copy bytes from one array list to another. At most MAX_LOGGED_BYTES are copied because the copies
+	 * are only used for logging.
 	 *  
 	 * @param src - The byte to be copied
 	 * @param dest - The copy destination
@@ -217,7 +343,8 @@ public abstract class ESPPacket
 	{
 		dest.clear();
 		
-		for ( int i = 0; i < src.size(); i++ ){
+		int count = Math.min(src.size(), MAX_LOGGED_BYTES);
+		for ( int i = 0; i < count; i++ ){
 			byte b = src.get(i);
 			dest.add(b);
 		}
@@ -260,9 +387,12 @@ public abstract class ESPPacket
 	 * Sets the {@link ConnectionType} for all {@link ESPPacket}.
 	 * 
 	 * @param connType	The desired {@link ConnectionType} for all {@link ESPPacket}.  
+	 * 
+	 * @deprecated Has no effect. Each packet keeps the connection type it was received from or encoded for, so packets
+	 * from several connections can exist at the same time.
 	 */
+	@Deprecated
 	public static void setConnectionType(ConnectionType connType) {
-		mConnectionType = connType;
 	}
 		
 	/** 
@@ -276,15 +406,30 @@ public abstract class ESPPacket
 	 * 
 	 */
 	public static ESPPacket makeFromBuffer(ArrayList<Byte> buffer, ConnectionType type, Devices lastV1Type) {
+		return makeFromBuffer(buffer, type, lastV1Type, null);
+	}
+	
+	/**
+	 * Takes an ArrayList of bytes and builds the resulting packet from that array, counting the bytes that are thrown away
+	 * because they are not part of a valid frame.
+	 * 
+	 * @param buffer			ArrayList containing byte data read from the V1Connection device.
+	 * @param type 				Connection type, used to determine how to handle the buffer pack bytes.
+	 * @param lastV1Type		The type of the type of the V1, the last time we received data.
+	 * @param discardedCount	The discarded byte count of the connection the buffer belongs to, or null to not count them.
+	 * 
+	 * @return the new packet made from the buffer.  Look at its packetIdentifier and cast to the correct type
+	 */
+	public static ESPPacket makeFromBuffer(ArrayList<Byte> buffer, ConnectionType type, Devices lastV1Type, AtomicLong discardedCount) {
 		if(buffer == null) {
 			return null;
 		}
 		switch(type) {
 		case V1Connection_LE:
-			return makeFromBufferLE(buffer, lastV1Type);
+			return makeFromBufferLE(buffer, lastV1Type, discardedCount);
 		case V1Connection:
 		default:
-			return makeFromBufferSPP(buffer, lastV1Type);	
+			return makeFromBufferSPP(buffer, lastV1Type, discardedCount);	
 		}
 	}
 	
@@ -293,17 +438,24 @@ public abstract class ESPPacket
 	 * 
 	 * @param buffer		ArrayList containing byte data read from the V1Connection device.
 	 * @param lastV1Type	The type of the type of the V1, the last time we received data.
+	 * @param discardedCount	The count to add the discarded bytes to, or null.
 	 * 
 	 * @return the new packet made from the buffer.  Look at its packetIdentifier and cast to the correct type
 	 * 
 	 */
-	protected static ESPPacket makeFromBufferLE(ArrayList<Byte> buffer, Devices lastV1Type) {
+	protected static ESPPacket makeFromBufferLE(ArrayList<Byte> buffer, Devices lastV1Type, AtomicLong discardedCount) {
+		// Throw away anything in front of the first SOF, otherwise the garbage would keep every later frame from decoding
+		mDiscardBefore(buffer, 0, startOfFrameConstant, discardedCount);
 		if(buffer.isEmpty()) {
 			return null;
 		}
 		int bufferSize = buffer.size();
 		
-		if(buffer.get(0) != startOfFrameConstant || buffer.get(bufferSize - 1) != endOfFrameConstant) {
+		if(buffer.get(bufferSize - 1) != endOfFrameConstant) {
+			if ( bufferSize > MAX_LE_FRAME_LENGTH ){
+				// The frame at the start of the buffer is longer than any valid frame, so look for the next SOF
+				mDiscardBefore(buffer, 1, startOfFrameConstant, discardedCount);
+			}
 			return null;
 		}
 
@@ -345,7 +497,7 @@ public abstract class ESPPacket
 					break;
 				case PACKET_ID:
 					// Make the packet
-					retPacket = PacketFactory.getPacket(PacketIdLookup.getConstant(curByte));
+					retPacket = PacketPool.obtain(curByte);
 					if ( retPacket == null ){
 						// We couldn't build the packet so stop trying
 						dataError = true;
@@ -378,7 +530,7 @@ public abstract class ESPPacket
 								// Don't process any other data until we know what type of V1 we are working with
 								dataError = true;
 								if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-									Log.e(LOG_TAG, "Ignore packet id 0x" + String.format("%02X ",curByte) + " because the V1 type is unknown");
+									ESPLog.e(LOG_TAG, "Ignore packet id 0x" + String.format("%02X ",curByte) + " because the V1 type is unknown");
 								}
 							}
 						}
@@ -405,17 +557,26 @@ public abstract class ESPPacket
 						retPacket.payloadLength = tmp;						
 						// If payloadLength is zero, then the next byte in the buffer will be the packet checksum. For non-checksum V1 devices
 						// the payloadLength is greater than zero so the next byte will be payload data.
-						if(retPacket.payloadLength == 0) {
+						if ( !PacketLayout.isPayloadLengthValid(retPacket.packetIdentifier, retPacket.payloadLength) ){
+							// The payload is too short to decode
+							dataError = true;
+							mLogShortPayload(retPacket);
+						}
+						else if(retPacket.payloadLength == 0) {
 							processState = ProcessState.PACKET_CHEKSUM;
 						}
 						else {
-							retPacket.payloadData = new byte[retPacket.payloadLength];
+							retPacket.allocatePayload(retPacket.payloadLength);
 							processState = ProcessState.PAYLOAD;							
 							
 						}
 						// Always include the payload length in the packet data.
 						espChecksum += curByte;
 					}
+					else if ( !PacketLayout.isPayloadLengthValid(retPacket.packetIdentifier, 0) ){
+						dataError = true;
+						mLogShortPayload(retPacket);
+					}
 					else {
 						// There is no payload data so go to the end of frame.
 						processState = ProcessState.EOF;
@@ -443,7 +604,7 @@ public abstract class ESPPacket
 						// The checksum does not match
 						dataError = true;
 						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Bad ESP checksum. Expected 0x" + String.format("%02X ", espChecksum) + " but found 0x" + String.format("%02X ",curByte) );
+							ESPLog.e(LOG_TAG, "Bad ESP checksum. Expected 0x" + String.format("%02X ", espChecksum) + " but found 0x" + String.format("%02X ",curByte) );
 						}
 					} 
 					else {	
@@ -459,7 +620,7 @@ public abstract class ESPPacket
 						// Bad data so let's bail
 						dataError = true;
 						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Unable to find EOF at the expected index: " + i);
+							ESPLog.e(LOG_TAG, "Unable to find EOF at the expected index: " + i);
 						}
 					}
 					
@@ -482,6 +643,7 @@ public abstract class ESPPacket
 		
 		buffer.clear();
 		if(dataError) {
+			mCountDiscarded(discardedCount, bufferSize);
 			return null;
 		}
 		// Force the ESPPacket checksum to zero if the V1 does not support checksums before returning the packet.
@@ -491,19 +653,32 @@ public abstract class ESPPacket
 		}
 		
 		retPacket.packetChecksum = retPacket.makePacketChecksum();
+		retPacket.m_connectionType = ConnectionType.V1Connection_LE;
 		return retPacket;
 	}
 	
 	
+	/**
+	 * Logs a packet whose payload is too short for its layout.
+	 * 
+	 * @param packet	The packet being decoded.
+	 */
+	private static void mLogShortPayload(ESPPacket packet) {
+		if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+			ESPLog.e(LOG_TAG, "Payload length " + packet.payloadLength + " is too short for packet id 0x" + String.format("%02X ", packet.packetIdentifier));
+		}
+	}
+	
 	/** 
 	 * Creates a EPSPacket from the bytes stored in the passed in Arraylist. properly Formatted for SPP connections.
 	 * 
 	 * @param Buffer the buffer to make the packet from
+	 * @param discardedCount	The count to add the discarded bytes to, or null.
 	 * 
 	 * @return the new packet made from the buffer.  Look at its packetIdentifier and cast to the correct type
 	 * 
 	 */
-	protected static ESPPacket makeFromBufferSPP(ArrayList<Byte> buffer, Devices lastV1Type) {
+	protected static ESPPacket makeFromBufferSPP(ArrayList<Byte> buffer, Devices lastV1Type, AtomicLong discardedCount) {
 
 		int startIdx = -1;
 		int endIdx = -1;
@@ -537,339 +712,58 @@ public abstract class ESPPacket
 		}
 		
 		if ( startIdx == -1 || endIdx == -1 ){
+			if ( startIdx == -1 ){
+				// None of the bytes can be part of a frame
+				mDiscardBefore(buffer, buffer.size(), frameDelimitedConstant, discardedCount);
+			}
+			else if ( buffer.size() - startIdx > MAX_SPP_FRAME_LENGTH ){
+				// The frame at startIdx is longer than any valid frame, so look for the next delimiter
+				mDiscardBefore(buffer, startIdx + 1, frameDelimitedConstant, discardedCount);
+			}
+			else if ( startIdx > 0 ){
+				// The bytes in front of the delimiter can never be part of a frame, so don't scan them again
+				mDiscardBefore(buffer, startIdx, frameDelimitedConstant, discardedCount);
+			}
 			// Copy start and end buffer in case the next call fails			
-			mCopyBuffer (curStartBuffer, mLastStartBuffer);
-			mCopyBuffer (buffer, mLastEndBuffer);
+			mCopyBuffer (curStartBuffer, mLastStartBuffer.get());
+			mCopyBuffer (buffer, mLastEndBuffer.get());
 			// We did not receive a full packet
 			return null;
 		}
 		
 		if(startIdx != 0 && ESPLibraryLogController.LOG_WRITE_ERROR) {
-			Log.e(LOG_TAG, "Skipping " + startIdx + " bytes because there was no delimiter at index 0");
-			Log.e(LOG_TAG, "  Current buffer: "  + getBufferLogString (buffer));
-			Log.e(LOG_TAG, "  Last Start buffer: "  + getBufferLogString (mLastStartBuffer));
-			Log.e(LOG_TAG, "  Last End buffer: "  + getBufferLogString (mLastEndBuffer));
+			ESPLog.e(LOG_TAG, "Skipping " + startIdx + " bytes because there was no delimiter at index 0");
+			ESPLog.e(LOG_TAG, "  Current buffer: "  + getBufferLogString (buffer));
+			ESPLog.e(LOG_TAG, "  Last Start buffer: "  + getBufferLogString (mLastStartBuffer.get()));
+			ESPLog.e(LOG_TAG, "  Last End buffer: "  + getBufferLogString (mLastEndBuffer.get()));
 		}
 		
-		// Process the buffer
-		int i = startIdx;
-		int payloadIdx = 0;
+		// Run the delimited frame through the streaming decoder. The trailing delimiter completes the packet.
+		SPPFrameDecoder decoder = new SPPFrameDecoder();
 		ESPPacket retPacket = null;
-		ProcessState processState = ProcessState.START_PACK_BYTE;
-		boolean dataError = false;
-		
-		// Store these values until we have a packet to put them into
-		byte tempLength = 0;
-		byte tempDest = 0;
-		byte tempOrigin = 0;
-		byte packetChecksum = 0;
-		byte espChecksum = 0;
-		
-		while ( i <= endIdx ){
-			// Read the next byte from the buffer 
-			byte curByte = buffer.get(i).byteValue();
-			
-			if ( curByte == frameDataEscapeConstant ){
-				// Check the next byte to see if it should be turned into an 0x7F or 0x7D
-				i++;
-				curByte = buffer.get(i).byteValue();
-				// Skip the next byte after the delimiter
-				if (curByte == (byte)0x5D){
-					// If we find 0x5D after the delimiter, turn it into an 0x7D
-					curByte = (byte)0x7D;					
-				}
-				else if (curByte == (byte)0x5F){
-					// If we find 0x5F after the delimiter, turn it into an 0x7F
-					curByte = (byte)0x7F;
-				}				
-			}
-			
-			switch (processState){
-				default:
-				case START_PACK_BYTE:
-					if ( curByte != frameDelimitedConstant ) {
-						// How did THIS happen?!?
-						dataError = true;						
-						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Missing 0x7F at startIdx: " + startIdx);
-						}
-					}
-					
-					// Move to the next state. If there is a data error, the next state will never be used so
-					// we don't need to check for that.
-					processState = ProcessState.PACKET_LENGTH;					
-					break;
-					
-				case PACKET_LENGTH:
-					tempLength = curByte;
-					
-					// Update the checksum
-					packetChecksum += curByte;
-					
-					// Move to the next state. If there is a data error, the next state will never be used so
-					// we don't need to check for that.
-					processState = ProcessState.SOF;
-					break;
-					
-				case SOF:
-					if ( curByte != startOfFrameConstant ) {
-						// Bad data so let's bail
-						dataError = true;
-						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Missing SOF at the expected index: " + i);
-						}
-					}
-					
-					// Update the checksum
-					packetChecksum += curByte;
-					espChecksum += curByte;
-					
-					// Move to the next state. If there is a data error, the next state will never be used so
-					// we don't need to check for that.
-					processState = ProcessState.DESTINATION;					
-					break;
-					
-				case DESTINATION:
-					if ( (curByte & destinationIdentifierBaseConstant) != destinationIdentifierBaseConstant ) {
-						// This is not a valid destination
-						dataError = true;
-						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Invalid destination ID (" + String.format("%02X ",curByte) + ") at the expected index: " + i);
-						}
-					}
-					
-					tempDest = curByte;
-					
-					// Update the checksum
-					packetChecksum += curByte;
-					espChecksum += curByte;
-					
-					// Move to the next state. If there is a data error, the next state will never be used so
-					// we don't need to check for that.
-					processState = ProcessState.ORIGINATOR;	
-					break;
-					
-				case ORIGINATOR:
-					if ( (curByte & originationIdentifierBaseConstant) != originationIdentifierBaseConstant ) {
-						// This is not a valid originator
-						dataError = true;
-						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Invalid originator ID (" + String.format("%02X ",curByte) + ") at the expected index: " + i);
-						}
-					}
-					
-					tempOrigin = curByte;
-					
-					// Update the checksum
-					packetChecksum += curByte;
-					espChecksum += curByte;
-					
-					// Move to the next state. If there is a data error, the next state will never be used so
-					// we don't need to check for that.
-					processState = ProcessState.PACKET_ID;	
-					break;
-					
-				case PACKET_ID:
-					// Make the packet
-					retPacket = PacketFactory.getPacket(PacketIdLookup.getConstant(curByte));
-					if ( retPacket == null ) {
-						// We couldn't build the packet so stop trying
-						dataError = true;
-						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Unable to generate packet for packet id (" + String.format("%02X ",curByte) + ")");
-						}
-					}
-					else{
-						// We have a good packet so fill it up
-						retPacket.headerDelimter = frameDelimitedConstant;  //<- We can't get here if this wasn't true
-						retPacket.packetLength = tempLength;
-						
-						retPacket.startOfFrame = startOfFrameConstant;   //<- We can't get here if this wasn't true
-						retPacket.destinationIdentifier = tempDest;
-						// Don't store the upper nibble of the destinations
-						retPacket.m_destination = (byte)(tempDest - destinationIdentifierBaseConstant);
-						// Don't store the upper nibble of the origin
-						retPacket.originatorIdentifier = (byte)(tempOrigin - originationIdentifierBaseConstant);
-						retPacket.packetIdentifier = curByte;
-						
-						// If the packet is from a V1 set the ESPPacket V1 type to the appropriate Device type. 
-						if(isPacketFromV1(retPacket.originatorIdentifier)) {
-							retPacket.m_valentineType = Devices.fromByteValue(retPacket.originatorIdentifier);
-						}
-						else {
-							retPacket.m_valentineType = lastV1Type;
-						}
-						// If the last known V1 type is unknown check to see if the ESPPacket is V1connection version response. 
-						if ( retPacket.m_valentineType == Devices.UNKNOWN ) {
-							if ( retPacket.packetIdentifier != PacketId.respVersion.toByteValue() || retPacket.originatorIdentifier != Devices.V1CONNECT.toByteValue() ){
-								// Always allow the V1connection version responses to pass through
-								// Don't process any other data until we know what type of V1 we are working with
-								dataError = true;
-								if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-									Log.e(LOG_TAG, "Ignore packet id 0x" + String.format("%02X ",curByte) + " because the V1 type is unknown");
-								}
-							}
-						}
-					}
-					
-					// Update the checksum
-					packetChecksum += curByte;
-					espChecksum += curByte;
-					
-					// Move to the next state. If there is a data error, the next state will never be used so
-					// we don't need to check for that.
-					processState = ProcessState.PAYLOAD_LENGTH;	
-					break;
-					
-				case PAYLOAD_LENGTH:
-					if(curByte != 0) {
-						byte tmp;
-						if ((retPacket.m_valentineType == Devices.VALENTINE1_LEGACY) || (retPacket.m_valentineType == Devices.VALENTINE1_WITHOUT_CHECKSUM))
-						{
-							tmp = curByte;
-						}
-						else
-						{
-							// If this packet is from a V1 that supports checksum, we want to decrement the payload length by 1
-							// to make packet match packets from Legacy and non-checksum V1's
-							tmp = (byte) (curByte - 1);
-						}
-						retPacket.payloadLength = tmp;						
-						// If payloadLength is zero, then the next byte in the buffer will be the packet checksum. For non-checksum V1 devices
-						// the payloadLength is greater than zero so the next byte will be payload data.
-						if(retPacket.payloadLength == 0) {
-							processState = ProcessState.PACKET_CHEKSUM;
-						}
-						else {
-							retPacket.payloadData = new byte[retPacket.payloadLength];
-							processState = ProcessState.PAYLOAD;							
-							
-						}
-						// Always include the payload length in the packet data.
-						espChecksum += curByte;// Update the PACKET checksum
-						packetChecksum += curByte;
-					}
-					else {
-						// There is no payload data so go to the end of frame.
-						processState = ProcessState.EOF;					
-					}
-					break;
-				case PAYLOAD:					
-					retPacket.payloadData[payloadIdx] = curByte;					
-					payloadIdx ++;
-					// Update the ESP checksum.
-					espChecksum += curByte;
-					// Update the PACKET checksum
-					packetChecksum += curByte;
-					// If we have reached the end of the payload data, handle checking the checksum.
-					if (payloadIdx == retPacket.payloadLength) {						
-						if ((retPacket.m_valentineType == Devices.VALENTINE1_LEGACY) || (retPacket.m_valentineType == Devices.VALENTINE1_WITHOUT_CHECKSUM)) {
-							// Get the EOF byte next
-							processState = ProcessState.EOF;
-						}
-						else {
-							processState = ProcessState.PACKET_CHEKSUM;
-						}
-					}				
-					break;
-				case PACKET_CHEKSUM:
-					// If the calculated checksum does not equal the checksum byte, an error has occurred.
-					if ( espChecksum != curByte ){
-						// The checksum does not match
-						dataError = true;
-						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Bad ESP checksum. Expected 0x" + String.format("%02X ", espChecksum) + " but found 0x" + String.format("%02X ",curByte) );
-						}
-					}					
-					// Store the checksum
-					packetChecksum += curByte;
-					retPacket.checkSum = curByte;
-					// Get the EOF byte next
-					processState = ProcessState.EOF;
-					break;
-				case EOF:
-					if ( curByte != endOfFrameConstant ) {
-						// Bad data so let's bail
-						dataError = true;
-						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Unable to find EOF at the expected index: " + i);
-						}
-					}					
-					retPacket.endOfFrame = curByte;					
-					// Update the packet checksum
-					packetChecksum += curByte;					
-					// Move to the next state. If there is a data error, the next state will never be used so
-					// we don't need to check for that.
-					processState = ProcessState.BT_CHECKSUM;
-					break;					
-				case BT_CHECKSUM:
-					// Update the packet checksum
-					if ( packetChecksum != curByte ) {
-						// We are missing something
-						dataError = true;
-						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Bad packet checksum. Expected 0x" + String.format("%02X ",packetChecksum) + " but found 0x" + String.format("%02X ",curByte) );
-						}
-					}					
-					retPacket.packetChecksum = curByte;					
-					
-					// Move to the next state. If there is a data error, the next state will never be used so
-					// we don't need to check for that.
-					processState = ProcessState.END_PACK_BYTE;
-					break;
-					
-				case END_PACK_BYTE:
-					if ( i != endIdx ) {
-						// We should be at the end of the data by now
-						dataError = true;
-						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Excpected to be at index " + endIdx + " but we are at index " + i);
-						}
-					}
-					else if ( curByte != frameDelimitedConstant ){
-						// How did THIS happen?!?
-						dataError = true;
-						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-							Log.e(LOG_TAG, "Missing 0x7F at endIdx: " + endIdx);
-						}
-					}
-					
-					retPacket.endDelimter = curByte;
-					
-					// Move to the next state. If there is a data error, the next state will never be used so
-					// we don't need to check for that.
-					processState = ProcessState.START_PACK_BYTE;
-					break;
-			}
-			
-			if ( dataError ){
-				// Stop processing the data
-				break;
-			}
-			
-			// Increment the index to the next byte
-			i ++;		
+		for ( int j = startIdx; j <= endIdx; j++ ){
+			retPacket = decoder.processByte(buffer.get(j).byteValue(), lastV1Type);
 		}
 		
-		// Remove all bytes up to and including the end index
-		trimBuffer(buffer, endIdx);
+		if ( retPacket == null ){
+			// The frame was truncated or corrupted. Keep the delimiter at the end index because it may be the start of
+			// the next frame.
+			mCountDiscarded(discardedCount, endIdx);
+			trimBuffer(buffer, endIdx - 1);
+		}
+		else {
+			mCountDiscarded(discardedCount, startIdx);
+			// Remove all bytes up to and including the end index
+			trimBuffer(buffer, endIdx);
+		}
 		
 		// Copy start and end buffer in case the next call fails			
-		mCopyBuffer (curStartBuffer, mLastStartBuffer);
-		mCopyBuffer (buffer, mLastEndBuffer);
-		
-		if ( dataError ){
-			return null;
-		}		
+		mCopyBuffer (curStartBuffer, mLastStartBuffer.get());
+		mCopyBuffer (buffer, mLastEndBuffer.get());
 		
-		// Force the ESPPacket checksum to zero if the V1 does not support checksums before returning the packet.
-		if ((retPacket.getV1Type() == Devices.VALENTINE1_LEGACY) || (retPacket.getV1Type() == Devices.VALENTINE1_WITHOUT_CHECKSUM)) {
-			
-			retPacket.checkSum = 0;
-		}
 		return retPacket;
 	}
-
+	
 	/**
 	 * Trims all the bytes from the buffer from zero to a specified end point
 	 *  
@@ -881,6 +775,43 @@ public abstract class ESPPacket
 	     buffer.subList(0, trimToPosition + 1).clear();
 	}
 	
+	/**
+	 * Adds to a discarded byte count.
+	 * 
+	 * @param discardedCount	The count to add to, or null.
+	 * @param bytes				The number of bytes that were discarded.
+	 */
+	private static void mCountDiscarded(AtomicLong discardedCount, int bytes) {
+		if ( discardedCount != null && bytes > 0 ){
+			discardedCount.addAndGet(bytes);
+		}
+	}
+	
+	/**
+	 * Removes the bytes in front of the first occurrence of the marker at or after fromIndex. The whole buffer is cleared
+	 * if the marker is not found. The removed bytes are added to the discarded byte count.
+	 * 
+	 * @param buffer	The buffer to trim.
+	 * @param fromIndex	The index to start looking for the marker at.
+	 * @param marker	The byte that can start a frame.
+	 * @param discardedCount	The count to add the discarded bytes to, or null.
+	 */
+	private static void mDiscardBefore(ArrayList<Byte> buffer, int fromIndex, byte marker, AtomicLong discardedCount) {
+		int size = buffer.size();
+		int idx = fromIndex;
+		while ( idx < size && buffer.get(idx).byteValue() != marker ){
+			idx++;
+		}
+		
+		if ( idx > 0 ){
+			if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+				ESPLog.e(LOG_TAG, "Discarding " + idx + " bytes that are not part of a frame");
+			}
+			mCountDiscarded(discardedCount, idx);
+			buffer.subList(0, idx).clear();
+		}
+	}
+	
 	/**
 	 * Helper method for determining if an originatorIdentifier is from a V1.
 	 * 
@@ -912,6 +843,74 @@ public abstract class ESPPacket
 		}
 	}
 	
+	/**
+	 * Encodes the given packet into the buffer provided, starting at the buffer's current position. The position is advanced
+	 * past the encoded bytes. SPP frames are escaped, so the bytes written can be sent to the V1connection as is. Unlike
+	 * makeByteStream, this method does not allocate any memory so it should be used on the write path.
+	 * 
+	 * @param packet			The packet to be encoded.
+	 * @param connectionType	The type of bluetooth connection the packet will be sent over i.e. LE_CONNECTION or SPP_CONNECTION.
+	 * @param dest				The buffer to write the encoded packet into.
+	 * 
+	 * @return	The number of bytes written, or -1 if the packet could not be encoded or does not fit into the buffer. The buffer
+	 * position is not changed when -1 is returned.
+	 */
+	public static int encode(ESPPacket packet, ConnectionType connectionType, ByteBuffer dest) {
+		// Error prevention. If we are given a null packet there is nothing to write.
+		if(packet == null || dest == null) {
+			return -1;
+		}
+		packet.m_connectionType = connectionType;
+		
+		boolean fixedFrame = packet.hasFixedFrame();
+		if(fixedFrame) {
+			byte[] frame = EncodedFrameCache.get(packet, connectionType);
+			if(frame != null) {
+				if(dest.remaining() < frame.length) {
+					if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+						ESPLog.e(LOG_TAG, "The buffer does not have enough room to encode the packet.");
+					}
+					return -1;
+				}
+				dest.put(frame);
+				return frame.length;
+			}
+		}
+		
+		int startPosition = dest.position();
+		try {
+			boolean encoded;
+			switch(connectionType) {
+			case V1Connection_LE:
+				encoded = encodeLE(packet, dest);
+				break;
+			case V1Connection:
+			default:
+				encoded = encodeSPP(packet, dest);
+				if(encoded) {
+					mEscapeSPP(dest, startPosition);
+				}
+				break;
+			}
+			
+			if(encoded) {
+				int length = dest.position() - startPosition;
+				if(fixedFrame) {
+					EncodedFrameCache.put(packet, connectionType, dest, startPosition, length);
+				}
+				return length;
+			}
+		}
+		catch (BufferOverflowException e) {
+			if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+				ESPLog.e(LOG_TAG, "The buffer does not have enough room to encode the packet.");
+			}
+		}
+		
+		dest.position(startPosition);
+		return -1;
+	}
+	
 	/**
 	 * Converts an ESPPacket into a byte array properly formatted for LE connections.
 	 * 
@@ -920,12 +919,29 @@ public abstract class ESPPacket
 	 * @return	Byte array that represents the packet.
 	 */
 	protected static byte[] makeByteStreamLE(ESPPacket packet) {
-		byte[] buffer = null;
 		// Error prevention. If we are given a null packet return a null buffer.
 		if(packet == null) {
-			return buffer; 
+			return null; 
 		}
 		
+		ByteBuffer buffer = ByteBuffer.allocate(Math.max(packet.packetLength, 0));
+		if(!encodeLE(packet, buffer)) {
+			return null;
+		}
+		return buffer.array();
+	}
+	
+	/**
+	 * Writes an ESPPacket into the buffer provided using the LE format.
+	 * 
+	 * @param packet	The packet to be encoded.
+	 * @param dest		The buffer to write the packet into.
+	 * 
+	 * @return	True if the packet was written, false if the packet length is not valid.
+	 * 
+	 * @throws BufferOverflowException if the buffer is too small to hold the packet.
+	 */
+	private static boolean encodeLE(ESPPacket packet, ByteBuffer dest) {
 		int size = packet.getPacketLength();
 		int payloadOffset;
 		if ((packet.getV1Type() == Devices.VALENTINE1_LEGACY) || (packet.getV1Type() == Devices.VALENTINE1_WITHOUT_CHECKSUM))
@@ -933,9 +949,9 @@ public abstract class ESPPacket
 			// If the size is not at least 5 plus payload length, return null.
 			if(size <= 5 + packet.payloadLength) {
 				if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-					Log.e(LOG_TAG, "Packet length does not meet the minimum required lenght of " + 5 + "bytes. Returning null.");
+					ESPLog.e(LOG_TAG, "Packet length does not meet the minimum required lenght of " + 5 + "bytes. Returning null.");
 				}
-				return buffer;
+				return false;
 			}
 			// Set the payload offset to 1 because the legacy and no checksum will not have any payload data so adjust the payload
 			// offset to account for the missing byte.
@@ -945,35 +961,33 @@ public abstract class ESPPacket
 			// If the size is not at least 6 plus payload length, return null.
 			if(size <= 6 + packet.payloadLength) {
 				if(ESPLibraryLogController.LOG_WRITE_ERROR) {
-					Log.e(LOG_TAG, "Packet length does not meet the minimum required lenght of " + 6 + "bytes. Returning null.");
+					ESPLog.e(LOG_TAG, "Packet length does not meet the minimum required lenght of " + 6 + "bytes. Returning null.");
 				}
-				return buffer;
+				return false;
 			}
 			// Set the payload offset to 1 if the V1 supports checksum.
 			payloadOffset = 1;
 		}
-		buffer = new byte[packet.packetLength];
 		
-		buffer[0] = (byte) (packet.startOfFrame & 0xff);
-		buffer[1] = (byte) (packet.destinationIdentifier & 0xff); 
-		buffer[2] = buildDeviceIdentifier(originationIdentifierBaseConstant, packet.originatorIdentifier);
-		buffer[3] = (byte) (packet.packetIdentifier & 0xff);
-		buffer[4] = (byte) ((packet.payloadLength + payloadOffset) & 0xff);
+		int startPosition = dest.position();
+		dest.put((byte) (packet.startOfFrame & 0xff));
+		dest.put((byte) (packet.destinationIdentifier & 0xff)); 
+		dest.put(buildDeviceIdentifier(originationIdentifierBaseConstant, packet.originatorIdentifier));
+		dest.put((byte) (packet.packetIdentifier & 0xff));
+		dest.put((byte) ((packet.payloadLength + payloadOffset) & 0xff));
 
 		if (packet.payloadData != null) {
-			for (int i = 0; i < packet.payloadLength; i++) {
-				buffer[5 + i] = (byte) packet.payloadData[i];
-			}
+			dest.put(packet.payloadData, 0, packet.payloadLength);
 		}
 		
 		if(packet.getV1Type() == Devices.VALENTINE1_WITH_CHECKSUM) {
-			buffer[5 + packet.payloadLength] = (byte) packet.checkSum;
-			buffer[6 + packet.payloadLength] = (byte) packet.endOfFrame;
+			dest.put((byte) packet.checkSum);
 		}
-		else {			
-			buffer[5 + packet.payloadLength] = (byte) packet.endOfFrame;
-		}		
-		return buffer;
+		dest.put((byte) packet.endOfFrame);
+		
+		// Always write the full packet length so the output matches the byte array format
+		mPadToSize(dest, startPosition, size);
+		return true;
 	}
 	
 	/**
@@ -984,6 +998,30 @@ public abstract class ESPPacket
 	 * @return	Byte array that represents the packet.
 	 */
 	protected static byte[] makeByteStreamSPP(ESPPacket packet)
+	{
+		// Error prevention. If we are given a null packet return a null buffer.
+		if(packet == null) {
+			return null; 
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(Math.max(packet.packetLength + 4, 0));
+		if(!encodeSPP(packet, buffer)) {
+			return null;
+		}
+		return buffer.array();
+	}
+	
+	/**
+	 * Writes an ESPPacket into the buffer provided using the SPP format.
+	 * 
+	 * @param packet	The packet to be encoded.
+	 * @param dest		The buffer to write the packet into.
+	 * 
+	 * @return	True if the packet was written, false if the packet length is not valid.
+	 * 
+	 * @throws BufferOverflowException if the buffer is too small to hold the packet.
+	 */
+	private static boolean encodeSPP(ESPPacket packet, ByteBuffer dest)
 	{
 		/*
 		 * The data format for a V1 With Checksums is
@@ -1022,13 +1060,6 @@ public abstract class ESPPacket
 		 * 		9				Trailing PACK byte (0x7F)
 		 */
 		
-		
-		byte[] buffer = null;
-		// Error prevention. If we are given a null packet return a null buffer.
-		if(packet == null) {
-			return buffer; 
-		}
-		
 		int size = packet.packetLength + 4;			
 		
 		int payloadOffset;
@@ -1036,8 +1067,8 @@ public abstract class ESPPacket
 		{
 			// If the size is not at least 9 plus payload length, return null.
 			if(size <= 9 + packet.payloadLength) {
-				Log.e(LOG_TAG, "Packet length does not meet the minimum required lenght of " + 9 + "bytes. Returning null.");
-				return buffer;
+				ESPLog.e(LOG_TAG, "Packet length does not meet the minimum required lenght of " + 9 + "bytes. Returning null.");
+				return false;
 			}
 			// Set the payload offset to 1 because the legacy and no checksum will not have any payload data so adjust the payload
 			// offset to account for the missing byte.
@@ -1046,48 +1077,112 @@ public abstract class ESPPacket
 		else {
 			// If the size is not at least 10 plus payload length, return null.
 			if(size <= 10 + packet.payloadLength) {
-				Log.e(LOG_TAG, "Packet length does not meet the minimum required lenght of " + 10 + "bytes. Returning null.");
-				return buffer;
+				ESPLog.e(LOG_TAG, "Packet length does not meet the minimum required lenght of " + 10 + "bytes. Returning null.");
+				return false;
 			}	
 			// Set the payload offset to 1 if the V1 supports checksum.
 			payloadOffset = 1;
 		}
 
-		buffer = new byte[size];
-		
-		buffer[0] = (byte) (packet.headerDelimter & 0xff);
-		buffer[1] = (byte) (packet.packetLength & 0xff);
+		int startPosition = dest.position();
+		dest.put((byte) (packet.headerDelimter & 0xff));
+		dest.put((byte) (packet.packetLength & 0xff));
 		
-		buffer[2] = (byte) (packet.startOfFrame & 0xff);
-		buffer[3] = (byte) (packet.destinationIdentifier & 0xff); 
-		buffer[4] = buildDeviceIdentifier(originationIdentifierBaseConstant, packet.originatorIdentifier);
-		buffer[5] = (byte) (packet.packetIdentifier & 0xff);
-		buffer[6] = (byte) ((packet.payloadLength + payloadOffset) & 0xff);
+		dest.put((byte) (packet.startOfFrame & 0xff));
+		dest.put((byte) (packet.destinationIdentifier & 0xff)); 
+		dest.put(buildDeviceIdentifier(originationIdentifierBaseConstant, packet.originatorIdentifier));
+		dest.put((byte) (packet.packetIdentifier & 0xff));
+		dest.put((byte) ((packet.payloadLength + payloadOffset) & 0xff));
 
 		if (packet.payloadData != null)	{			
-			for (int i = 0; i < packet.payloadLength; i++)
+			dest.put(packet.payloadData, 0, packet.payloadLength);
+		}
+		
+		if(packet.getV1Type() == Devices.VALENTINE1_WITH_CHECKSUM) {
+			dest.put((byte) packet.checkSum);
+		}
+		dest.put((byte) packet.endOfFrame);			
+		dest.put((byte) packet.packetChecksum);
+		dest.put((byte) packet.endDelimter);
+		
+		// Always write the full packet length so the output matches the byte array format
+		mPadToSize(dest, startPosition, size);
+		return true;
+	}
+	
+	/**
+	 * Writes zeros until the packet that started at startPosition is the size requested.
+	 * 
+	 * @param dest			The buffer containing the packet.
+	 * @param startPosition	The position of the first byte of the packet.
+	 * @param size			The required size of the packet.
+	 */
+	private static void mPadToSize(ByteBuffer dest, int startPosition, int size)
+	{
+		while ( dest.position() - startPosition < size ){
+			dest.put((byte) 0);
+		}
+	}
+	
+	/**
+	 * Converts reserved bytes to escape bytes in place, so the SPP frame can be sent to the V1Connection. The first and last
+	 * byte of the frame are the PACK bytes and are never escaped. The buffer position is moved to the end of the escaped frame.
+	 * 
+	 * @param dest			The buffer containing the frame. The frame must end at the current position.
+	 * @param startPosition	The position of the first byte of the frame.
+	 * 
+	 * @throws BufferOverflowException if the buffer is too small to hold the escaped frame.
+	 */
+	private static void mEscapeSPP(ByteBuffer dest, int startPosition)
+	{
+		int endPosition = dest.position() - 1;
+		int count = 0;
+		for (int i = startPosition + 1; i < endPosition; i++)
+		{
+			byte b = dest.get(i);
+			if (b == frameDataEscapeConstant || b == frameDelimitedConstant)
 			{
-				buffer[7 + i] = (byte) packet.payloadData[i];
+				count++;
 			}
 		}
 		
-		if(packet.getV1Type() == Devices.VALENTINE1_WITH_CHECKSUM) {
-			buffer[7 + packet.payloadLength] = (byte) packet.checkSum;
-			buffer[8 + packet.payloadLength] = (byte) packet.endOfFrame;			
-			buffer[9 + packet.payloadLength] = (byte) packet.packetChecksum;
-			buffer[10 + packet.payloadLength] = (byte) packet.endDelimter;
+		if (count == 0)
+		{
+			return;
 		}
-		else {
-			buffer[7 + packet.payloadLength] = (byte) packet.endOfFrame;			
-			buffer[8 + packet.payloadLength] = (byte) packet.packetChecksum;
-			buffer[9 + packet.payloadLength] = (byte) packet.endDelimter;
-		}		
-		return buffer;
+		
+		if (dest.remaining() < count)
+		{
+			throw new BufferOverflowException();
+		}
+		
+		// Work backwards from the end so the bytes that still need to be read are never overwritten
+		int writeIdx = endPosition + count;
+		dest.put(writeIdx--, dest.get(endPosition));
+		for (int i = endPosition - 1; i > startPosition; i--)
+		{
+			byte b = dest.get(i);
+			if (b == frameDataEscapeConstant)
+			{
+				dest.put(writeIdx--, (byte)0x5D);
+				dest.put(writeIdx--, frameDataEscapeConstant);
+			}
+			else if (b == frameDelimitedConstant)
+			{
+				dest.put(writeIdx--, (byte)0x5F);
+				dest.put(writeIdx--, frameDataEscapeConstant);
+			}
+			else
+			{
+				dest.put(writeIdx--, b);
+			}
+		}
+		dest.position(endPosition + count + 1);
 	}
 
 	@Override
 	public String toString() {
-		byte[] buffer = ESPPacket.makeByteStream(this, mConnectionType);
+		byte[] buffer = ESPPacket.makeByteStream(this, m_connectionType);
 		if(buffer == null) {
 			return "Null buffer.";
 		}
@@ -1223,9 +1318,22 @@ public abstract class ESPPacket
 			}
 			m_valentineType = newV1Type;
 			buildPacket();
+			invalidateContentHash();
 		}
 	}
 	
+	/**
+	 * Determine if this packet always produces the same frame for a given destination and V1 type. The encoded frames for
+	 * these packets are cached, so they are only built once. The default implementation returns false.
+	 * 
+	 * Override and return true only if the packet has no payload or other state that changes the encoded bytes.
+	 * 
+	 * @return	True if the encoded frame can be cached, else false.
+	 */
+	protected boolean hasFixedFrame() {
+		return false;
+	}
+	
 	/**
 	 * Sets up this packets static values. Vital logic should be implemented in children classes.
 	 * Method that should be overridden by all inheriting classes.
@@ -1272,6 +1380,7 @@ public abstract class ESPPacket
 		}
 		
 		packetChecksum = makePacketChecksum();
+		invalidateContentHash();
 	}
 	
 	/**
@@ -1286,6 +1395,159 @@ public abstract class ESPPacket
 		return (byte)((deviceByteValue & 0x0f) + baseConstant);		
 	}	
 
+	/**
+	 * Returns the object decoded from this packet's payload. The payload is decoded by {@link #decodePayload()} the first
+	 * time this is called and the result is kept with the packet, so packets that are only used for echo matching or busy
+	 * tracking never decode their payload and callers that ask more than once get the same object.
+	 * 
+	 * @return	The object returned by decodePayload().
+	 */
+	protected Object getDecodedPayload() {
+		Object data = m_decodedPayload;
+		if (data == NO_DECODED_PAYLOAD) {
+			// Two threads may both decode the payload, but they will build the same data.
+			data = decodePayload();
+			m_decodedPayload = data;
+		}
+		return data;
+	}
+	
+	/**
+	 * Builds the object returned by {@link #getDecodedPayload()}. Packets that return their data through getDecodedPayload()
+	 * must override this method. The default implementation returns null.
+	 * 
+	 * @return	An object representing the data in the packet.
+	 */
+	protected Object decodePayload() {
+		return null;
+	}
+	
+	/**
+	 * Throws away the object decoded from the payload, so it is built again the next time it is requested. This must be
+	 * called if the payload is changed after the packet has been handed out.
+	 */
+	protected void clearDecodedPayload() {
+		m_decodedPayload = NO_DECODED_PAYLOAD;
+	}
+
+	/**
+	 * Retrieve the object decoded from the last payload this packet held before it was returned to the {@link PacketPool}.
+	 * Packets that support pooling call this from decodePayload() and fill in the object it returns instead of allocating a
+	 * new one. The object is handed out only once.
+	 * 
+	 * @return	The object decoded from the previous payload, or null if there isn't one.
+	 */
+	protected Object takeRecycledPayload() {
+		Object data = m_recycledPayload;
+		m_recycledPayload = null;
+		return data;
+	}
+	
+	/**
+	 * Determine if this packet came from the {@link PacketPool}. A pooled packet, and the object returned by
+	 * getResponseData(), is only valid until the callback it was passed to returns. After that it is reused for another
+	 * packet, so use {@link #copy()} or copy the response data to keep it.
+	 * 
+	 * @return	True if this packet will be reused once it has been dispatched, else false.
+	 */
+	public boolean isPooled() {
+		return m_pooled;
+	}
+	
+	/**
+	 * Creates a packet that holds the same frame data as this packet. The copy is never pooled, so it can be kept for as
+	 * long as needed. The decoded payload is not shared with the copy; it is decoded again the first time it is requested.
+	 * 
+	 * @return	A new packet with the same contents as this packet.
+	 */
+	public ESPPacket copy() {
+		ESPPacket rc = PacketRegistry.createPacket(packetIdentifier);
+		
+		rc.headerDelimter = headerDelimter;
+		rc.packetLength = packetLength;
+		rc.startOfFrame = startOfFrame;
+		rc.destinationIdentifier = destinationIdentifier;
+		rc.originatorIdentifier = originatorIdentifier;
+		rc.packetIdentifier = packetIdentifier;
+		rc.payloadLength = payloadLength;
+		rc.payloadData = (payloadData == null) ? null : payloadData.clone();
+		rc.checkSum = checkSum;
+		rc.endOfFrame = endOfFrame;
+		rc.packetChecksum = packetChecksum;
+		rc.endDelimter = endDelimter;
+		
+		rc.m_destination = m_destination;
+		rc.m_valentineType = m_valentineType;
+		rc.m_timeStamp = m_timeStamp;
+		rc.m_resent = m_resent;
+		rc.m_connectionType = m_connectionType;
+		
+		rc.clearDecodedPayload();
+		rc.invalidateContentHash();
+		
+		return rc;
+	}
+	
+	/**
+	 * Makes sure the payload array can hold the number of bytes passed in. Pooled packets keep their payload array when the
+	 * length has not changed, all other packets get a new array.
+	 * 
+	 * @param length	The number of payload bytes.
+	 */
+	void allocatePayload(int length) {
+		if ( !m_pooled || payloadData == null || payloadData.length != length ){
+			payloadData = new byte[length];
+		}
+	}
+	
+	/**
+	 * Determine if this packet is waiting in the {@link PacketPool}.
+	 * 
+	 * @return	True if this packet has been returned to the pool and not handed out again, else false.
+	 */
+	boolean isInPool() {
+		return m_inPool;
+	}
+	
+	/**
+	 * Prepares a packet that was just taken out of the {@link PacketPool} to be filled in by a decoder.
+	 */
+	void reuse() {
+		m_pooled = true;
+		m_inPool = false;
+		m_timeStamp = ESPPlatform.currentTimeMillis();
+	}
+	
+	/**
+	 * Clears the frame data before this packet is returned to the {@link PacketPool}. The payload array and the decoded
+	 * payload object are kept so they can be filled in again.
+	 */
+	void recycle() {
+		Object data = m_decodedPayload;
+		if ( data != NO_DECODED_PAYLOAD ){
+			m_recycledPayload = data;
+		}
+		m_decodedPayload = NO_DECODED_PAYLOAD;
+		
+		headerDelimter = 0;
+		packetLength = 0;
+		startOfFrame = 0;
+		destinationIdentifier = 0;
+		originatorIdentifier = 0;
+		packetIdentifier = 0;
+		payloadLength = 0;
+		checkSum = 0;
+		endOfFrame = 0;
+		packetChecksum = 0;
+		endDelimter = 0;
+		m_destination = 0;
+		m_valentineType = null;
+		m_resent = false;
+		m_connectionType = ConnectionType.UNKNOWN;
+		m_contentHash = 0;
+		m_inPool = true;
+	}
+
 	/**
 	 *  Gets the data embedded into the packet.  Should not need to call directly, data returned directly from the Valentine Client.
 	 * @return An object representing the data in the packet.  Cast to the correct type for the packet. 
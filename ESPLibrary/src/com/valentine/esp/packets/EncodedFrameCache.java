@@ -0,0 +1,118 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.packets;
+
+import java.nio.ByteBuffer;
+
+import com.valentine.esp.bluetooth.ConnectionType;
+import com.valentine.esp.constants.Devices;
+
+/**
+ * Holds the encoded bytes for packets that always produce the same frame, such as mute on/off and the version requests.
+ * Frames are keyed by packet id, destination, V1 type and connection type, so sending one of these packets only has to
+ * copy the cached bytes once the packet has been encoded the first time.
+ */
+final class EncodedFrameCache
+{
+	private static final int 			V1_TYPE_COUNT = 3;
+	private static final int 			DESTINATION_COUNT = 16;
+	private static final int 			SLOTS_PER_PACKET_ID = 2 * V1_TYPE_COUNT * DESTINATION_COUNT;
+
+	// Indexed by the packet id, then by the slot returned from mGetSlot. The second level is created the first time a
+	// packet with that id is cached.
+	private static final byte [][][] 	m_frames = new byte[256][][];
+
+	private EncodedFrameCache()
+	{
+	}
+
+	/**
+	 * Retrieve the cached frame for the packet.
+	 *
+	 * @param packet			The packet to look up.
+	 * @param connectionType	The connection type the packet will be sent over.
+	 *
+	 * @return	The encoded frame or null if the packet has not been cached. The array must not be modified.
+	 */
+	static synchronized byte[] get(ESPPacket packet, ConnectionType connectionType)
+	{
+		int slot = mGetSlot(packet, connectionType);
+		if ( slot < 0 ){
+			return null;
+		}
+
+		byte [][] frames = m_frames[packet.packetIdentifier & 0xFF];
+		if ( frames == null ){
+			return null;
+		}
+		return frames[slot];
+	}
+
+	/**
+	 * Stores a copy of the frame that was just encoded for the packet.
+	 *
+	 * @param packet			The packet that was encoded.
+	 * @param connectionType	The connection type the packet was encoded for.
+	 * @param src				The buffer containing the encoded frame.
+	 * @param offset			The absolute position of the first byte of the frame in the buffer.
+	 * @param length			The number of bytes in the frame.
+	 */
+	static synchronized void put(ESPPacket packet, ConnectionType connectionType, ByteBuffer src, int offset, int length)
+	{
+		int slot = mGetSlot(packet, connectionType);
+		if ( slot < 0 ){
+			return;
+		}
+
+		byte [][] frames = m_frames[packet.packetIdentifier & 0xFF];
+		if ( frames == null ){
+			frames = new byte[SLOTS_PER_PACKET_ID][];
+			m_frames[packet.packetIdentifier & 0xFF] = frames;
+		}
+
+		byte [] frame = new byte[length];
+		for ( int i = 0; i < length; i++ ){
+			frame[i] = src.get(offset + i);
+		}
+		frames[slot] = frame;
+	}
+
+	/**
+	 * Determine where the frame for this packet is stored.
+	 *
+	 * @param packet			The packet to look up.
+	 * @param connectionType	The connection type the packet will be sent over.
+	 *
+	 * @return	The slot for the packet or -1 if the frame for this packet can not be cached.
+	 */
+	private static int mGetSlot(ESPPacket packet, ConnectionType connectionType)
+	{
+		int typeIdx;
+		switch ( packet.m_valentineType ){
+			case VALENTINE1_LEGACY:
+				typeIdx = 0;
+				break;
+			case VALENTINE1_WITHOUT_CHECKSUM:
+				typeIdx = 1;
+				break;
+			case VALENTINE1_WITH_CHECKSUM:
+				typeIdx = 2;
+				break;
+			default:
+				// We don't know how the frame will be built for any other type, so don't cache it
+				return -1;
+		}
+
+		if ( (packet.destinationIdentifier & 0xF0) != (ESPPacket.destinationIdentifierBaseConstant & 0xF0) ||
+			 packet.originatorIdentifier != Devices.V1CONNECT.toByteValue() ){
+			return -1;
+		}
+
+		int connIdx = (connectionType == ConnectionType.V1Connection_LE) ? 1 : 0;
+
+		return ((connIdx * V1_TYPE_COUNT) + typeIdx) * DESTINATION_COUNT + (packet.destinationIdentifier & 0x0F);
+	}
+}
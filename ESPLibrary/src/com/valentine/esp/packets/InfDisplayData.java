@@ -11,13 +11,14 @@ import com.valentine.esp.data.BandAndArrowIndicatorData;
 import com.valentine.esp.data.BogeyCounterData;
 import com.valentine.esp.data.InfDisplayInfoData;
 import com.valentine.esp.data.SignalStrengthData;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class InfDisplayData extends ESPPacket 
 {
 	public InfDisplayData(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 	}
 
 	@Override
@@ -35,32 +36,33 @@ public class InfDisplayData extends ESPPacket
 	 *  Gets the data embedded into the packet.  Should not need to call directly, data returned directly from the Valentine Client.
 	 * @return An object representing the data in the packet.  Cast to the correct type for the packet. 
 	 */
-	public Object getResponseData() 
+	public Object getResponseData()
 	{
-		InfDisplayInfoData rc = new InfDisplayInfoData();
-		BogeyCounterData bogey1 = new BogeyCounterData();
-		BogeyCounterData bogey2 = new BogeyCounterData();
-		SignalStrengthData signal = new SignalStrengthData();
-		BandAndArrowIndicatorData bandAndArrow1 = new BandAndArrowIndicatorData();
-		BandAndArrowIndicatorData bandAndArrow2 = new BandAndArrowIndicatorData();
-		AuxilaryData auxData = new AuxilaryData();
+		return getDecodedPayload();
+	}
+
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected Object decodePayload()
+	{
+		// Pooled packets fill in the data decoded from their last payload
+		InfDisplayInfoData rc = (InfDisplayInfoData) takeRecycledPayload();
+		if ( rc == null ){
+			rc = new InfDisplayInfoData();
+		}
 		
-		bogey1.setFromByte(payloadData[0]);
-		bogey2.setFromByte(payloadData[1]);
-		signal.setFromByte(payloadData[2]);
-		bandAndArrow1.setFromByte(payloadData[3]);
-		bandAndArrow2.setFromByte(payloadData[4]);
-		auxData.setFromByte(payloadData[5]);
+		// The display sub structures are looked up from the shared tables, so nothing is decoded or allocated for them
+		rc.setBogeyCounterData1(BogeyCounterData.fromByte(PacketLayout.DISPLAY_BOGEY_COUNTER_1.getByte(payloadData)));
+		rc.setBogeyCounterData2(BogeyCounterData.fromByte(PacketLayout.DISPLAY_BOGEY_COUNTER_2.getByte(payloadData)));
+		rc.setSignalStrengthData(SignalStrengthData.fromByte(PacketLayout.DISPLAY_SIGNAL_STRENGTH.getByte(payloadData)));
+		rc.setBandAndArrowIndicator1(BandAndArrowIndicatorData.fromByte(PacketLayout.DISPLAY_BAND_ARROW_1.getByte(payloadData)));
+		rc.setBandAndArrowIndicator2(BandAndArrowIndicatorData.fromByte(PacketLayout.DISPLAY_BAND_ARROW_2.getByte(payloadData)));
+		rc.setAuxData(AuxilaryData.fromByte(PacketLayout.DISPLAY_AUX_0.getByte(payloadData)));
 		
-		rc.setAux1Data(payloadData[6]);
-		rc.setAux2Data(payloadData[7]);
-				
-		rc.setBogeyCounterData1(bogey1);
-		rc.setBogeyCounterData2(bogey2);
-		rc.setSignalStrengthData(signal);
-		rc.setBandAndArrowIndicator1(bandAndArrow1);
-		rc.setBandAndArrowIndicator2(bandAndArrow2);
-		rc.setAuxData(auxData);
+		rc.setAux1Data(PacketLayout.DISPLAY_AUX_1.getByte(payloadData));
+		rc.setAux2Data(PacketLayout.DISPLAY_AUX_2.getByte(payloadData));
 		
 		return rc;
 	}
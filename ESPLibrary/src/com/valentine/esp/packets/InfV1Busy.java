@@ -7,13 +7,14 @@ package com.valentine.esp.packets;
 
 import java.util.ArrayList;
 import com.valentine.esp.constants.Devices;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class InfV1Busy extends ESPPacket 
 {
 	public InfV1Busy(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 	}
 
 	@Override
@@ -31,7 +32,16 @@ public class InfV1Busy extends ESPPacket
 	 *  Gets the data embedded into the packet.  Should not need to call directly, data returned directly from the Valentine Client.
 	 * @return An object representing the data in the packet.  Cast to the correct type for the packet. 
 	 */
-	public Object getResponseData() 
+	public Object getResponseData()
+	{
+		return getDecodedPayload();
+	}
+
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected Object decodePayload()
 	{
 		ArrayList<Integer> rc = new ArrayList<Integer>();
 		
@@ -0,0 +1,256 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.packets;
+
+import com.valentine.esp.constants.PacketId;
+
+/**
+ * The payload layout of every packet the library decodes, taken from ESP Specification 3.003. Each {@link Field} is the
+ * offset and width of one value in a payload, and the response decoders and the data classes read their payloads through
+ * these fields instead of hard coded indexes. The decoders also check a frame's payload length against the table as soon
+ * as the payload length byte arrives, so a short frame is thrown away with the other bad frames instead of failing later
+ * in decodePayload() on the thread that dispatches the packets. The minimum length of a packet is the end of the last
+ * field registered for it in {@link #mDefineLayouts()}.
+ *
+ * Longer payloads are accepted, because later revisions of the specification add bytes to the end of existing payloads.
+ * Moving or resizing a field is an edit to its constant. A new field needs a constant, a line in mDefineLayouts() if it
+ * must be present, and a line in the decoder that reads it. Requests are not described here because the library builds
+ * them itself.
+ */
+public final class PacketLayout
+{
+	/**
+	 * One value in a payload. Multi byte values are big endian, the byte order of the ESP bus.
+	 */
+	public static final class Field
+	{
+		private final int 	m_offset;
+		private final int 	m_width;
+
+		private Field(int offset, int width)
+		{
+			m_offset = offset;
+			m_width = width;
+		}
+
+		/**
+		 * Retrieve the position of the field's first byte.
+		 *
+		 * @return The offset from the start of the payload, or of the record for fields in a repeated record.
+		 */
+		public int getOffset()
+		{
+			return m_offset;
+		}
+
+		/**
+		 * Retrieve the number of bytes in the field.
+		 *
+		 * @return The field width in bytes.
+		 */
+		public int getWidth()
+		{
+			return m_width;
+		}
+
+		/**
+		 * Retrieve the position just past the field's last byte.
+		 *
+		 * @return The offset plus the width.
+		 */
+		public int getEnd()
+		{
+			return m_offset + m_width;
+		}
+
+		/**
+		 * Reads a one byte field.
+		 *
+		 * @param payload	The payload bytes.
+		 *
+		 * @return The byte, sign extended the same as reading the array directly.
+		 */
+		public byte getByte(byte [] payload)
+		{
+			return payload[m_offset];
+		}
+
+		/**
+		 * Reads a one byte field from a repeated record.
+		 *
+		 * @param payload		The payload bytes.
+		 * @param recordStart	The offset of the record in the payload.
+		 *
+		 * @return The byte, sign extended the same as reading the array directly.
+		 */
+		public byte getByte(byte [] payload, int recordStart)
+		{
+			return payload[recordStart + m_offset];
+		}
+
+		/**
+		 * Reads the field as an unsigned big endian value.
+		 *
+		 * @param payload	The payload bytes.
+		 *
+		 * @return The value of the field.
+		 */
+		public int getUnsigned(byte [] payload)
+		{
+			return getUnsigned(payload, 0);
+		}
+
+		/**
+		 * Reads the field of a repeated record as an unsigned big endian value.
+		 *
+		 * @param payload		The payload bytes.
+		 * @param recordStart	The offset of the record in the payload.
+		 *
+		 * @return The value of the field.
+		 */
+		public int getUnsigned(byte [] payload, int recordStart)
+		{
+			int start = recordStart + m_offset;
+			int value = 0;
+			for ( int i = 0; i < m_width; i++ ){
+				value = (value << 8) | (payload[start + i] & 0xFF);
+			}
+			return value;
+		}
+	}
+
+	// respUserBytes: user bytes 0 to 5. Only bytes 0 to 2 are decoded.
+	public static final Field 	USER_BYTE_0 = new Field(0, 1);
+	public static final Field 	USER_BYTE_1 = new Field(1, 1);
+	public static final Field 	USER_BYTE_2 = new Field(2, 1);
+
+	// respSweepDefinition and respDefaultSweepDefinition
+	public static final Field 	SWEEP_INDEX = new Field(0, 1);
+	public static final Field 	SWEEP_UPPER_EDGE = new Field(1, 2);
+	public static final Field 	SWEEP_LOWER_EDGE = new Field(3, 2);
+
+	// respMaxSweepIndex
+	public static final Field 	MAX_SWEEP_INDEX = new Field(0, 1);
+
+	// respSweepWriteResult
+	public static final Field 	SWEEP_WRITE_RESULT = new Field(0, 1);
+
+	// respSweepSections: one or more records, each laid out like a sweep definition
+	public static final int 	SWEEP_SECTION_LENGTH = 5;
+	public static final Field 	SWEEP_SECTION_INDEX = new Field(0, 1);
+	public static final Field 	SWEEP_SECTION_UPPER_EDGE = new Field(1, 2);
+	public static final Field 	SWEEP_SECTION_LOWER_EDGE = new Field(3, 2);
+
+	// infDisplayData
+	public static final Field 	DISPLAY_BOGEY_COUNTER_1 = new Field(0, 1);
+	public static final Field 	DISPLAY_BOGEY_COUNTER_2 = new Field(1, 1);
+	public static final Field 	DISPLAY_SIGNAL_STRENGTH = new Field(2, 1);
+	public static final Field 	DISPLAY_BAND_ARROW_1 = new Field(3, 1);
+	public static final Field 	DISPLAY_BAND_ARROW_2 = new Field(4, 1);
+	public static final Field 	DISPLAY_AUX_0 = new Field(5, 1);
+	public static final Field 	DISPLAY_AUX_1 = new Field(6, 1);
+	public static final Field 	DISPLAY_AUX_2 = new Field(7, 1);
+
+	// respAlertData
+	public static final Field 	ALERT_INDEX_AND_COUNT = new Field(0, 1);
+	public static final Field 	ALERT_FREQUENCY = new Field(1, 2);
+	public static final Field 	ALERT_FRONT_SIGNAL_STRENGTH = new Field(3, 1);
+	public static final Field 	ALERT_REAR_SIGNAL_STRENGTH = new Field(4, 1);
+	public static final Field 	ALERT_BAND_ARROW = new Field(5, 1);
+	public static final Field 	ALERT_AUX = new Field(6, 1);
+
+	// respBatteryVoltage
+	public static final Field 	BATTERY_VOLTAGE_INTEGER = new Field(0, 1);
+	public static final Field 	BATTERY_VOLTAGE_DECIMAL = new Field(1, 1);
+
+	// respUnsupportedPacket, respRequestNotProcessed and respDataError: the packet id the response is about
+	public static final Field 	UNSUPPORTED_PACKET_ID = new Field(0, 1);
+	public static final Field 	NOT_PROCESSED_PACKET_ID = new Field(0, 1);
+	public static final Field 	DATA_ERROR_PACKET_ID = new Field(0, 1);
+
+	// respSavvyStatus
+	public static final Field 	SAVVY_SPEED_THRESHOLD = new Field(0, 1);
+	public static final Field 	SAVVY_UNMUTE = new Field(1, 1);
+
+	// respVehicleSpeed
+	public static final Field 	VEHICLE_SPEED = new Field(0, 1);
+
+	// Minimum payload length for each packet id, indexed by the packet id byte. Ids without a layout accept any length.
+	private static final int [] 	m_minPayloadLength = new int[256];
+
+	static
+	{
+		mDefineLayouts();
+	}
+
+	private PacketLayout()
+	{
+	}
+
+	/**
+	 * Retrieve the smallest payload the library can decode for a packet id.
+	 *
+	 * @param packetId	The packet id byte.
+	 *
+	 * @return The minimum number of payload bytes, not counting the ESP checksum, or 0 if there is no minimum.
+	 */
+	public static int getMinPayloadLength(byte packetId)
+	{
+		return m_minPayloadLength[packetId & 0xFF];
+	}
+
+	/**
+	 * Determine if a payload is long enough to be decoded.
+	 *
+	 * @param packetId		The packet id byte.
+	 * @param payloadLength	The number of payload bytes, not counting the ESP checksum.
+	 *
+	 * @return true if the payload has all of the fields in the packet's layout, else false.
+	 */
+	public static boolean isPayloadLengthValid(byte packetId, int payloadLength)
+	{
+		return payloadLength >= m_minPayloadLength[packetId & 0xFF];
+	}
+
+	/**
+	 * Fills in the table. Each line is one packet from the specification and the fields its decoder reads.
+	 */
+	private static void mDefineLayouts()
+	{
+		// Version letter, major, '.', minor, two revision digits and the ECN. Decoded as a string of any length.
+		mDefine(PacketId.respVersion);
+		// Up to ten ASCII characters. Decoded as a string of any length.
+		mDefine(PacketId.respSerialNumber);
+		mDefine(PacketId.respUserBytes, USER_BYTE_0, USER_BYTE_1, USER_BYTE_2);
+		mDefine(PacketId.respSweepDefinition, SWEEP_INDEX, SWEEP_UPPER_EDGE, SWEEP_LOWER_EDGE);
+		mDefine(PacketId.respDefaultSweepDefinition, SWEEP_INDEX, SWEEP_UPPER_EDGE, SWEEP_LOWER_EDGE);
+		mDefine(PacketId.respMaxSweepIndex, MAX_SWEEP_INDEX);
+		mDefine(PacketId.respSweepWriteResult, SWEEP_WRITE_RESULT);
+		// At least the first record, which holds the number of sections
+		mDefine(PacketId.respSweepSections, SWEEP_SECTION_INDEX, SWEEP_SECTION_UPPER_EDGE, SWEEP_SECTION_LOWER_EDGE);
+		mDefine(PacketId.infDisplayData, DISPLAY_BOGEY_COUNTER_1, DISPLAY_BOGEY_COUNTER_2, DISPLAY_SIGNAL_STRENGTH, DISPLAY_BAND_ARROW_1,
+				DISPLAY_BAND_ARROW_2, DISPLAY_AUX_0, DISPLAY_AUX_1, DISPLAY_AUX_2);
+		mDefine(PacketId.respAlertData, ALERT_INDEX_AND_COUNT, ALERT_FREQUENCY, ALERT_FRONT_SIGNAL_STRENGTH, ALERT_REAR_SIGNAL_STRENGTH,
+				ALERT_BAND_ARROW, ALERT_AUX);
+		mDefine(PacketId.respBatteryVoltage, BATTERY_VOLTAGE_INTEGER, BATTERY_VOLTAGE_DECIMAL);
+		mDefine(PacketId.respUnsupportedPacket, UNSUPPORTED_PACKET_ID);
+		mDefine(PacketId.respRequestNotProcessed, NOT_PROCESSED_PACKET_ID);
+		// Zero or more packet ids the V1 is working on
+		mDefine(PacketId.infV1Busy);
+		mDefine(PacketId.respDataError, DATA_ERROR_PACKET_ID);
+		mDefine(PacketId.respSavvyStatus, SAVVY_SPEED_THRESHOLD, SAVVY_UNMUTE);
+		mDefine(PacketId.respVehicleSpeed, VEHICLE_SPEED);
+	}
+
+	private static void mDefine(PacketId packetId, Field... fields)
+	{
+		int minPayloadLength = 0;
+		for ( Field field : fields ){
+			minPayloadLength = Math.max(minPayloadLength, field.getEnd());
+		}
+		m_minPayloadLength[packetId.toByteValue() & 0xFF] = minPayloadLength;
+	}
+}
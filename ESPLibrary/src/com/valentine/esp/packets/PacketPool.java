@@ -0,0 +1,156 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.packets;
+
+import com.valentine.esp.constants.PacketId;
+import com.valentine.esp.factories.PacketRegistry;
+
+/**
+ * A bounded pool of the packets the V1 sends several times a second, InfDisplayData and ResponseAlertData. When the pool
+ * is enabled the decoders take these packets from the pool and ValentineESP returns them once every callback registered
+ * for the packet has returned. The payload array and the object decoded from the payload are reused along with the
+ * packet, so a steady stream of display and alert data does not allocate.
+ *
+ * Pooling is off by default because it changes who owns the packets. While it is on, a pooled packet and the object
+ * returned by its getResponseData() are only valid inside the callback they are passed to. A subscriber that needs to
+ * keep either one must copy it before returning, using {@link ESPPacket#copy()} for the packet or the copy constructors
+ * of InfDisplayInfoData and AlertData for the data. {@link ESPPacket#isPooled()} tells if a packet will be reused.
+ *
+ * The pool never blocks. If it is empty a new packet is built, and if it is full a released packet is left for the
+ * garbage collector.
+ */
+public final class PacketPool
+{
+	private static final int 				DEFAULT_CAPACITY = 16;
+
+	// The free packets for each pooled packet id, indexed by the packet id byte. Ids that are not pooled are null.
+	private static final ESPPacket [][] 	m_free = new ESPPacket[256][];
+	private static final int [] 			m_freeCount = new int[256];
+
+	private static volatile boolean 		m_enabled = false;
+	private static long 					m_createdCount;
+	private static long 					m_reusedCount;
+
+	static
+	{
+		m_free[PacketId.infDisplayData.toByteValue() & 0xFF] = new ESPPacket[DEFAULT_CAPACITY];
+		m_free[PacketId.respAlertData.toByteValue() & 0xFF] = new ESPPacket[DEFAULT_CAPACITY];
+	}
+
+	private PacketPool()
+	{
+	}
+
+	/**
+	 * Turns packet pooling on or off. Turning pooling off empties the pool. Packets that were handed out while pooling was
+	 * on are still reported as pooled, but they are not taken back.
+	 *
+	 * @param enabled	True to take pooled packet types from the pool, false to build a new packet every time.
+	 */
+	public static synchronized void setEnabled(boolean enabled)
+	{
+		m_enabled = enabled;
+		if ( !enabled ){
+			for ( int i = 0; i < m_free.length; i++ ){
+				if ( m_free[i] != null ){
+					for ( int j = 0; j < m_freeCount[i]; j++ ){
+						m_free[i][j] = null;
+					}
+					m_freeCount[i] = 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determine if packet pooling is on.
+	 *
+	 * @return True if pooled packet types are taken from the pool, else false.
+	 */
+	public static boolean isEnabled()
+	{
+		return m_enabled;
+	}
+
+	/**
+	 * Retrieve the number of pooled packets that had to be built because the pool was empty.
+	 *
+	 * @return The number of packets built by the pool since it was loaded.
+	 */
+	public static synchronized long getCreatedCount()
+	{
+		return m_createdCount;
+	}
+
+	/**
+	 * Retrieve the number of packets that were handed out again after being released.
+	 *
+	 * @return The number of packets reused by the pool since it was loaded.
+	 */
+	public static synchronized long getReusedCount()
+	{
+		return m_reusedCount;
+	}
+
+	/**
+	 * Returns a packet for the packet id byte passed in. Pooled packet types come from the pool when pooling is on, every
+	 * other packet is built by the {@link PacketRegistry}.
+	 *
+	 * @param packetId	The packet id byte.
+	 *
+	 * @return	The packet to fill in.
+	 */
+	static ESPPacket obtain(byte packetId)
+	{
+		int idx = packetId & 0xFF;
+		if ( !m_enabled || m_free[idx] == null ){
+			return PacketRegistry.createPacket(packetId);
+		}
+
+		ESPPacket packet = null;
+		synchronized ( PacketPool.class ){
+			if ( m_freeCount[idx] > 0 ){
+				m_freeCount[idx]--;
+				packet = m_free[idx][m_freeCount[idx]];
+				m_free[idx][m_freeCount[idx]] = null;
+				m_reusedCount++;
+			}
+			else{
+				m_createdCount++;
+			}
+		}
+
+		if ( packet == null ){
+			packet = PacketRegistry.createPacket(packetId);
+		}
+		packet.reuse();
+		return packet;
+	}
+
+	/**
+	 * Returns a packet to the pool once it has been dispatched. Packets that did not come from the pool, and packets that
+	 * were already released, are ignored, so this can be called for every packet that is done being processed.
+	 *
+	 * @param packet	The packet to release.
+	 */
+	public static void release(ESPPacket packet)
+	{
+		if ( packet == null || !packet.isPooled() || !m_enabled ){
+			return;
+		}
+
+		synchronized ( PacketPool.class ){
+			// The packet id is cleared when the packet is recycled, so look up the slot first
+			int idx = packet.packetIdentifier & 0xFF;
+			if ( packet.isInPool() || m_free[idx] == null || m_freeCount[idx] == m_free[idx].length ){
+				return;
+			}
+			packet.recycle();
+			m_free[idx][m_freeCount[idx]] = packet;
+			m_freeCount[idx]++;
+		}
+	}
+}
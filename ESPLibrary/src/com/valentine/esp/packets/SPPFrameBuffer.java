@@ -0,0 +1,387 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.packets;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.valentine.esp.constants.Devices;
+import com.valentine.esp.constants.ESPLibraryLogController;
+import com.valentine.esp.utilities.ESPLog;
+
+/**
+ * Primitive byte ring buffer used to frame the data received from a V1connection (SPP). Data is read from the
+ * Bluetooth input stream directly into the ring. Each read is indexed in a single pass that validates every frame in
+ * the read and records its boundaries, header fields and payload position. Packets are then built only for the valid
+ * frames, from the recorded fields, so the frame is not decoded or checked a second time. Code that
+ * only needs to look at or forward the frames can use an {@link SPPFrameView} instead of building packets. A partial
+ * frame at the end of a read stays where it is in the ring until the rest of it arrives.
+ *
+ * Bytes that are not part of a frame, such as the rest of a frame that failed validation, are skipped by scanning
+ * straight to the next delimiter. The ring never grows. When it is full, reading stops until the data already in the
+ * ring has been indexed. Every byte that is thrown away is counted, see {@link #getDiscardedCount()}.
+ *
+ * Positions are kept as ever increasing integers and are masked when the ring is indexed. The capacity must be
+ * a power of two. This class is not thread safe and is expected to be used by a single reader thread.
+ */
+public class SPPFrameBuffer
+{
+	private static final String 	LOG_TAG = "ValentineESP/SPPFrameBuffer";
+
+	/**
+	 * The default ring size. This is large enough to hold several full size ESP packets.
+	 */
+	public static final int 		DEFAULT_CAPACITY = 2048;
+
+	private final byte [] 			m_ring;
+	private final int 				m_mask;
+
+	private int 					m_head;			// Position of the oldest byte that is still needed
+	private int 					m_scan;			// Position of the next byte to be indexed
+	private int 					m_tail;			// Position the next byte read will be stored at
+	private int 					m_frameStart;	// Position of the leading delimiter of the current frame
+	private long 					m_discardedCount;
+
+	private final SPPFrameDecoder 	m_decoder = new SPPFrameDecoder();
+
+	/**
+	 * Creates a frame buffer with the default capacity.
+	 */
+	public SPPFrameBuffer()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a frame buffer with the capacity provided.
+	 *
+	 * @param capacity	The size of the ring in bytes. Must be a power of two.
+	 */
+	public SPPFrameBuffer(int capacity)
+	{
+		if ( capacity <= 0 || (capacity & (capacity - 1)) != 0 ){
+			throw new IllegalArgumentException("The SPPFrameBuffer capacity must be a power of two.");
+		}
+		m_ring = new byte[capacity];
+		m_mask = capacity - 1;
+		m_head = 0;
+		m_scan = 0;
+		m_tail = 0;
+		m_frameStart = 0;
+	}
+
+	/**
+	 * Retrieve the number of bytes that are held in the ring. This includes the frames from the last call to indexFrames
+	 * and the bytes that have not been indexed yet.
+	 *
+	 * @return The number of bytes in the ring.
+	 */
+	public int size()
+	{
+		return m_tail - m_head;
+	}
+
+	/**
+	 * Retrieve the total number of bytes the ring can hold.
+	 *
+	 * @return The capacity of the ring.
+	 */
+	public int capacity()
+	{
+		return m_ring.length;
+	}
+
+	/**
+	 * Retrieve the number of received bytes that have been thrown away because they were not part of a valid frame.
+	 * This includes the bytes between frames, the bytes of frames that failed validation and the bytes dropped when
+	 * the ring overflowed.
+	 *
+	 * @return The number of discarded bytes since the buffer was created.
+	 */
+	public long getDiscardedCount()
+	{
+		return m_discardedCount;
+	}
+
+	/**
+	 * Throws away all of the data in the ring.
+	 */
+	public void clear()
+	{
+		m_head = 0;
+		m_scan = 0;
+		m_tail = 0;
+		m_frameStart = 0;
+		m_decoder.reset();
+	}
+
+	/**
+	 * Reads the bytes that are available from the input stream directly into the ring. This method will not block if
+	 * there is no data available. If the ring fills up, the rest of the data is left in the stream for the next call.
+	 *
+	 * @param inputStream	The stream to read from.
+	 *
+	 * @return The number of bytes added to the ring.
+	 *
+	 * @throws IOException if the stream could not be read.
+	 */
+	public int readFrom(InputStream inputStream) throws IOException
+	{
+		mReleaseIndexedFrames();
+
+		int total = 0;
+		int available = inputStream.available();
+
+		while ( available > 0 ){
+			if ( size() == m_ring.length && !mMakeRoom() ){
+				// Index the data that is already in the ring before reading any more
+				break;
+			}
+
+			// Only read into the contiguous space between the tail and the end of the array or the head
+			int offset = m_tail & m_mask;
+			int count = Math.min(m_ring.length - size(), m_ring.length - offset);
+			count = Math.min(count, available);
+
+			int readSize = inputStream.read(m_ring, offset, count);
+			if ( readSize <= 0 ){
+				break;
+			}
+			m_tail += readSize;
+			total += readSize;
+			available -= readSize;
+		}
+
+		return total;
+	}
+
+	/**
+	 * Appends bytes to the ring. This is used when the data does not come from an InputStream. If the ring fills up, the
+	 * rest of the data is not added. Call indexFrames and then write the remaining bytes.
+	 *
+	 * @param data		The array containing the data to add.
+	 * @param offset	The index of the first byte to add.
+	 * @param length	The number of bytes to add.
+	 *
+	 * @return The number of bytes added to the ring.
+	 */
+	public int write(byte [] data, int offset, int length)
+	{
+		mReleaseIndexedFrames();
+
+		for ( int i = 0; i < length; i++ ){
+			if ( size() == m_ring.length && !mMakeRoom() ){
+				return i;
+			}
+			m_ring[m_tail & m_mask] = data[offset + i];
+			m_tail++;
+		}
+		return length;
+	}
+
+	/**
+	 * Indexes all of the bytes that have been added to the ring since the last call in a single pass. Every frame that
+	 * ends in those bytes is added to the index along with its validation status. No packets are built.
+	 *
+	 * The frames in the index stay in the ring, and can be passed to buildPacket, until more data is added to the ring or
+	 * this method is called again. A frame that is not complete yet is left in the ring and finished by a later call.
+	 *
+	 * @param index			The index to fill in. Any frames already in the index are removed.
+	 * @param lastV1Type	The type of the type of the V1, the last time we received data.
+	 *
+	 * @return The number of frames added to the index.
+	 */
+	public int indexFrames(SPPFrameIndex index, Devices lastV1Type)
+	{
+		index.clear();
+		mReleaseIndexedFrames();
+
+		while ( m_scan != m_tail ){
+			if ( m_decoder.isIdle() ){
+				// We are between frames so skip straight to the next delimiter
+				mSkipToDelimiter();
+				if ( m_scan == m_tail ){
+					break;
+				}
+			}
+
+			int pos = m_scan;
+			m_scan++;
+
+			int result = m_decoder.indexByte(m_ring[pos & m_mask], lastV1Type);
+			if ( result == SPPFrameDecoder.FRAME_NONE ){
+				continue;
+			}
+
+			if ( (result & SPPFrameDecoder.FRAME_VALID) != 0 ){
+				index.addValid(m_frameStart, pos, m_decoder);
+			}
+			else if ( (result & SPPFrameDecoder.FRAME_INVALID) != 0 ){
+				// If a new frame started at this byte the bad frame ended with the previous byte
+				int end = ((result & SPPFrameDecoder.FRAME_STARTED) != 0) ? pos - 1 : pos;
+				index.add(m_frameStart, end, false);
+				m_discardedCount += end - m_frameStart + 1;
+			}
+
+			if ( (result & SPPFrameDecoder.FRAME_STARTED) != 0 ){
+				m_frameStart = pos;
+			}
+		}
+
+		return index.size();
+	}
+
+	/**
+	 * Builds the packet for a frame found by the last call to indexFrames. The packet is filled in from the fields
+	 * indexFrames recorded, and only the payload bytes are read from the ring again.
+	 *
+	 * @param index			The index filled in by indexFrames.
+	 * @param frame			The index of the frame to build.
+	 * @param lastV1Type	The type of the type of the V1, the last time we received data. The frame keeps the V1 type
+	 * 						it was validated with.
+	 *
+	 * @return The packet or null if the frame is not valid or there is no packet class for its packet id.
+	 */
+	public ESPPacket buildPacket(SPPFrameIndex index, int frame, Devices lastV1Type)
+	{
+		if ( !index.isValid(frame) ){
+			return null;
+		}
+
+		byte packetId = index.getPacketId(frame);
+		ESPPacket packet = PacketPool.obtain(packetId);
+		if ( packet == null ) {
+			if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+				ESPLog.e(LOG_TAG, "Unable to generate packet for packet id (" + String.format("%02X ", packetId) + ")");
+			}
+			return null;
+		}
+
+		Devices v1Type = index.getV1Type(frame);
+		SPPFrameDecoder.fillHeader(packet, index.getPacketLength(frame), index.getDestination(frame), index.getOrigin(frame), packetId, v1Type);
+
+		int payloadLength = index.getPayloadLength(frame);
+		packet.payloadLength = (byte) payloadLength;
+		if ( payloadLength > 0 ){
+			packet.allocatePayload(payloadLength);
+			mCopyPayload(index.getPayloadStart(frame), packet.payloadData, payloadLength);
+		}
+
+		packet.checkSum = index.getChecksum(frame);
+		packet.endOfFrame = ESPPacket.endOfFrameConstant;
+		packet.packetChecksum = index.getPacketChecksum(frame);
+		packet.endDelimter = ESPPacket.frameDelimitedConstant;
+		return packet;
+	}
+
+	/**
+	 * Points a view at a frame found by the last call to indexFrames, without building a packet or copying the frame.
+	 * The view is only valid until more data is added to the ring.
+	 *
+	 * @param index			The index filled in by indexFrames.
+	 * @param frame			The index of the frame to view.
+	 * @param lastV1Type	The type of the type of the V1, the last time we received data.
+	 * @param view			The view to point at the frame.
+	 *
+	 * @return true if the view now points at the frame, false if the frame is not valid.
+	 */
+	public boolean getView(SPPFrameIndex index, int frame, Devices lastV1Type, SPPFrameView view)
+	{
+		if ( !index.isValid(frame) ){
+			return false;
+		}
+
+		view.set(m_ring, m_mask, index.getStart(frame), index.getEnd(frame), lastV1Type);
+		return true;
+	}
+
+	/**
+	 * Copies a payload that has already been validated out of the ring, removing the escape bytes.
+	 *
+	 * @param pos		The ring position of the first raw payload byte.
+	 * @param dest		The array to copy the payload into.
+	 * @param length	The number of payload bytes after the escapes are removed.
+	 */
+	private void mCopyPayload(int pos, byte [] dest, int length)
+	{
+		// Remove the escapes the same way SPPFrameDecoder does
+		boolean escapeNext = false;
+		int i = 0;
+		while ( i < length ){
+			byte curByte = m_ring[pos & m_mask];
+			pos++;
+			if ( curByte == ESPPacket.frameDataEscapeConstant ){
+				escapeNext = true;
+				continue;
+			}
+			if ( escapeNext ){
+				escapeNext = false;
+				if (curByte == (byte)0x5D){
+					curByte = (byte)0x7D;
+				}
+				else if (curByte == (byte)0x5F){
+					curByte = (byte)0x7F;
+				}
+			}
+			dest[i] = curByte;
+			i++;
+		}
+	}
+
+	/**
+	 * Advances the scan position to the next frame delimiter, counting the bytes that are skipped.
+	 */
+	private void mSkipToDelimiter()
+	{
+		int start = m_scan;
+		while ( m_scan != m_tail && m_ring[m_scan & m_mask] != ESPPacket.frameDelimitedConstant ){
+			m_scan++;
+		}
+
+		if ( m_scan != start ){
+			m_discardedCount += m_scan - start;
+			if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+				ESPLog.e(LOG_TAG, "Skipping " + (m_scan - start) + " bytes because they are not part of a frame");
+			}
+		}
+	}
+
+	/**
+	 * Called when the ring is full. If there is data that has not been indexed yet nothing is done, because indexing it
+	 * will free up space. Otherwise the ring only holds the current partial frame, which is longer than any valid frame,
+	 * so it is thrown away.
+	 *
+	 * @return true if there is now room in the ring, else false.
+	 */
+	private boolean mMakeRoom()
+	{
+		if ( m_scan != m_tail ){
+			return false;
+		}
+
+		if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+			ESPLog.e(LOG_TAG, "Discarding " + size() + " unframed bytes because the receive buffer is full");
+		}
+		m_discardedCount += size();
+		clear();
+		return true;
+	}
+
+	/**
+	 * Releases the space used by the frames that have already been indexed. Only the current partial frame and the
+	 * bytes that have not been indexed yet are kept.
+	 */
+	private void mReleaseIndexedFrames()
+	{
+		m_head = m_decoder.isIdle() ? m_scan : m_frameStart;
+		if ( m_head == m_tail ){
+			// All of the data has been used so start over at the beginning of the ring
+			m_head = 0;
+			m_scan = 0;
+			m_tail = 0;
+		}
+	}
+}
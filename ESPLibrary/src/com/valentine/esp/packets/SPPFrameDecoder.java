@@ -0,0 +1,613 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.packets;
+
+import com.valentine.esp.constants.Devices;
+import com.valentine.esp.constants.ESPLibraryLogController;
+import com.valentine.esp.constants.PacketId;
+import com.valentine.esp.utilities.ESPLog;
+
+/**
+ * Incremental decoder for the 0x7F delimited frames sent by a V1connection (SPP). The decoder is fed one received
+ * byte at a time and keeps the process state, the partial checksums and the payload position between calls, so a
+ * frame that is split across several socket reads is never scanned more than once.
+ *
+ * Bytes can either be run through {@link #processByte(byte, Devices)}, which builds the {@link ESPPacket} while the
+ * frame is decoded, or through {@link #indexByte(byte, Devices)}, which only validates the frame and reports where
+ * frames start and end without allocating anything. After indexByte reports a valid frame, the header fields, checksums
+ * and payload position of that frame can be read from the decoder until the next frame starts, so the packet can be
+ * built later without running the frame through the decoder again.
+ *
+ * This class is not thread safe and is expected to be used by a single reader thread.
+ */
+public class SPPFrameDecoder
+{
+	private static final String 	LOG_TAG = "ValentineESP/SPPFrameDecoder";
+
+	/**
+	 * Returned by indexByte when the byte did not start or end a frame.
+	 */
+	public static final int 		FRAME_NONE = 0;
+	/**
+	 * Set in the value returned by indexByte when the byte is the leading delimiter of a new frame.
+	 */
+	public static final int 		FRAME_STARTED = 0x01;
+	/**
+	 * Set in the value returned by indexByte when the byte is the trailing delimiter of a valid frame.
+	 */
+	public static final int 		FRAME_VALID = 0x02;
+	/**
+	 * Set in the value returned by indexByte when the current frame is not valid. If FRAME_STARTED is also set, the
+	 * frame ended with the byte before this one, otherwise the frame ended with this byte.
+	 */
+	public static final int 		FRAME_INVALID = 0x04;
+
+	private ESPPacket.ProcessState 	m_state = ESPPacket.ProcessState.START_PACK_BYTE;
+	private boolean 				m_escapeNext = false;
+
+	// Store these values until we have a packet to put them into
+	private byte 					m_tempLength;
+	private byte 					m_tempDest;
+	private byte 					m_tempOrigin;
+	private Devices 				m_tempV1Type;
+	private byte 					m_tempPacketId;
+	private int 					m_tempPayloadLength;
+	private byte 					m_packetChecksum;
+	private byte 					m_espChecksum;
+	private byte 					m_receivedChecksum;
+
+	private ESPPacket 				m_packet;
+	private int 					m_payloadIdx;
+	private int 					m_skippedCount;
+	// Raw bytes received since the leading delimiter, and the raw offset of the first payload byte
+	private int 					m_rawCount;
+	private int 					m_payloadOffset;
+
+	/**
+	 * Throws away any partially decoded frame and waits for the next frame delimiter.
+	 */
+	public void reset()
+	{
+		m_state = ESPPacket.ProcessState.START_PACK_BYTE;
+		m_escapeNext = false;
+		m_packet = null;
+		m_skippedCount = 0;
+	}
+
+	/**
+	 * Determine if the decoder is between frames.
+	 *
+	 * @return true if the decoder is not in the middle of a frame, else false.
+	 */
+	public boolean isIdle()
+	{
+		return m_state == ESPPacket.ProcessState.START_PACK_BYTE;
+	}
+
+	/**
+	 * Processes the next byte received from the V1connection and builds the packet as the frame is decoded.
+	 *
+	 * @param rawByte		The byte exactly as it was received, including escape bytes and delimiters.
+	 * @param lastV1Type	The type of the type of the V1, the last time we received data.
+	 *
+	 * @return The packet completed by this byte or null if the byte did not complete a valid packet.
+	 */
+	public ESPPacket processByte(byte rawByte, Devices lastV1Type)
+	{
+		if ( (mStep(rawByte, lastV1Type, true) & FRAME_VALID) == 0 ){
+			return null;
+		}
+
+		ESPPacket retPacket = m_packet;
+		m_packet = null;
+		return retPacket;
+	}
+
+	/**
+	 * Validates the next byte received from the V1connection without building a packet.
+	 *
+	 * @param rawByte		The byte exactly as it was received, including escape bytes and delimiters.
+	 * @param lastV1Type	The type of the type of the V1, the last time we received data.
+	 *
+	 * @return FRAME_NONE or a combination of FRAME_STARTED, FRAME_VALID and FRAME_INVALID describing the frame
+	 * boundaries found at this byte.
+	 */
+	public int indexByte(byte rawByte, Devices lastV1Type)
+	{
+		return mStep(rawByte, lastV1Type, false);
+	}
+
+	/**
+	 * Retrieve the packet length byte of the frame indexByte last reported as valid.
+	 *
+	 * @return The packet length byte.
+	 */
+	byte getFrameLength()
+	{
+		return m_tempLength;
+	}
+
+	/**
+	 * Retrieve the destination byte of the frame indexByte last reported as valid.
+	 *
+	 * @return The destination byte, including the upper nibble.
+	 */
+	byte getFrameDestination()
+	{
+		return m_tempDest;
+	}
+
+	/**
+	 * Retrieve the origin of the frame indexByte last reported as valid.
+	 *
+	 * @return The origin, without the upper nibble.
+	 */
+	byte getFrameOrigin()
+	{
+		return m_tempOrigin;
+	}
+
+	/**
+	 * Retrieve the packet id of the frame indexByte last reported as valid.
+	 *
+	 * @return The packet id byte.
+	 */
+	byte getFramePacketId()
+	{
+		return m_tempPacketId;
+	}
+
+	/**
+	 * Retrieve the V1 type the frame indexByte last reported as valid was decoded with.
+	 *
+	 * @return The V1 type.
+	 */
+	Devices getFrameV1Type()
+	{
+		return m_tempV1Type;
+	}
+
+	/**
+	 * Retrieve the payload length of the frame indexByte last reported as valid, not counting the ESP checksum.
+	 *
+	 * @return The number of payload bytes.
+	 */
+	int getFramePayloadLength()
+	{
+		return m_tempPayloadLength;
+	}
+
+	/**
+	 * Retrieve where the payload of the frame indexByte last reported as valid starts.
+	 *
+	 * @return The number of raw bytes, escapes included, from the leading delimiter to the first payload byte.
+	 */
+	int getFramePayloadOffset()
+	{
+		return m_payloadOffset;
+	}
+
+	/**
+	 * Retrieve the ESP checksum of the frame indexByte last reported as valid.
+	 *
+	 * @return The ESP checksum, or 0 if the frame did not have one.
+	 */
+	byte getFrameChecksum()
+	{
+		return m_receivedChecksum;
+	}
+
+	/**
+	 * Retrieve the packet checksum of the frame indexByte last reported as valid.
+	 *
+	 * @return The packet checksum.
+	 */
+	byte getFramePacketChecksum()
+	{
+		return m_packetChecksum;
+	}
+
+	/**
+	 * Fills in the header fields of a packet from a frame that has passed validation.
+	 *
+	 * @param packet		The packet to fill in.
+	 * @param length		The packet length byte.
+	 * @param destination	The destination byte, including the upper nibble.
+	 * @param origin		The origin, without the upper nibble.
+	 * @param packetId		The packet id byte.
+	 * @param v1Type		The V1 type the frame was decoded with.
+	 */
+	static void fillHeader(ESPPacket packet, byte length, byte destination, byte origin, byte packetId, Devices v1Type)
+	{
+		packet.headerDelimter = ESPPacket.frameDelimitedConstant;  //<- We can't get here if this wasn't true
+		packet.packetLength = length;
+
+		packet.startOfFrame = ESPPacket.startOfFrameConstant;   //<- We can't get here if this wasn't true
+		packet.destinationIdentifier = destination;
+		// Don't store the upper nibble of the destinations
+		packet.m_destination = (byte)(destination - ESPPacket.destinationIdentifierBaseConstant);
+		packet.originatorIdentifier = origin;
+		packet.packetIdentifier = packetId;
+		packet.m_valentineType = v1Type;
+	}
+
+	/**
+	 * Runs the next received byte through the decoder.
+	 *
+	 * @param rawByte		The byte exactly as it was received, including escape bytes and delimiters.
+	 * @param lastV1Type	The type of the type of the V1, the last time we received data.
+	 * @param createPacket	If true the packet is built while the frame is decoded.
+	 *
+	 * @return The frame boundaries found at this byte. See indexByte.
+	 */
+	private int mStep(byte rawByte, Devices lastV1Type, boolean createPacket)
+	{
+		if ( rawByte == ESPPacket.frameDelimitedConstant ){
+			if ( m_state == ESPPacket.ProcessState.END_PACK_BYTE ){
+				// This is the trailing delimiter for the current frame
+				m_state = ESPPacket.ProcessState.START_PACK_BYTE;
+
+				if ( m_packet != null ){
+					m_packet.endDelimter = rawByte;
+					// Force the ESPPacket checksum to zero if the V1 does not support checksums before returning the packet.
+					if ((m_packet.getV1Type() == Devices.VALENTINE1_LEGACY) || (m_packet.getV1Type() == Devices.VALENTINE1_WITHOUT_CHECKSUM)) {
+						m_packet.checkSum = 0;
+					}
+				}
+				return FRAME_VALID;
+			}
+
+			int result = FRAME_STARTED;
+			if ( m_state != ESPPacket.ProcessState.START_PACK_BYTE && m_state != ESPPacket.ProcessState.PACKET_LENGTH ){
+				// A delimiter in the middle of a frame means the frame was truncated.
+				if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+					ESPLog.e(LOG_TAG, "Found 0x7F in the middle of a frame while expecting " + m_state.toString());
+				}
+				result |= FRAME_INVALID;
+			}
+			else if ( m_skippedCount != 0 ){
+				if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+					ESPLog.e(LOG_TAG, "Skipping " + m_skippedCount + " bytes because there was no delimiter at the start of the frame");
+				}
+			}
+
+			// Every delimiter that does not end a frame starts a new one. Two delimiters together are expected to happen
+			// during startup when we can receive the end of one packet followed by a valid packet.
+			mStartFrame();
+			return result;
+		}
+
+		if ( m_state == ESPPacket.ProcessState.START_PACK_BYTE ){
+			// We are between frames or dropping the rest of a bad frame
+			m_skippedCount++;
+			return FRAME_NONE;
+		}
+		m_rawCount++;
+
+		if ( rawByte == ESPPacket.frameDataEscapeConstant ){
+			// Check the next byte to see if it should be turned into an 0x7F or 0x7D
+			m_escapeNext = true;
+			return FRAME_NONE;
+		}
+
+		byte curByte = rawByte;
+		if ( m_escapeNext ){
+			m_escapeNext = false;
+			if (curByte == (byte)0x5D){
+				// If we find 0x5D after the delimiter, turn it into an 0x7D
+				curByte = (byte)0x7D;
+			}
+			else if (curByte == (byte)0x5F){
+				// If we find 0x5F after the delimiter, turn it into an 0x7F
+				curByte = (byte)0x7F;
+			}
+		}
+
+		if ( !mProcessFrameByte(curByte, lastV1Type, createPacket) ){
+			// Drop the rest of the frame and wait for the next delimiter
+			m_packet = null;
+			m_state = ESPPacket.ProcessState.START_PACK_BYTE;
+			m_skippedCount = 0;
+			return FRAME_INVALID;
+		}
+		return FRAME_NONE;
+	}
+
+	/**
+	 * Resets the per frame state after a leading delimiter has been received.
+	 */
+	private void mStartFrame()
+	{
+		m_state = ESPPacket.ProcessState.PACKET_LENGTH;
+		m_escapeNext = false;
+		m_packet = null;
+		m_payloadIdx = 0;
+		m_tempLength = 0;
+		m_tempDest = 0;
+		m_tempOrigin = 0;
+		m_tempV1Type = null;
+		m_tempPayloadLength = 0;
+		m_packetChecksum = 0;
+		m_espChecksum = 0;
+		m_receivedChecksum = 0;
+		m_skippedCount = 0;
+		m_rawCount = 0;
+		m_payloadOffset = 0;
+	}
+
+	/**
+	 * Runs a single unescaped byte through the SPP frame state machine.
+	 *
+	 * @param curByte		The unescaped byte.
+	 * @param lastV1Type	The type of the type of the V1, the last time we received data.
+	 * @param createPacket	If true the packet is built and filled in as the frame is decoded.
+	 *
+	 * @return false if the byte is not valid for the current state, else true.
+	 */
+	private boolean mProcessFrameByte(byte curByte, Devices lastV1Type, boolean createPacket)
+	{
+		boolean dataError = false;
+
+		switch (m_state){
+			case PACKET_LENGTH:
+				m_tempLength = curByte;
+
+				// Update the checksum
+				m_packetChecksum += curByte;
+				m_state = ESPPacket.ProcessState.SOF;
+				break;
+
+			case SOF:
+				if ( curByte != ESPPacket.startOfFrameConstant ) {
+					// Bad data so let's bail
+					dataError = true;
+					if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+						ESPLog.e(LOG_TAG, "Missing SOF at the expected position");
+					}
+				}
+
+				// Update the checksum
+				m_packetChecksum += curByte;
+				m_espChecksum += curByte;
+				m_state = ESPPacket.ProcessState.DESTINATION;
+				break;
+
+			case DESTINATION:
+				if ( (curByte & ESPPacket.destinationIdentifierBaseConstant) != ESPPacket.destinationIdentifierBaseConstant ) {
+					// This is not a valid destination
+					dataError = true;
+					if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+						ESPLog.e(LOG_TAG, "Invalid destination ID (" + String.format("%02X ",curByte) + ")");
+					}
+				}
+
+				m_tempDest = curByte;
+
+				// Update the checksum
+				m_packetChecksum += curByte;
+				m_espChecksum += curByte;
+				m_state = ESPPacket.ProcessState.ORIGINATOR;
+				break;
+
+			case ORIGINATOR:
+				if ( (curByte & ESPPacket.originationIdentifierBaseConstant) != ESPPacket.originationIdentifierBaseConstant ) {
+					// This is not a valid originator
+					dataError = true;
+					if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+						ESPLog.e(LOG_TAG, "Invalid originator ID (" + String.format("%02X ",curByte) + ")");
+					}
+				}
+
+				// Don't store the upper nibble of the origin
+				m_tempOrigin = (byte)(curByte - ESPPacket.originationIdentifierBaseConstant);
+
+				// Update the checksum
+				m_packetChecksum += curByte;
+				m_espChecksum += curByte;
+				m_state = ESPPacket.ProcessState.PACKET_ID;
+				break;
+
+			case PACKET_ID:
+				// If the packet is from a V1 set the ESPPacket V1 type to the appropriate Device type.
+				if(ESPPacket.isPacketFromV1(m_tempOrigin)) {
+					m_tempV1Type = Devices.fromByteValue(m_tempOrigin);
+				}
+				else {
+					m_tempV1Type = lastV1Type;
+				}
+				// If the last known V1 type is unknown check to see if the ESPPacket is V1connection version response.
+				if ( m_tempV1Type == Devices.UNKNOWN ) {
+					if ( curByte != PacketId.respVersion.toByteValue() || m_tempOrigin != Devices.V1CONNECT.toByteValue() ){
+						// Always allow the V1connection version responses to pass through
+						// Don't process any other data until we know what type of V1 we are working with
+						dataError = true;
+						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+							ESPLog.e(LOG_TAG, "Ignore packet id 0x" + String.format("%02X ",curByte) + " because the V1 type is unknown");
+						}
+					}
+				}
+
+				m_tempPacketId = curByte;
+				if ( createPacket && !dataError ){
+					// Make the packet
+					m_packet = PacketPool.obtain(curByte);
+					if ( m_packet == null ) {
+						// We couldn't build the packet so stop trying
+						dataError = true;
+						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+							ESPLog.e(LOG_TAG, "Unable to generate packet for packet id (" + String.format("%02X ",curByte) + ")");
+						}
+					}
+					else{
+						// We have a good packet so fill it up
+						fillHeader(m_packet, m_tempLength, m_tempDest, m_tempOrigin, curByte, m_tempV1Type);
+					}
+				}
+
+				// Update the checksum
+				m_packetChecksum += curByte;
+				m_espChecksum += curByte;
+				m_state = ESPPacket.ProcessState.PAYLOAD_LENGTH;
+				break;
+
+			case PAYLOAD_LENGTH:
+				if(curByte != 0) {
+					byte tmp;
+					if ((m_tempV1Type == Devices.VALENTINE1_LEGACY) || (m_tempV1Type == Devices.VALENTINE1_WITHOUT_CHECKSUM))
+					{
+						tmp = curByte;
+					}
+					else
+					{
+						// If this packet is from a V1 that supports checksum, we want to decrement the payload length by 1
+						// to make packet match packets from Legacy and non-checksum V1's
+						tmp = (byte) (curByte - 1);
+					}
+					m_tempPayloadLength = tmp;
+					if ( m_packet != null ){
+						m_packet.payloadLength = tmp;
+					}
+					// If payloadLength is zero, then the next byte in the buffer will be the packet checksum. For non-checksum V1 devices
+					// the payloadLength is greater than zero so the next byte will be payload data.
+					if(m_tempPayloadLength == 0 && PacketLayout.isPayloadLengthValid(m_tempPacketId, 0)) {
+						m_state = ESPPacket.ProcessState.PACKET_CHEKSUM;
+					}
+					else if (m_tempPayloadLength < 0) {
+						// The payload length can not be represented by this packet
+						dataError = true;
+						if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+							ESPLog.e(LOG_TAG, "Invalid payload length (" + String.format("%02X ",curByte) + ")");
+						}
+					}
+					else if ( !PacketLayout.isPayloadLengthValid(m_tempPacketId, m_tempPayloadLength) ){
+						// The payload is too short to decode
+						dataError = true;
+						mLogShortPayload(m_tempPayloadLength);
+					}
+					else {
+						if ( m_packet != null ){
+							m_packet.allocatePayload(m_tempPayloadLength);
+						}
+						m_payloadIdx = 0;
+						// The payload starts with the next raw byte
+						m_payloadOffset = m_rawCount + 1;
+						m_state = ESPPacket.ProcessState.PAYLOAD;
+					}
+					// Always include the payload length in the packet data.
+					m_espChecksum += curByte;
+					// Update the PACKET checksum
+					m_packetChecksum += curByte;
+				}
+				else if ( !PacketLayout.isPayloadLengthValid(m_tempPacketId, 0) ){
+					dataError = true;
+					mLogShortPayload(0);
+				}
+				else {
+					// There is no payload data so go to the end of frame.
+					m_state = ESPPacket.ProcessState.EOF;
+				}
+				break;
+
+			case PAYLOAD:
+				if ( m_packet != null ){
+					m_packet.payloadData[m_payloadIdx] = curByte;
+				}
+				m_payloadIdx ++;
+				// Update the ESP checksum.
+				m_espChecksum += curByte;
+				// Update the PACKET checksum
+				m_packetChecksum += curByte;
+				// If we have reached the end of the payload data, handle checking the checksum.
+				if (m_payloadIdx == m_tempPayloadLength) {
+					if ((m_tempV1Type == Devices.VALENTINE1_LEGACY) || (m_tempV1Type == Devices.VALENTINE1_WITHOUT_CHECKSUM)) {
+						// Get the EOF byte next
+						m_state = ESPPacket.ProcessState.EOF;
+					}
+					else {
+						m_state = ESPPacket.ProcessState.PACKET_CHEKSUM;
+					}
+				}
+				break;
+
+			case PACKET_CHEKSUM:
+				// If the calculated checksum does not equal the checksum byte, an error has occurred.
+				if ( m_espChecksum != curByte ){
+					// The checksum does not match
+					dataError = true;
+					if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+						ESPLog.e(LOG_TAG, "Bad ESP checksum. Expected 0x" + String.format("%02X ", m_espChecksum) + " but found 0x" + String.format("%02X ",curByte) );
+					}
+				}
+				// Store the checksum
+				m_packetChecksum += curByte;
+				m_receivedChecksum = curByte;
+				if ( m_packet != null ){
+					m_packet.checkSum = curByte;
+				}
+				// Get the EOF byte next
+				m_state = ESPPacket.ProcessState.EOF;
+				break;
+
+			case EOF:
+				if ( curByte != ESPPacket.endOfFrameConstant ) {
+					// Bad data so let's bail
+					dataError = true;
+					if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+						ESPLog.e(LOG_TAG, "Unable to find EOF at the expected position");
+					}
+				}
+				if ( m_packet != null ){
+					m_packet.endOfFrame = curByte;
+				}
+				// Update the packet checksum
+				m_packetChecksum += curByte;
+				m_state = ESPPacket.ProcessState.BT_CHECKSUM;
+				break;
+
+			case BT_CHECKSUM:
+				if ( m_packetChecksum != curByte ) {
+					// We are missing something
+					dataError = true;
+					if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+						ESPLog.e(LOG_TAG, "Bad packet checksum. Expected 0x" + String.format("%02X ",m_packetChecksum) + " but found 0x" + String.format("%02X ",curByte) );
+					}
+				}
+				if ( m_packet != null ){
+					m_packet.packetChecksum = curByte;
+				}
+				m_state = ESPPacket.ProcessState.END_PACK_BYTE;
+				break;
+
+			case END_PACK_BYTE:
+				// We should be at the end of the data by now
+				dataError = true;
+				if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+					ESPLog.e(LOG_TAG, "Missing 0x7F at the end of the frame");
+				}
+				break;
+
+			case START_PACK_BYTE:
+			default:
+				// We should never get here, so something went wrong
+				dataError = true;
+				break;
+		}
+
+		return !dataError;
+	}
+
+	/**
+	 * Logs a payload that is too short for the packet's layout.
+	 *
+	 * @param payloadLength	The payload length from the frame.
+	 */
+	private void mLogShortPayload(int payloadLength)
+	{
+		if(ESPLibraryLogController.LOG_WRITE_ERROR) {
+			ESPLog.e(LOG_TAG, "Payload length " + payloadLength + " is too short for packet id 0x" + String.format("%02X ", m_tempPacketId));
+		}
+	}
+}
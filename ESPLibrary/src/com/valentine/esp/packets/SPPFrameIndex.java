@@ -0,0 +1,253 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.packets;
+
+import com.valentine.esp.constants.Devices;
+
+/**
+ * The frame boundaries and validation status found by {@link SPPFrameBuffer#indexFrames(SPPFrameIndex, com.valentine.esp.constants.Devices)}.
+ * Each entry holds the ring positions of the first and last byte of a frame. For a valid frame it also holds the header
+ * fields, checksums and payload position found while the frame was validated, so the packet can be built without
+ * decoding the frame a second time. Positions are only meaningful to the SPPFrameBuffer that filled in the index.
+ *
+ * The index is meant to be reused for every read, so the arrays only grow when a burst contains more frames than
+ * any burst before it.
+ */
+public class SPPFrameIndex
+{
+	private static final int 	DEFAULT_CAPACITY = 16;
+
+	private int [] 				m_starts;
+	private int [] 				m_ends;
+	private boolean [] 			m_valid;
+	// For valid frames: the packet length, destination, origin and packet id bytes packed from the low byte up
+	private int [] 				m_headers;
+	// For valid frames: the ESP checksum in the low byte and the packet checksum in the next byte
+	private int [] 				m_checksums;
+	private int [] 				m_payloadStarts;
+	private int [] 				m_payloadLengths;
+	private Devices [] 			m_v1Types;
+	private int 				m_count;
+
+	/**
+	 * Creates an empty frame index.
+	 */
+	public SPPFrameIndex()
+	{
+		m_starts = new int[DEFAULT_CAPACITY];
+		m_ends = new int[DEFAULT_CAPACITY];
+		m_valid = new boolean[DEFAULT_CAPACITY];
+		m_headers = new int[DEFAULT_CAPACITY];
+		m_checksums = new int[DEFAULT_CAPACITY];
+		m_payloadStarts = new int[DEFAULT_CAPACITY];
+		m_payloadLengths = new int[DEFAULT_CAPACITY];
+		m_v1Types = new Devices[DEFAULT_CAPACITY];
+		m_count = 0;
+	}
+
+	/**
+	 * Retrieve the number of frames in the index.
+	 *
+	 * @return The number of frames.
+	 */
+	public int size()
+	{
+		return m_count;
+	}
+
+	/**
+	 * Retrieve the position of the leading delimiter of a frame.
+	 *
+	 * @param frame	The index of the frame.
+	 *
+	 * @return The ring position of the first byte of the frame.
+	 */
+	public int getStart(int frame)
+	{
+		return m_starts[frame];
+	}
+
+	/**
+	 * Retrieve the position of the last byte of a frame. For a valid frame this is the trailing delimiter.
+	 *
+	 * @param frame	The index of the frame.
+	 *
+	 * @return The ring position of the last byte of the frame.
+	 */
+	public int getEnd(int frame)
+	{
+		return m_ends[frame];
+	}
+
+	/**
+	 * Determine if a frame passed validation.
+	 *
+	 * @param frame	The index of the frame.
+	 *
+	 * @return true if the frame is a complete ESP packet with good checksums, else false.
+	 */
+	public boolean isValid(int frame)
+	{
+		return m_valid[frame];
+	}
+
+	/**
+	 * Retrieve the number of valid frames in the index.
+	 *
+	 * @return The number of frames that passed validation.
+	 */
+	public int getValidCount()
+	{
+		int count = 0;
+		for ( int i = 0; i < m_count; i++ ){
+			if ( m_valid[i] ){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Retrieve the packet length byte of a valid frame.
+	 */
+	byte getPacketLength(int frame)
+	{
+		return (byte) m_headers[frame];
+	}
+
+	/**
+	 * Retrieve the destination byte of a valid frame, including the upper nibble.
+	 */
+	byte getDestination(int frame)
+	{
+		return (byte) (m_headers[frame] >> 8);
+	}
+
+	/**
+	 * Retrieve the origin of a valid frame, without the upper nibble.
+	 */
+	byte getOrigin(int frame)
+	{
+		return (byte) (m_headers[frame] >> 16);
+	}
+
+	/**
+	 * Retrieve the packet id of a valid frame.
+	 */
+	byte getPacketId(int frame)
+	{
+		return (byte) (m_headers[frame] >> 24);
+	}
+
+	/**
+	 * Retrieve the ESP checksum of a valid frame, or 0 if the V1 does not send checksums.
+	 */
+	byte getChecksum(int frame)
+	{
+		return (byte) m_checksums[frame];
+	}
+
+	/**
+	 * Retrieve the packet checksum of a valid frame.
+	 */
+	byte getPacketChecksum(int frame)
+	{
+		return (byte) (m_checksums[frame] >> 8);
+	}
+
+	/**
+	 * Retrieve the ring position of the first raw payload byte of a valid frame.
+	 */
+	int getPayloadStart(int frame)
+	{
+		return m_payloadStarts[frame];
+	}
+
+	/**
+	 * Retrieve the number of payload bytes in a valid frame, after escapes are removed and not counting the ESP checksum.
+	 */
+	int getPayloadLength(int frame)
+	{
+		return m_payloadLengths[frame];
+	}
+
+	/**
+	 * Retrieve the V1 type a valid frame was decoded with.
+	 */
+	Devices getV1Type(int frame)
+	{
+		return m_v1Types[frame];
+	}
+
+	/**
+	 * Removes all of the frames from the index.
+	 */
+	public void clear()
+	{
+		m_count = 0;
+	}
+
+	/**
+	 * Adds a frame to the end of the index.
+	 *
+	 * @param start	The ring position of the first byte of the frame.
+	 * @param end	The ring position of the last byte of the frame.
+	 * @param valid	true if the frame passed validation.
+	 */
+	void add(int start, int end, boolean valid)
+	{
+		if ( m_count == m_starts.length ){
+			int newCapacity = m_starts.length * 2;
+			m_starts = mGrow(m_starts, newCapacity);
+			m_ends = mGrow(m_ends, newCapacity);
+			m_headers = mGrow(m_headers, newCapacity);
+			m_checksums = mGrow(m_checksums, newCapacity);
+			m_payloadStarts = mGrow(m_payloadStarts, newCapacity);
+			m_payloadLengths = mGrow(m_payloadLengths, newCapacity);
+
+			boolean [] valids = new boolean[newCapacity];
+			System.arraycopy(m_valid, 0, valids, 0, m_count);
+			m_valid = valids;
+
+			Devices [] v1Types = new Devices[newCapacity];
+			System.arraycopy(m_v1Types, 0, v1Types, 0, m_count);
+			m_v1Types = v1Types;
+		}
+
+		m_starts[m_count] = start;
+		m_ends[m_count] = end;
+		m_valid[m_count] = valid;
+		m_v1Types[m_count] = null;
+		m_count++;
+	}
+
+	/**
+	 * Adds a valid frame to the end of the index, along with the fields the decoder found while validating it.
+	 *
+	 * @param start		The ring position of the first byte of the frame.
+	 * @param end		The ring position of the last byte of the frame.
+	 * @param decoder	The decoder that just reported the frame as valid.
+	 */
+	void addValid(int start, int end, SPPFrameDecoder decoder)
+	{
+		add(start, end, true);
+
+		int frame = m_count - 1;
+		m_headers[frame] = (decoder.getFrameLength() & 0xFF) | ((decoder.getFrameDestination() & 0xFF) << 8)
+				| ((decoder.getFrameOrigin() & 0xFF) << 16) | ((decoder.getFramePacketId() & 0xFF) << 24);
+		m_checksums[frame] = (decoder.getFrameChecksum() & 0xFF) | ((decoder.getFramePacketChecksum() & 0xFF) << 8);
+		m_payloadStarts[frame] = start + decoder.getFramePayloadOffset();
+		m_payloadLengths[frame] = decoder.getFramePayloadLength();
+		m_v1Types[frame] = decoder.getFrameV1Type();
+	}
+
+	private int [] mGrow(int [] src, int newCapacity)
+	{
+		int [] dest = new int[newCapacity];
+		System.arraycopy(src, 0, dest, 0, m_count);
+		return dest;
+	}
+}
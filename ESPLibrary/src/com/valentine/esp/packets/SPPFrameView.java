@@ -0,0 +1,258 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.packets;
+
+import com.valentine.esp.constants.Devices;
+import com.valentine.esp.constants.DevicesLookup;
+import com.valentine.esp.constants.PacketId;
+import com.valentine.esp.constants.PacketIdLookup;
+
+/**
+ * A read only view of a valid frame that is still in the ring of an {@link SPPFrameBuffer}. The accessors read the
+ * bytes straight out of the ring, so nothing is copied and no ESPPacket is built. This is meant for code that only
+ * forwards or inspects frames, such as recorders and bridges.
+ *
+ * A view is filled in by {@link SPPFrameBuffer#getView(SPPFrameIndex, int, Devices, SPPFrameView)} and can be reused
+ * for every frame. It is only valid until more data is added to the SPPFrameBuffer, the same as the frame index.
+ *
+ * Offsets passed to the accessors are in the unescaped frame, where offset 0 is the V1connection length byte that
+ * follows the leading delimiter.
+ */
+public class SPPFrameView
+{
+	// Offsets of the header fields in the unescaped frame
+	private static final int 		SOF_OFFSET = 1;
+	private static final int 		DESTINATION_OFFSET = 2;
+	private static final int 		ORIGINATOR_OFFSET = 3;
+	private static final int 		PACKET_ID_OFFSET = 4;
+	private static final int 		PAYLOAD_LENGTH_OFFSET = 5;
+	private static final int 		PAYLOAD_OFFSET = 6;
+
+	private byte [] 				m_ring;
+	private int 					m_mask;
+	private int 					m_start;		// Ring position of the leading delimiter
+	private int 					m_end;			// Ring position of the trailing delimiter
+	private Devices 				m_v1Type;
+
+	// Ring position of every byte of the unescaped frame. An escaped byte points at its escape character.
+	private int [] 					m_positions = new int[64];
+	private int 					m_length;
+
+	/**
+	 * Creates a view that is not pointing at a frame. Pass it to SPPFrameBuffer.getView() to use it.
+	 */
+	public SPPFrameView()
+	{
+		m_length = 0;
+	}
+
+	/**
+	 * Points the view at a frame. Called by the SPPFrameBuffer, which has already validated the frame.
+	 *
+	 * @param ring			The ring holding the frame.
+	 * @param mask			The mask used to turn a position into an index in the ring.
+	 * @param start			The position of the leading delimiter.
+	 * @param end			The position of the trailing delimiter.
+	 * @param lastV1Type	The type of the V1, the last time we received data.
+	 */
+	void set(byte [] ring, int mask, int start, int end, Devices lastV1Type)
+	{
+		m_ring = ring;
+		m_mask = mask;
+		m_start = start;
+		m_end = end;
+
+		if ( m_positions.length < end - start ){
+			m_positions = new int[end - start];
+		}
+
+		int length = 0;
+		for ( int pos = start + 1; end - pos > 0; pos++ ){
+			m_positions[length] = pos;
+			length++;
+			if ( ring[pos & mask] == ESPPacket.frameDataEscapeConstant ){
+				// Skip the escaped byte, it is read through the escape character
+				pos++;
+			}
+		}
+		m_length = length;
+
+		byte origin = (byte)(getByte(ORIGINATOR_OFFSET) - ESPPacket.originationIdentifierBaseConstant);
+		m_v1Type = ESPPacket.isPacketFromV1(origin) ? Devices.fromByteValue(origin) : lastV1Type;
+	}
+
+	/**
+	 * Retrieve a byte of the unescaped frame.
+	 *
+	 * @param offset	The offset of the byte. Offset 0 is the V1connection length byte.
+	 *
+	 * @return	The byte at the offset.
+	 */
+	public byte getByte(int offset)
+	{
+		if ( offset < 0 || offset >= m_length ){
+			throw new IndexOutOfBoundsException("Offset " + offset + " is not in the frame.");
+		}
+
+		int pos = m_positions[offset];
+		byte value = m_ring[pos & m_mask];
+		if ( value == ESPPacket.frameDataEscapeConstant ){
+			// 0x7D 0x5D is 0x7D and 0x7D 0x5F is 0x7F
+			value = (byte)(m_ring[(pos + 1) & m_mask] ^ 0x20);
+		}
+		return value;
+	}
+
+	/**
+	 * Retrieve the number of bytes in the unescaped frame, not counting the delimiters.
+	 *
+	 * @return The length of the unescaped frame.
+	 */
+	public int getLength()
+	{
+		return m_length;
+	}
+
+	/**
+	 * Retrieve the number of bytes the frame takes up in the ring, including the delimiters and escape characters. This is
+	 * the number of bytes copied by copyRawFrame().
+	 *
+	 * @return The length of the frame as it was received.
+	 */
+	public int getRawLength()
+	{
+		return m_end - m_start + 1;
+	}
+
+	/**
+	 * Copies the frame exactly as it was received, including the delimiters and escape characters.
+	 *
+	 * @param dest		The array to copy the frame into.
+	 * @param offset	The index in dest to copy the first byte to.
+	 *
+	 * @return The number of bytes copied.
+	 */
+	public int copyRawFrame(byte [] dest, int offset)
+	{
+		int length = getRawLength();
+		int first = m_start & m_mask;
+		int count = Math.min(length, m_ring.length - first);
+		System.arraycopy(m_ring, first, dest, offset, count);
+		if ( count < length ){
+			// The frame wraps around the end of the ring
+			System.arraycopy(m_ring, 0, dest, offset + count, length - count);
+		}
+		return length;
+	}
+
+	/**
+	 * Retrieve the start of frame byte.
+	 *
+	 * @return The start of frame byte.
+	 */
+	public byte getStartOfFrame()
+	{
+		return getByte(SOF_OFFSET);
+	}
+
+	/**
+	 * Retrieve the packet identifier byte.
+	 *
+	 * @return The packet identifier byte.
+	 */
+	public byte getPacketIdByte()
+	{
+		return getByte(PACKET_ID_OFFSET);
+	}
+
+	/**
+	 * Retrieve the {@link PacketId} enum for the frame's packet identifier.
+	 *
+	 * @return The {@link PacketId} enum value for the packet identifier byte.
+	 */
+	public PacketId getPacketIdentifier()
+	{
+		return PacketIdLookup.getConstant(getByte(PACKET_ID_OFFSET));
+	}
+
+	/**
+	 * Retrieve the {@link Devices} enum for the frame's destination identifier.
+	 *
+	 * @return The {@link Devices} enum value for the destination identifier byte.
+	 */
+	public Devices getDestination()
+	{
+		return DevicesLookup.getConstant(getByte(DESTINATION_OFFSET));
+	}
+
+	/**
+	 * Retrieve the {@link Devices} enum for the frame's originator identifier.
+	 *
+	 * @return The {@link Devices} enum value for the originator identifier byte.
+	 */
+	public Devices getOrigin()
+	{
+		return DevicesLookup.getConstant((byte)(getByte(ORIGINATOR_OFFSET) - ESPPacket.originationIdentifierBaseConstant));
+	}
+
+	/**
+	 * Retrieve the V1 type used to read the frame. This is the type of the V1 that sent the frame, or the last known V1
+	 * type for frames from other devices.
+	 *
+	 * @return The V1 type for the frame.
+	 */
+	public Devices getV1Type()
+	{
+		return m_v1Type;
+	}
+
+	/**
+	 * Retrieve the number of payload bytes. The same as ESPPacket.getPayloadLength(), this does not include the ESP
+	 * checksum sent by V1s that support checksums.
+	 *
+	 * @return The length of the payload.
+	 */
+	public int getPayloadLength()
+	{
+		int length = getByte(PAYLOAD_LENGTH_OFFSET) & 0xFF;
+		if ( length != 0 && m_v1Type != Devices.VALENTINE1_LEGACY && m_v1Type != Devices.VALENTINE1_WITHOUT_CHECKSUM ){
+			length--;
+		}
+		return length;
+	}
+
+	/**
+	 * Retrieve a byte of the payload.
+	 *
+	 * @param index	The index of the byte in the payload.
+	 *
+	 * @return The payload byte.
+	 */
+	public byte getPayloadByte(int index)
+	{
+		if ( index < 0 || index >= getPayloadLength() ){
+			throw new IndexOutOfBoundsException("Index " + index + " is not in the payload.");
+		}
+		return getByte(PAYLOAD_OFFSET + index);
+	}
+
+	/**
+	 * Copies the payload into the array passed in.
+	 *
+	 * @param dest		The array to copy the payload into.
+	 * @param offset	The index in dest to copy the first byte to.
+	 *
+	 * @return The number of bytes copied.
+	 */
+	public int copyPayload(byte [] dest, int offset)
+	{
+		int length = getPayloadLength();
+		for ( int i = 0; i < length; i++ ){
+			dest[offset + i] = getByte(PAYLOAD_OFFSET + i);
+		}
+		return length;
+	}
+}
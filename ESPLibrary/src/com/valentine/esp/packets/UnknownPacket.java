@@ -6,13 +6,14 @@
 package com.valentine.esp.packets;
 
 import com.valentine.esp.constants.Devices;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class UnknownPacket extends ESPPacket 
 {
 	public UnknownPacket(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 	}
 
 	@Override
@@ -8,6 +8,7 @@ package com.valentine.esp.packets.request;
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.constants.PacketId;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class RequestChangeMode extends ESPPacket 
 {
@@ -22,7 +23,7 @@ public class RequestChangeMode extends ESPPacket
 		m_mode = _mode;
 		m_destination = _destination.toByteValue();
 		m_valentineType = _destination;
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
@@ -8,13 +8,14 @@ package com.valentine.esp.packets.request;
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.constants.PacketId;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class RequestDefaultSweepDefinitions extends ESPPacket {
 
 	public RequestDefaultSweepDefinitions(Devices _destination) {
 		m_destination = _destination.toByteValue();
 		m_valentineType = _destination;
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 	
@@ -42,6 +43,15 @@ public class RequestDefaultSweepDefinitions extends ESPPacket {
 		setPacketInfo();
 	}
 	
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected boolean hasFixedFrame()
+	{
+		return true;
+	}
+
 	@Override
 	/**
 	 * See parent for default implementation.
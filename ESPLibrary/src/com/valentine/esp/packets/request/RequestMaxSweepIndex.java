@@ -8,6 +8,7 @@ package com.valentine.esp.packets.request;
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.constants.PacketId;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class RequestMaxSweepIndex extends ESPPacket 
 {
@@ -15,7 +16,7 @@ public class RequestMaxSweepIndex extends ESPPacket
 	{
 		m_destination = _destination.toByteValue();
 		m_valentineType = _destination;
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
@@ -43,6 +44,15 @@ public class RequestMaxSweepIndex extends ESPPacket
 		setPacketInfo();
 	}
 
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected boolean hasFixedFrame()
+	{
+		return true;
+	}
+
 	@Override
 	/**
 	 * See parent for default implementation.
@@ -8,6 +8,7 @@ package com.valentine.esp.packets.request;
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.constants.PacketId;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class RequestOverrideThumbwheel extends ESPPacket 
 {
@@ -18,7 +19,7 @@ public class RequestOverrideThumbwheel extends ESPPacket
 		m_destination = _destination.toByteValue();
 		m_valentineType = _valentineType;
 		m_speed = _speed;
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
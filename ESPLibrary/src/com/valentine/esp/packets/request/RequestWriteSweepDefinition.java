@@ -9,6 +9,7 @@ import com.valentine.esp.constants.Devices;
 import com.valentine.esp.constants.PacketId;
 import com.valentine.esp.data.SweepDefinition;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class RequestWriteSweepDefinition extends ESPPacket 
 {
@@ -19,7 +20,7 @@ public class RequestWriteSweepDefinition extends ESPPacket
 		m_destination = _destination.toByteValue();
 		m_valentineType = _destination;
 		m_sweep = _sweep;
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
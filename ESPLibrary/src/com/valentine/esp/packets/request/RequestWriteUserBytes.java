@@ -9,6 +9,7 @@ import com.valentine.esp.constants.Devices;
 import com.valentine.esp.constants.PacketId;
 import com.valentine.esp.data.UserSettings;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class RequestWriteUserBytes extends ESPPacket 
 {
@@ -19,7 +20,7 @@ public class RequestWriteUserBytes extends ESPPacket
 		m_destination = _destination.toByteValue();
 		m_valentineType = _destination;
 		m_settings = _settings;
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
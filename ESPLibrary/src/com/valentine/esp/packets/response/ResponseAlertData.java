@@ -8,13 +8,14 @@ package com.valentine.esp.packets.response;
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.data.AlertData;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class ResponseAlertData extends ESPPacket 
 {
 	public ResponseAlertData(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
@@ -32,9 +33,22 @@ public class ResponseAlertData extends ESPPacket
 	 * Returns the AlertData created using this packets payload data.
 	 * @returns AlertData that was sent with this packet.
 	 */
-	public Object getResponseData() 
+	public Object getResponseData()
 	{
-		AlertData rc = new AlertData();
+		return getDecodedPayload();
+	}
+
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected Object decodePayload()
+	{
+		// Pooled packets fill in the data decoded from their last payload
+		AlertData rc = (AlertData) takeRecycledPayload();
+		if ( rc == null ){
+			rc = new AlertData();
+		}
 		rc.buildFromData(payloadData);
 		
 		return rc;
@@ -7,13 +7,15 @@ package com.valentine.esp.packets.response;
 
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.PacketLayout;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class ResponseBatteryVoltage extends ESPPacket 
 {
 	public ResponseBatteryVoltage(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
@@ -31,15 +33,24 @@ public class ResponseBatteryVoltage extends ESPPacket
 	 * Returns the Float indicating the battery voltage.
 	 * @returns Float indicating the battery.
 	 */
-	public Object getResponseData() 
+	public Object getResponseData()
+	{
+		return getDecodedPayload();
+	}
+
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected Object decodePayload()
 	{
 		/*
 		 0 Integer portion of the battery voltage
 		 1 Payload Bytes Decimal portion of the battery voltage
 		*/
 		
-		Byte integerPart = payloadData[0];
-		Byte decimalPart = payloadData[1];
+		Byte integerPart = PacketLayout.BATTERY_VOLTAGE_INTEGER.getByte(payloadData);
+		Byte decimalPart = PacketLayout.BATTERY_VOLTAGE_DECIMAL.getByte(payloadData);
 		
 		String temp = integerPart.toString() + ".";
 		
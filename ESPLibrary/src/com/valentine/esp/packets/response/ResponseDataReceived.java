@@ -7,13 +7,14 @@ package com.valentine.esp.packets.response;
 
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class ResponseDataReceived extends ESPPacket 
 {
 	public ResponseDataReceived(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
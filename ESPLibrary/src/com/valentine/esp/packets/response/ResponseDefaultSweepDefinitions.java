@@ -8,12 +8,13 @@ package com.valentine.esp.packets.response;
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.data.SweepDefinition;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class ResponseDefaultSweepDefinitions extends ESPPacket {
 
 	public ResponseDefaultSweepDefinitions(Devices _destination) {
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
@@ -31,6 +32,14 @@ public class ResponseDefaultSweepDefinitions extends ESPPacket {
 	 * @returns The sweep definition.
 	 */
 	public Object getResponseData() {
+		return getDecodedPayload();
+	}
+
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected Object decodePayload() {
 		SweepDefinition rc = new SweepDefinition();
 
 		rc.buildFromBytes(payloadData);
@@ -8,13 +8,14 @@ package com.valentine.esp.packets.response;
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.data.SavvyStatus;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class ResponseSavvyStatus extends ESPPacket 
 {
 	public ResponseSavvyStatus(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
@@ -32,7 +33,16 @@ public class ResponseSavvyStatus extends ESPPacket
 	 * Returns SavvyStatus using this packets payload data to create it.
 	 * @return 	The SavvyStatus. 
 	 */
-	public Object getResponseData() 
+	public Object getResponseData()
+	{
+		return getDecodedPayload();
+	}
+
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected Object decodePayload()
 	{
 		SavvyStatus rc = new SavvyStatus();
 		rc.buildFromBytes(payloadData);
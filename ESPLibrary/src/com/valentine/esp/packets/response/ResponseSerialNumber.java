@@ -9,13 +9,14 @@ import com.valentine.esp.constants.Devices;
 import com.valentine.esp.constants.PacketId;
 import com.valentine.esp.constants.PacketIdLookup;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class ResponseSerialNumber extends ESPPacket 
 {
 	public ResponseSerialNumber(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 	
@@ -25,6 +26,15 @@ public class ResponseSerialNumber extends ESPPacket
 	 * @return A string containing then V1's serial number. 
 	 */
 	public Object getResponseData()
+	{
+		return getDecodedPayload();
+	}
+
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected Object decodePayload()
 	{
 		if (PacketIdLookup.getConstant(packetIdentifier) != PacketId.respSerialNumber)
 		{
@@ -8,13 +8,15 @@ package com.valentine.esp.packets.response;
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.data.SweepSection;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.PacketLayout;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class ResponseSweepSections extends ESPPacket 
 {
 	public ResponseSweepSections(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 	
@@ -24,6 +26,15 @@ public class ResponseSweepSections extends ESPPacket
 	 * @return An array of SweepSections.
 	 */
 	public Object getResponseData()
+	{
+		return getDecodedPayload();
+	}
+
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected Object decodePayload()
 	{
 		SweepSection[] rc;
 
@@ -37,7 +48,7 @@ public class ResponseSweepSections extends ESPPacket
 		int numValidSections = 0;
 		
 		for ( int i = 0; i < v1Sections; i++ ){
-			temp.buildFromBytes(payloadData, 5*i);
+			temp.buildFromBytes(payloadData, PacketLayout.SWEEP_SECTION_LENGTH*i);
 			if ( temp.getLowerFrequencyEdgeInteger() != 0 && temp.getUpperFrequencyEdgeInteger() != 0 ){
 				numValidSections ++;
 			}
@@ -50,7 +61,7 @@ public class ResponseSweepSections extends ESPPacket
 		int curIdx = 1;
 		for ( int i = 0; i < v1Sections; i++ ){
 			temp = new SweepSection();				
-			temp.buildFromBytes(payloadData, 5*i);
+			temp.buildFromBytes(payloadData, PacketLayout.SWEEP_SECTION_LENGTH*i);
 			if ( temp.getLowerFrequencyEdgeInteger() != 0 && temp.getUpperFrequencyEdgeInteger() != 0 ){
 			// Only use the sweep section if it is not zero.
 				// Use '<< 4' because the index is stored in the upper nibble of the index byte.
@@ -8,13 +8,15 @@ package com.valentine.esp.packets.response;
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.data.SweepWriteResult;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.PacketLayout;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class ResponseSweepWriteResult extends ESPPacket 
 {
 	public ResponseSweepWriteResult(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
@@ -32,11 +34,20 @@ public class ResponseSweepWriteResult extends ESPPacket
 	 * Returns SweepWriteResult from the V1 using this packets payload data.
 	 * @return	SweepWriteResult from the V1.
 	 */
-	public Object getResponseData() 
+	public Object getResponseData()
+	{
+		return getDecodedPayload();
+	}
+
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected Object decodePayload()
 	{
 		SweepWriteResult rc = new SweepWriteResult();
 		
-		rc.buildFromByte(payloadData[0]);
+		rc.buildFromByte(PacketLayout.SWEEP_WRITE_RESULT.getByte(payloadData));
 		
 		return rc;
 	}
@@ -7,13 +7,15 @@ package com.valentine.esp.packets.response;
 
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.PacketLayout;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class ResponseUnsupported extends ESPPacket 
 {
 	public ResponseUnsupported(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 	
@@ -26,7 +28,7 @@ public class ResponseUnsupported extends ESPPacket
 	{
 		int rc;
 		
-		rc = payloadData[0];
+		rc = PacketLayout.UNSUPPORTED_PACKET_ID.getByte(payloadData);
 		
 		return rc;
 	}
@@ -8,13 +8,14 @@ package com.valentine.esp.packets.response;
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.data.UserSettings;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class ResponseUserBytes extends ESPPacket 
 {
 	public ResponseUserBytes(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 	
@@ -24,6 +25,15 @@ public class ResponseUserBytes extends ESPPacket
 	 * @return UserSettings from the V1.
 	 */
 	public Object getResponseData()
+	{
+		return getDecodedPayload();
+	}
+
+	@Override
+	/**
+	 * See parent for default implementation.
+	 */
+	protected Object decodePayload()
 	{
 		UserSettings rc = new UserSettings();
 		rc.buildFromBytes(payloadData);
@@ -7,13 +7,15 @@ package com.valentine.esp.packets.response;
 
 import com.valentine.esp.constants.Devices;
 import com.valentine.esp.packets.ESPPacket;
+import com.valentine.esp.packets.PacketLayout;
+import com.valentine.esp.utilities.ESPPlatform;
 
 public class ResponseVehicleSpeed extends ESPPacket 
 {
 	public ResponseVehicleSpeed(Devices _destination)
 	{
 		m_destination = _destination.toByteValue();
-		m_timeStamp = System.currentTimeMillis();
+		m_timeStamp = ESPPlatform.currentTimeMillis();
 		buildPacket();
 	}
 
@@ -35,7 +37,7 @@ public class ResponseVehicleSpeed extends ESPPacket
 	{
 		Integer rc;
 		
-		rc = (int) payloadData[0];
+		rc = (int) PacketLayout.VEHICLE_SPEED.getByte(payloadData);
 		
 		return rc;
 	}
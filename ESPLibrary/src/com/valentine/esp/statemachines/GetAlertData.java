@@ -5,8 +5,6 @@
  */
 package com.valentine.esp.statemachines;
 
-//import android.util.Log;
-import com.valentine.esp.PacketQueue;
 import com.valentine.esp.ValentineESP;
 import com.valentine.esp.constants.PacketId;
 import com.valentine.esp.data.AlertData;
@@ -67,10 +65,14 @@ public class GetAlertData
 	public void getAlertDataCallback(ResponseAlertData _resp)
 	{
 		AlertData alert = (AlertData) _resp.getResponseData();
+		if ( _resp.isPooled() ){
+			// The alerts are kept until the whole table has arrived, so they can't be reused with the packet
+			alert = new AlertData(alert);
+		}
 		int index = alert.getAlertIndexAndCount().getIndex();
 		int count = alert.getAlertIndexAndCount().getCount();
 		
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqStartAlertData);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqStartAlertData);
 		
 		if ((index == 1) && (count > 0))
 		{
@@ -9,9 +9,6 @@ import java.util.ArrayList;
 import java.util.concurrent.locks.ReentrantLock;
 
 
-import android.util.Log;
-
-import com.valentine.esp.PacketQueue;
 import com.valentine.esp.ValentineClient;
 import com.valentine.esp.ValentineESP;
 import com.valentine.esp.constants.Devices;
@@ -27,6 +24,7 @@ import com.valentine.esp.packets.response.ResponseDefaultSweepDefinitions;
 import com.valentine.esp.packets.response.ResponseMaxSweepIndex;
 import com.valentine.esp.packets.response.ResponseSweepDefinitions;
 import com.valentine.esp.packets.response.ResponseSweepSections;
+import com.valentine.esp.utilities.ESPLog;
 import com.valentine.esp.utilities.Utilities;
 
 /** 
@@ -156,7 +154,7 @@ public class GetAllSweeps
 		
 		ValentineClient.getInstance().setCachedSweepSections(temp);
 		
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqSweepSections);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqSweepSections);
 		
 		//get allowed number of sweeps
 		RequestMaxSweepIndex packet = new RequestMaxSweepIndex(m_valentineType);
@@ -187,7 +185,7 @@ public class GetAllSweeps
 		
 		ValentineClient.getInstance().setCachedMaxSweepIndex(m_maxSweepIndex);
 		
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqMaxSweepIndex);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqMaxSweepIndex);
 		
 		if ( ValentineClient.getInstance().allowDefaulSweepDefRead() ){			
 			// Get all default sweep definitions
@@ -232,7 +230,7 @@ public class GetAllSweeps
 	 */
 	public void getDefaultSweepDefsCallback(ResponseDefaultSweepDefinitions _resp)
 	{
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqDefaultSweepDefinitions);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqDefaultSweepDefinitions);
 		
 		m_lock.lock();
 		boolean doAbort = m_abort;
@@ -248,7 +246,7 @@ public class GetAllSweeps
 		boolean allSweepsFound = false;
 		
 		if(ESPLibraryLogController.LOG_WRITE_INFO){
-			Log.i("ValentineDebug", "Default Sweep index: " + index + "  Final Lower - " + rc.getLowerFrequencyEdge().toString() + " Upper - " + rc.getUpperFrequencyEdge().toString());
+			ESPLog.i("ValentineDebug", "Default Sweep index: " + index + "  Final Lower - " + rc.getLowerFrequencyEdge().toString() + " Upper - " + rc.getUpperFrequencyEdge().toString());
 		}
 		
 		m_lock.lock();
@@ -272,7 +270,7 @@ public class GetAllSweeps
 			}
 			else{
 				if(ESPLibraryLogController.LOG_WRITE_INFO){
-					Log.i("ValentineDebug", "Found unusable sweep index. Received " + index + " but max is " + m_defaultSweepDefs.length);
+					ESPLog.i("ValentineDebug", "Found unusable sweep index. Received " + index + " but max is " + m_defaultSweepDefs.length);
 				}
 			}			
 		}				
@@ -296,7 +294,7 @@ public class GetAllSweeps
 	 */
 	public void getSweepsCallback(ResponseSweepDefinitions _resp)
 	{
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqAllSweepDefinitions);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqAllSweepDefinitions);
 		
 		m_lock.lock();
 		boolean doAbort = m_abort;
@@ -312,7 +310,7 @@ public class GetAllSweeps
 		boolean allSweepsFound = false;
 		
 		if(ESPLibraryLogController.LOG_WRITE_INFO){
-			Log.i("ValentineDebug", "Sweep index: " + index + "  Final Lower - " + rc.getLowerFrequencyEdge().toString() + " Upper - " + rc.getUpperFrequencyEdge().toString());
+			ESPLog.i("ValentineDebug", "Sweep index: " + index + "  Final Lower - " + rc.getLowerFrequencyEdge().toString() + " Upper - " + rc.getUpperFrequencyEdge().toString());
 		}
 		
 		m_lock.lock();
@@ -333,7 +331,7 @@ public class GetAllSweeps
 			}
 			else{
 				if(ESPLibraryLogController.LOG_WRITE_INFO){
-					Log.i("ValentineDebug", "Found unusable sweep index. Received " + index + " but max is " + m_sweepDefs.length);
+					ESPLog.i("ValentineDebug", "Found unusable sweep index. Received " + index + " but max is " + m_sweepDefs.length);
 				}
 			}			
 		}				
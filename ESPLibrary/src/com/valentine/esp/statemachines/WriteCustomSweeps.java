@@ -8,9 +8,6 @@ package com.valentine.esp.statemachines;
 import java.util.ArrayList;
 
 
-import android.util.Log;
-
-import com.valentine.esp.PacketQueue;
 import com.valentine.esp.ValentineClient;
 import com.valentine.esp.ValentineESP;
 import com.valentine.esp.constants.Devices;
@@ -22,6 +19,7 @@ import com.valentine.esp.packets.request.RequestAllSweepDefinitions;
 import com.valentine.esp.packets.request.RequestWriteSweepDefinition;
 import com.valentine.esp.packets.response.ResponseSweepDefinitions;
 import com.valentine.esp.packets.response.ResponseSweepWriteResult;
+import com.valentine.esp.utilities.ESPLog;
 import com.valentine.esp.utilities.Utilities;
 
 /** This class writes the custom sweeps to the Valentine one.  Is used internally by the ValentineClient Class.
@@ -140,7 +138,7 @@ public class WriteCustomSweeps
 			
 			sweepDef.setIndex(i);
 			if(ESPLibraryLogController.LOG_WRITE_INFO){
-				Log.i("ValentineDebug", "Write Lower - " + sweepDef.getLowerFrequencyEdge().toString() + " Upper - " + sweepDef.getUpperFrequencyEdge().toString());
+				ESPLog.i("ValentineDebug", "Write Lower - " + sweepDef.getLowerFrequencyEdge().toString() + " Upper - " + sweepDef.getUpperFrequencyEdge().toString());
 			}
 			
 			if (i == notEmpty.size()-1)
@@ -167,7 +165,7 @@ public class WriteCustomSweeps
 		m_valentineESP.deregisterForPacket(PacketId.respSweepWriteResult, this);
 		SweepWriteResult result = (SweepWriteResult) _resp.getResponseData();
 		
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqWriteSweepDefinition);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqWriteSweepDefinition);
 		
 		if (result.getSuccess())
 		{
@@ -194,7 +192,7 @@ public class WriteCustomSweeps
 	{
 		SweepDefinition rc = (SweepDefinition) _resp.getResponseData();
 
-		PacketQueue.removeFromBusyPacketIds(PacketId.reqAllSweepDefinitions);
+		m_valentineESP.getPacketQueue().removeFromBusyPacketIds(PacketId.reqAllSweepDefinitions);
 		
 		
 		if ( m_finalDefinitions == null ){
@@ -0,0 +1,27 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.utilities;
+
+/**
+ * Source of the times used by the library. Replacing the clock allows captured sessions to be decoded with the time
+ * stamps they were recorded with.
+ */
+public interface ESPClock
+{
+	/**
+	 * Retrieve the wall clock time. This is used to time stamp packets.
+	 *
+	 * @return The current time in milliseconds since the epoch.
+	 */
+	public long currentTimeMillis();
+
+	/**
+	 * Retrieve a monotonic time that is not affected by changes to the wall clock. This is used to expire packets.
+	 *
+	 * @return The time in milliseconds since an arbitrary fixed point.
+	 */
+	public long elapsedRealtime();
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.utilities;
+
+/**
+ * Writes log messages to the logger returned by {@link ESPPlatform#getLogger()}. These methods take the place of
+ * android.util.Log in the parts of the library that do not depend on Android.
+ */
+public class ESPLog
+{
+	private ESPLog()
+	{
+	}
+
+	/**
+	 * Writes a verbose message.
+	 *
+	 * @param tag	The tag identifying the source of the message.
+	 * @param msg	The message to write.
+	 */
+	public static void v(String tag, String msg)
+	{
+		ESPPlatform.getLogger().v(tag, msg);
+	}
+
+	/**
+	 * Writes a debug message.
+	 *
+	 * @param tag	The tag identifying the source of the message.
+	 * @param msg	The message to write.
+	 */
+	public static void d(String tag, String msg)
+	{
+		ESPPlatform.getLogger().d(tag, msg);
+	}
+
+	/**
+	 * Writes an info message.
+	 *
+	 * @param tag	The tag identifying the source of the message.
+	 * @param msg	The message to write.
+	 */
+	public static void i(String tag, String msg)
+	{
+		ESPPlatform.getLogger().i(tag, msg);
+	}
+
+	/**
+	 * Writes a warning message.
+	 *
+	 * @param tag	The tag identifying the source of the message.
+	 * @param msg	The message to write.
+	 */
+	public static void w(String tag, String msg)
+	{
+		ESPPlatform.getLogger().w(tag, msg);
+	}
+
+	/**
+	 * Writes an error message.
+	 *
+	 * @param tag	The tag identifying the source of the message.
+	 * @param msg	The message to write.
+	 */
+	public static void e(String tag, String msg)
+	{
+		ESPPlatform.getLogger().e(tag, msg);
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.utilities;
+
+/**
+ * Destination for the log messages written by the library. The methods mirror the levels in ESPLibraryLogController.
+ * Callers are expected to check the ESPLibraryLogController flag for the level before building the message.
+ */
+public interface ESPLogger
+{
+	/**
+	 * Writes a verbose message.
+	 *
+	 * @param tag	The tag identifying the source of the message.
+	 * @param msg	The message to write.
+	 */
+	public void v(String tag, String msg);
+
+	/**
+	 * Writes a debug message.
+	 *
+	 * @param tag	The tag identifying the source of the message.
+	 * @param msg	The message to write.
+	 */
+	public void d(String tag, String msg);
+
+	/**
+	 * Writes an info message.
+	 *
+	 * @param tag	The tag identifying the source of the message.
+	 * @param msg	The message to write.
+	 */
+	public void i(String tag, String msg);
+
+	/**
+	 * Writes a warning message.
+	 *
+	 * @param tag	The tag identifying the source of the message.
+	 * @param msg	The message to write.
+	 */
+	public void w(String tag, String msg);
+
+	/**
+	 * Writes an error message.
+	 *
+	 * @param tag	The tag identifying the source of the message.
+	 * @param msg	The message to write.
+	 */
+	public void e(String tag, String msg);
+}
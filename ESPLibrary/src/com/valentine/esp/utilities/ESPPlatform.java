@@ -0,0 +1,170 @@
+/*
+ * Copyright(c) 2016 Valentine Research, Inc
+ * This file is part of the ESP Library, which is licensed under the MIT license.
+ * You should have received a copy of the MIT license along with this file. If not, see http://opensource.org/licenses/MIT
+ */
+package com.valentine.esp.utilities;
+
+/**
+ * Holds the logger and clock used by the packet, queue and data classes. Those classes only depend on this class so
+ * they can run on a desktop JVM, for example to decode captured sessions or to run benchmarks.
+ *
+ * When running on the Android runtime the platform defaults to AndroidPlatform, which writes to logcat and uses
+ * SystemClock. Otherwise log messages are written to System.out and System.err and the times come from System. The
+ * runtime is detected from the java.vm.name property rather than from the Android classes, because a JVM test
+ * classpath can hold the android.jar stubs, which throw on every call. setLogger() and setClock() replace the defaults.
+ */
+public class ESPPlatform
+{
+	private static final String 		ANDROID_VM_NAME = "Dalvik";
+	private static final String 		ANDROID_PLATFORM_CLASS = "com.valentine.esp.bluetooth.AndroidPlatform";
+
+	private static volatile ESPLogger 	m_logger;
+	private static volatile ESPClock 	m_clock;
+
+	static
+	{
+		Object android = mCreateAndroidPlatform();
+		if ( android != null ){
+			m_logger = (ESPLogger) android;
+			m_clock = (ESPClock) android;
+		}
+		else{
+			m_logger = new ConsoleLogger();
+			m_clock = new SystemTimeClock();
+		}
+	}
+
+	private ESPPlatform()
+	{
+	}
+
+	/**
+	 * Retrieve the logger used by the library.
+	 *
+	 * @return The current logger.
+	 */
+	public static ESPLogger getLogger()
+	{
+		return m_logger;
+	}
+
+	/**
+	 * Replaces the logger used by the library.
+	 *
+	 * @param logger	The new logger. Passing null restores the console logger.
+	 */
+	public static void setLogger(ESPLogger logger)
+	{
+		m_logger = (logger == null) ? new ConsoleLogger() : logger;
+	}
+
+	/**
+	 * Retrieve the clock used by the library.
+	 *
+	 * @return The current clock.
+	 */
+	public static ESPClock getClock()
+	{
+		return m_clock;
+	}
+
+	/**
+	 * Replaces the clock used by the library.
+	 *
+	 * @param clock	The new clock. Passing null restores the system clock.
+	 */
+	public static void setClock(ESPClock clock)
+	{
+		m_clock = (clock == null) ? new SystemTimeClock() : clock;
+	}
+
+	/**
+	 * Retrieve the wall clock time from the current clock.
+	 *
+	 * @return The current time in milliseconds since the epoch.
+	 */
+	public static long currentTimeMillis()
+	{
+		return m_clock.currentTimeMillis();
+	}
+
+	/**
+	 * Retrieve the monotonic time from the current clock.
+	 *
+	 * @return The time in milliseconds since an arbitrary fixed point.
+	 */
+	public static long elapsedRealtime()
+	{
+		return m_clock.elapsedRealtime();
+	}
+
+	/**
+	 * Creates the Android logger and clock if this is running on the Android runtime. Both Dalvik and ART report Dalvik
+	 * as the VM name.
+	 *
+	 * @return The AndroidPlatform instance or null if this is not the Android runtime.
+	 */
+	private static Object mCreateAndroidPlatform()
+	{
+		if ( !ANDROID_VM_NAME.equals(System.getProperty("java.vm.name")) ){
+			return null;
+		}
+		try {
+			return Class.forName(ANDROID_PLATFORM_CLASS).getDeclaredConstructor().newInstance();
+		}
+		catch (Exception e) {
+			return null;
+		}
+		catch (LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes log messages to the standard output streams. Errors and warnings go to System.err.
+	 */
+	private static class ConsoleLogger implements ESPLogger
+	{
+		public void v(String tag, String msg)
+		{
+			System.out.println("V/" + tag + ": " + msg);
+		}
+
+		public void d(String tag, String msg)
+		{
+			System.out.println("D/" + tag + ": " + msg);
+		}
+
+		public void i(String tag, String msg)
+		{
+			System.out.println("I/" + tag + ": " + msg);
+		}
+
+		public void w(String tag, String msg)
+		{
+			System.err.println("W/" + tag + ": " + msg);
+		}
+
+		public void e(String tag, String msg)
+		{
+			System.err.println("E/" + tag + ": " + msg);
+		}
+	}
+
+	/**
+	 * Reads the times from java.lang.System.
+	 */
+	private static class SystemTimeClock implements ESPClock
+	{
+		public long currentTimeMillis()
+		{
+			return System.currentTimeMillis();
+		}
+
+		public long elapsedRealtime()
+		{
+			return System.nanoTime() / 1000000L;
+		}
+	}
+}
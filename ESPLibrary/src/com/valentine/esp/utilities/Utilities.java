@@ -5,7 +5,6 @@
  */
 package com.valentine.esp.utilities;
 
-import android.util.Log;
 import com.valentine.esp.ValentineClient;
 import com.valentine.esp.constants.ESPLibraryLogController;
 
@@ -38,7 +37,7 @@ public class Utilities
 						// This will typically happen when the ValentineClient receives an echo and processes
 						// it as a response.
 						if(ESPLibraryLogController.LOG_WRITE_WARNING){
-							Log.w("Valentine", "Found null when attempting callback in Utilities.java");
+							ESPLog.w("Valentine", "Found null when attempting callback in Utilities.java");
 						}
 						return;
 					}
@@ -70,7 +69,7 @@ public class Utilities
 					e.printStackTrace();
 					ValentineClient.getInstance().reportError(e.toString());
 					if(ESPLibraryLogController.LOG_WRITE_INFO){
-						Log.i("Valentine",  _owner.toString() + " " + _function + " There was an invoke error calling back to owner: " + e.getTargetException().toString());
+						ESPLog.i("Valentine",  _owner.toString() + " " + _function + " There was an invoke error calling back to owner: " + e.getTargetException().toString());
 					}
 					e.printStackTrace();
 					
@@ -80,7 +79,7 @@ public class Utilities
 					e.printStackTrace();
 					ValentineClient.getInstance().reportError(e.toString());
 					if(ESPLibraryLogController.LOG_WRITE_INFO){
-						Log.i("Valentine", _owner.toString() + " " + _function + " There was an error calling back to owner: " + e.toString());
+						ESPLog.i("Valentine", _owner.toString() + " " + _function + " There was an error calling back to owner: " + e.toString());
 					}
 					e.printStackTrace();
 				}